@@ -31,10 +31,14 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
 import java.util.Iterator;
+import java.util.function.ObjLongConsumer;
 
 import org.springframework.util.FastByteArrayOutputStream;
 
+import com.ethlo.geodata.dao.file.BaseMmapDao;
+import com.ethlo.geodata.io.RecordCodec;
 import com.ethlo.geodata.io.RecordType;
+import com.ethlo.geodata.io.UncompressedCodec;
 import com.ethlo.geodata.model.IntIdentifiable;
 import com.ethlo.geodata.util.CompressionUtil;
 
@@ -42,16 +46,26 @@ public abstract class BinaryIndexedFileWriter<T extends IntIdentifiable>
 {
     private final Path directory;
     private final String alias;
-    private final boolean compress;
+    private final RecordCodec codec;
 
-    protected BinaryIndexedFileWriter(final Path directory, final String alias, final boolean compress)
+    protected BinaryIndexedFileWriter(final Path directory, final String alias, final RecordType recordType)
     {
         this.directory = directory;
         this.alias = alias;
-        this.compress = compress;
+        this.codec = RecordCodec.forType(recordType);
     }
 
     public int writeData(Iterator<T> data) throws IOException
+    {
+        return writeData(data, (d, offset) ->
+        {
+        });
+    }
+
+    /**
+     * @param onWritten Notified with each record and the offset it was written at in the data file
+     */
+    public int writeData(Iterator<T> data, ObjLongConsumer<T> onWritten) throws IOException
     {
         int count = 0;
 
@@ -60,14 +74,14 @@ public abstract class BinaryIndexedFileWriter<T extends IntIdentifiable>
 
         try (final OutputStream uncompressedIndex = Files.newOutputStream(indexPath))
         {
-            // Write placeholder
-            uncompressedIndex.write(new byte[4]);
+            // Write placeholder for the header
+            uncompressedIndex.write(new byte[8]);
         }
 
         try (final DataOutputStream indexOut = new DataOutputStream(CompressionUtil.compress(new BufferedOutputStream(Files.newOutputStream(indexPath, StandardOpenOption.APPEND))));
              final DataOutputStream dataOutputStream = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(dataPath))))
         {
-            int pos = 0;
+            long pos = 0;
             while (data.hasNext())
             {
                 final T d = data.next();
@@ -75,38 +89,40 @@ public abstract class BinaryIndexedFileWriter<T extends IntIdentifiable>
                 // Write raw data
                 final long startPos = pos;
 
-                final boolean doCompress = compress && d.isCompressible();
-                final byte[] compressed = writeData(d, doCompress);
-                dataOutputStream.writeByte(doCompress ? RecordType.LZMA2_PREFIXED_LENGTH.getId() : RecordType.UNCOMPRESSED_PREFIXED_LENGTH.getId());
-                dataOutputStream.writeInt(compressed.length);
-                dataOutputStream.write(compressed);
+                final RecordCodec recordCodec = d.isCompressible() ? codec : UncompressedCodec.INSTANCE;
+                final byte[] encoded = recordCodec.encode(serialize(d));
+                dataOutputStream.writeByte(recordCodec.getType().getId());
+                dataOutputStream.writeInt(encoded.length);
+                dataOutputStream.write(encoded);
 
                 // Write index in the raw file. Note that we can have multiple repeating IDs!
                 indexOut.writeInt(d.getId());
-                indexOut.writeInt((int) startPos);
+                indexOut.writeLong(startPos);
+                onWritten.accept(d, startPos);
 
                 count++;
-                pos += (1 + 4 + compressed.length);
+                pos += (1 + 4 + encoded.length);
             }
         }
 
-        // Replace count
+        // Replace header
         try (final RandomAccessFile raf = new RandomAccessFile(indexPath.toFile(), "rw"))
         {
             raf.seek(0);
+            raf.writeInt(BaseMmapDao.LONG_OFFSET_INDEX_MARKER);
             raf.writeInt(count);
         }
 
         return count;
     }
 
-    private byte[] writeData(final T d, final boolean compress) throws IOException
+    private byte[] serialize(final T d) throws IOException
     {
         try (final FastByteArrayOutputStream out = new FastByteArrayOutputStream(10_240))
         {
-            final DataOutputStream compOut = new DataOutputStream(compress ? CompressionUtil.compress(out) : out);
-            this.write(d, compOut);
-            compOut.close();
+            final DataOutputStream dataOut = new DataOutputStream(out);
+            this.write(d, dataOut);
+            dataOut.close();
             return out.toByteArray();
         }
     }
@@ -0,0 +1,236 @@
+package com.ethlo.geodata.importer;
+
+/*-
+ * #%L
+ * geodata-importer
+ * %%
+ * Copyright (C) 2017 - 2020 Morten Haraldsen (ethlo)
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import com.ethlo.geodata.dao.file.ColumnarLocationDao;
+import com.ethlo.geodata.dao.file.LocationColumn;
+import com.ethlo.geodata.model.RawLocationView;
+import com.google.common.primitives.Ints;
+import it.unimi.dsi.fastutil.bytes.ByteArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.shorts.ShortArrayList;
+
+/**
+ * Writes locations in the columnar format read by {@link ColumnarLocationDao}. The rows are collected in primitive
+ * lists and written ordered by id, one column after the other.
+ */
+public class ColumnarLocationWriter
+{
+    private static final int ALIGNMENT = Long.BYTES;
+
+    private final Path file;
+
+    private final IntArrayList ids = new IntArrayList();
+    private final IntArrayList lats = new IntArrayList();
+    private final IntArrayList lngs = new IntArrayList();
+    private final IntArrayList mapFeatureIds = new IntArrayList();
+    private final LongArrayList populations = new LongArrayList();
+    private final IntArrayList timeZoneIds = new IntArrayList();
+    private final IntArrayList elevations = new IntArrayList();
+    private final ShortArrayList countryCodes = new ShortArrayList();
+    private final IntArrayList nameOffsets = new IntArrayList();
+    private final ByteArrayList names = new ByteArrayList();
+
+    public ColumnarLocationWriter(final Path directory)
+    {
+        this.file = directory.resolve(ColumnarLocationDao.FILE);
+    }
+
+    public int writeData(final Iterator<? extends RawLocationView> data) throws IOException
+    {
+        while (data.hasNext())
+        {
+            add(data.next());
+        }
+        return write();
+    }
+
+    private void add(final RawLocationView location)
+    {
+        ids.add(location.getId());
+        lats.add(ColumnarLocationDao.toFixedPoint(location.getLat()));
+        lngs.add(ColumnarLocationDao.toFixedPoint(location.getLng()));
+        mapFeatureIds.add(location.getMapFeatureId());
+        populations.add(location.getPopulation());
+        timeZoneIds.add(location.getTimeZoneId());
+        elevations.add(location.getElevation());
+        countryCodes.add(ColumnarLocationDao.packCountryCode(location.getCountryCode()));
+        nameOffsets.add(names.size());
+        names.addElements(names.size(), location.getName().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private int write() throws IOException
+    {
+        final int rows = ids.size();
+        nameOffsets.add(names.size());
+        final int[] order = sortedOrder();
+
+        final Map<LocationColumn, Long> lengths = new EnumMap<>(LocationColumn.class);
+        for (final LocationColumn column : LocationColumn.values())
+        {
+            lengths.put(column, (long) rows * column.getWidth());
+        }
+        lengths.put(LocationColumn.NAME_OFFSET, (rows + 1L) * LocationColumn.NAME_OFFSET.getWidth());
+        lengths.put(LocationColumn.NAME, (long) names.size());
+
+        try (final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file))))
+        {
+            out.writeInt(ColumnarLocationDao.MAGIC);
+            out.writeInt(ColumnarLocationDao.FORMAT_VERSION);
+            out.writeInt(rows);
+            out.writeInt(LocationColumn.values().length);
+
+            final long[] offsets = new long[LocationColumn.values().length];
+            long position = align(ColumnarLocationDao.headerSize());
+            for (final LocationColumn column : LocationColumn.values())
+            {
+                offsets[column.ordinal()] = position;
+                out.writeLong(position);
+                out.writeLong(lengths.get(column));
+                position = align(position + lengths.get(column));
+            }
+
+            long written = ColumnarLocationDao.headerSize();
+            for (final LocationColumn column : LocationColumn.values())
+            {
+                written = pad(out, written, offsets[column.ordinal()]);
+                writeColumn(out, column, order);
+                written += lengths.get(column);
+            }
+        }
+
+        return rows;
+    }
+
+    private void writeColumn(final DataOutputStream out, final LocationColumn column, final int[] order) throws IOException
+    {
+        switch (column)
+        {
+            case ID:
+                writeInts(out, ids, order);
+                break;
+            case LAT:
+                writeInts(out, lats, order);
+                break;
+            case LNG:
+                writeInts(out, lngs, order);
+                break;
+            case MAP_FEATURE_ID:
+                writeInts(out, mapFeatureIds, order);
+                break;
+            case POPULATION:
+                for (final int row : order)
+                {
+                    out.writeLong(populations.getLong(row));
+                }
+                break;
+            case TIME_ZONE_ID:
+                writeInts(out, timeZoneIds, order);
+                break;
+            case ELEVATION:
+                writeInts(out, elevations, order);
+                break;
+            case COUNTRY_CODE:
+                for (final int row : order)
+                {
+                    out.writeShort(countryCodes.getShort(row));
+                }
+                break;
+            case NAME_OFFSET:
+                int offset = 0;
+                for (final int row : order)
+                {
+                    out.writeInt(offset);
+                    offset += nameLength(row);
+                }
+                out.writeInt(offset);
+                break;
+            case NAME:
+                for (final int row : order)
+                {
+                    out.write(names.elements(), nameOffsets.getInt(row), nameLength(row));
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Unhandled column: " + column);
+        }
+    }
+
+    private int nameLength(final int row)
+    {
+        return nameOffsets.getInt(row + 1) - nameOffsets.getInt(row);
+    }
+
+    private int[] sortedOrder()
+    {
+        final int rows = ids.size();
+        final long[] keys = new long[rows];
+        for (int row = 0; row < rows; row++)
+        {
+            keys[row] = ((long) ids.getInt(row) << 32) | row;
+        }
+        Arrays.parallelSort(keys);
+
+        final int[] order = new int[rows];
+        for (int i = 0; i < rows; i++)
+        {
+            order[i] = (int) keys[i];
+            if (i > 0 && ids.getInt(order[i]) == ids.getInt(order[i - 1]))
+            {
+                throw new IllegalArgumentException("Duplicate location id: " + ids.getInt(order[i]));
+            }
+        }
+        return order;
+    }
+
+    private static void writeInts(final DataOutputStream out, final IntArrayList values, final int[] order) throws IOException
+    {
+        for (final int row : order)
+        {
+            out.writeInt(values.getInt(row));
+        }
+    }
+
+    private static long pad(final DataOutputStream out, final long position, final long target) throws IOException
+    {
+        out.write(new byte[Ints.checkedCast(target - position)]);
+        return target;
+    }
+
+    private static long align(final long position)
+    {
+        return (position + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+    }
+}
@@ -32,4 +32,12 @@ public interface DataImporter
     int importData() throws IOException;
 
     OffsetDateTime lastRemoteModified() throws IOException;
+
+    /**
+     * @return The version of the on-disk format written by this importer, recorded in the metadata
+     */
+    default int formatVersion()
+    {
+        return 1;
+    }
 }
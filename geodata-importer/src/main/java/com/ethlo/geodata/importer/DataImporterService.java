@@ -42,6 +42,7 @@ import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Predicate;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 import org.apache.commons.collections4.iterators.LazyIteratorChain;
@@ -58,9 +59,20 @@ import com.ethlo.geodata.SourceDataInfoSet;
 import com.ethlo.geodata.dao.FeatureCodeDao;
 import com.ethlo.geodata.dao.FileMetaDao;
 import com.ethlo.geodata.dao.LocationDao;
+import com.ethlo.geodata.dao.file.BoundaryMetaFile;
 import com.ethlo.geodata.dao.file.FileFeatureCodeDao;
+import com.ethlo.geodata.dao.file.FileHierarchyDao;
 import com.ethlo.geodata.dao.file.FileLocationDao;
+import com.ethlo.geodata.dao.file.FileNameIndexDao;
+import com.ethlo.geodata.dao.file.FileSpatialIndexDao;
+import com.ethlo.geodata.dao.file.HierarchyIndex;
+import com.ethlo.geodata.dao.file.MmapBackend;
+import com.ethlo.geodata.dao.file.NameIndex;
+import com.ethlo.geodata.dao.file.PackedRTree;
+import com.ethlo.geodata.dao.file.RtreeRepository;
 import com.ethlo.geodata.importer.boundary.GeoNamesBoundaryImporter;
+import com.ethlo.geodata.io.BinaryBoundaryEncoder;
+import com.ethlo.geodata.io.RecordType;
 import com.ethlo.geodata.model.BoundaryData;
 import com.ethlo.geodata.model.MapFeature;
 import com.ethlo.geodata.util.IoUtil;
@@ -81,11 +93,13 @@ public class DataImporterService
     private final FileGeonamesImporter geonamesImporter;
     private final Path basePath;
     private final Path inputBasePath;
+    private final RecordType boundaryRecordType;
     private GeoNamesBoundaryImporter geoNamesBoundaryImporter;
 
     public DataImporterService(@Value("${geodata.base-path}") @NotNull final Path basePath,
                                @Value("${geodata.data-source-path}") @NotNull final Path inputBasePath,
                                @Value("${geodata.max-data-age}") @NotNull final Duration maxDataAge,
+                               @Value("${geodata.boundaries.codec:lzma2}") final String boundaryCodec,
                                FileIpDataImporter ipLookupImporter,
                                FileGeonamesImporter geonamesImporter)
     {
@@ -96,6 +110,8 @@ public class DataImporterService
         this.maxDataAge = Objects.requireNonNull(maxDataAge, "GEODATA_MAXDATAAGE must be set");
         this.ipLookupImporter = ipLookupImporter;
         this.geonamesImporter = geonamesImporter;
+        this.boundaryRecordType = RecordType.fromCodecName(boundaryCodec);
+        logger.info("Boundary record codec: {}", boundaryRecordType.getCodecName());
     }
 
     public Optional<OffsetDateTime> getLastModified(String alias)
@@ -104,10 +120,15 @@ public class DataImporterService
     }
 
     public void setStatus(String type, OffsetDateTime lastModified, final int count)
+    {
+        setStatus(type, lastModified, count, 1);
+    }
+
+    public void setStatus(String type, OffsetDateTime lastModified, final int count, final int formatVersion)
     {
         final Path file = basePath.resolve(FileMetaDao.FILE);
         final SourceDataInfoSet data = getSourceDataInfo();
-        data.add(new SourceDataInfo(type, count, lastModified));
+        data.add(new SourceDataInfo(type, count, lastModified, formatVersion));
         JsonUtil.write(file, data);
     }
 
@@ -116,16 +137,20 @@ public class DataImporterService
     {
         Files.createDirectories(basePath);
 
+        // The directory is not complete until the marker is written again below
+        final Path completeMarker = basePath.resolve(FileMetaDao.COMPLETE);
+        Files.deleteIfExists(completeMarker);
+
         final AtomicBoolean updated = new AtomicBoolean();
 
-        ifExpired(DataType.IP, ipLookupImporter.lastRemoteModified(), maxDataAge, () ->
+        ifExpired(DataType.IP, ipLookupImporter.lastRemoteModified(), maxDataAge, ipLookupImporter.formatVersion(), () ->
         {
             ipLookupImporter.purgeData();
             updated.set(true);
             return ipLookupImporter.importData();
         });
 
-        ifExpired(DataType.LOCATIONS, geonamesImporter.lastRemoteModified(), maxDataAge, () ->
+        ifExpired(DataType.LOCATIONS, geonamesImporter.lastRemoteModified(), maxDataAge, geonamesImporter.formatVersion(), () ->
         {
             geonamesImporter.purgeData();
             updated.set(true);
@@ -133,14 +158,14 @@ public class DataImporterService
         });
 
         final Path boundaryImportFolder = inputBasePath.resolve(DataType.BOUNDARIES);
-        ifExpired(DataType.BOUNDARIES, getLastModifiedFile(boundaryImportFolder).orElse(OffsetDateTime.now().minusYears(10)), Duration.ofSeconds(5), () ->
+        ifExpired(DataType.BOUNDARIES, getLastModifiedFile(boundaryImportFolder).orElse(OffsetDateTime.now().minusYears(10)), Duration.ofSeconds(5), BinaryBoundaryEncoder.FORMAT_VERSION, () ->
         {
             final FeatureCodeDao featureCodeDao = new FileFeatureCodeDao(basePath);
             final LocationDao locationDao = new FileLocationDao(basePath);
             locationDao.load();
 
             final Map<Integer, MapFeature> featureCodes = featureCodeDao.load();
-            this.geoNamesBoundaryImporter = new GeoNamesBoundaryImporter(locationDao, basePath, MAX_TILE_SIZE, l ->
+            this.geoNamesBoundaryImporter = new GeoNamesBoundaryImporter(locationDao, basePath, MAX_TILE_SIZE, boundaryRecordType, l ->
             {
                 final MapFeature mapFeature = featureCodes.get(l.getMapFeatureId());
                 final String key = mapFeature.getKey();
@@ -161,10 +186,89 @@ public class DataImporterService
             }
         });
 
+        final SourceDataInfoSet dataInfo = getSourceDataInfo();
+        if (updated.get()
+                || !FileSpatialIndexDao.isCurrent(basePath, dataInfo, DataType.PROXIMITY_INDEX, DataType.LOCATIONS)
+                || !FileSpatialIndexDao.isCurrent(basePath, dataInfo, DataType.BOUNDARY_INDEX, DataType.BOUNDARIES))
+        {
+            writeSpatialIndexes(dataInfo);
+        }
+
+        if (updated.get() || !FileNameIndexDao.isCurrent(basePath, dataInfo))
+        {
+            writeNameIndex(dataInfo);
+        }
+
+        if (updated.get() || !FileHierarchyDao.isCurrent(basePath, dataInfo))
+        {
+            writeHierarchyIndex(dataInfo);
+        }
+
         if (!updated.get())
         {
             logger.info("No data to update. Max data age {}", maxDataAge);
         }
+
+        Files.writeString(completeMarker, OffsetDateTime.now().toString());
+    }
+
+    private void writeNameIndex(final SourceDataInfoSet dataInfo)
+    {
+        final SourceDataInfo locationInfo = dataInfo.get(DataType.LOCATIONS);
+        if (locationInfo == null)
+        {
+            return;
+        }
+
+        logger.info("Writing name index");
+        try (final FileLocationDao locationDao = new FileLocationDao(basePath))
+        {
+            locationDao.load();
+            final int termCount = new NameIndexWriter(basePath).writeData(IntStream.range(0, locationDao.size()).mapToObj(locationDao::getViewAt).iterator());
+            setStatus(DataType.NAME_INDEX, locationInfo.getLastModified(), termCount, NameIndex.FORMAT_VERSION);
+        }
+        catch (IOException exc)
+        {
+            throw new UncheckedIOException(exc);
+        }
+    }
+
+    private void writeHierarchyIndex(final SourceDataInfoSet dataInfo)
+    {
+        final SourceDataInfo locationInfo = dataInfo.get(DataType.LOCATIONS);
+        if (locationInfo == null || !Files.exists(basePath.resolve(FileHierarchyDao.HIERARCHY_DATA)))
+        {
+            return;
+        }
+
+        logger.info("Writing hierarchy index");
+        final int count = new FileHierarchyDao(basePath, new FileMetaDao(basePath), MmapBackend.GC).writeIndex();
+        setStatus(DataType.HIERARCHY_INDEX, locationInfo.getLastModified(), count, HierarchyIndex.FORMAT_VERSION);
+    }
+
+    private void writeSpatialIndexes(final SourceDataInfoSet dataInfo)
+    {
+        final SourceDataInfo locationInfo = dataInfo.get(DataType.LOCATIONS);
+        if (locationInfo == null)
+        {
+            return;
+        }
+
+        final SpatialIndexWriter spatialIndexWriter = new SpatialIndexWriter(basePath);
+        try (final FileLocationDao locationDao = new FileLocationDao(basePath))
+        {
+            locationDao.load();
+            final Map<Integer, MapFeature> featureCodes = new FileFeatureCodeDao(basePath).load();
+            final int proximityCount = spatialIndexWriter.writeProximityIndex(locationDao, RtreeRepository.getProximityFeatureIds(featureCodes));
+            setStatus(DataType.PROXIMITY_INDEX, locationInfo.getLastModified(), proximityCount, PackedRTree.FORMAT_VERSION);
+
+            final SourceDataInfo boundaryInfo = dataInfo.get(DataType.BOUNDARIES);
+            if (boundaryInfo != null && Files.exists(BoundaryMetaFile.path(basePath)))
+            {
+                final int boundaryCount = spatialIndexWriter.writeBoundaryIndex(locationDao);
+                setStatus(DataType.BOUNDARY_INDEX, boundaryInfo.getLastModified(), boundaryCount, PackedRTree.FORMAT_VERSION);
+            }
+        }
     }
 
     private Optional<OffsetDateTime> getLastModifiedFile(final Path directory)
@@ -287,15 +391,21 @@ public class DataImporterService
         return p -> supportedExtensions.contains(IoUtil.getExtension(p));
     }
 
-    private void ifExpired(final String type, final OffsetDateTime sourceTimestamp, Duration expiry, final Supplier<Integer> updater)
+    private void ifExpired(final String type, final OffsetDateTime sourceTimestamp, Duration expiry, final int formatVersion, final Supplier<Integer> updater)
     {
         logger.info("Checking data type: {}, max age: {}", type, expiry);
         final Optional<OffsetDateTime> localDataModifiedAt = getLastModified(type);
         logger.info("local last modified: {}", localDataModifiedAt.orElse(null));
-        if (localDataModifiedAt.isEmpty() || sourceTimestamp.isAfter(localDataModifiedAt.get().plusSeconds(maxDataAge.toSeconds())))
+        final boolean outdatedFormat = Optional.ofNullable(getSourceDataInfo().get(type)).map(i -> i.getFormatVersion() < formatVersion).orElse(false);
+        if (outdatedFormat)
+        {
+            logger.info("Local data of type {} is in an older format than version {}", type, formatVersion);
+        }
+
+        if (localDataModifiedAt.isEmpty() || outdatedFormat || sourceTimestamp.isAfter(localDataModifiedAt.get().plusSeconds(maxDataAge.toSeconds())))
         {
             final int count = updater.get();
-            setStatus(type, sourceTimestamp, count);
+            setStatus(type, sourceTimestamp, count, formatVersion);
         }
     }
 
@@ -36,6 +36,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.stream.Stream;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -49,7 +50,10 @@ import com.ethlo.geodata.dao.CountryDao;
 import com.ethlo.geodata.dao.FeatureCodeDao;
 import com.ethlo.geodata.dao.HierarchyDao;
 import com.ethlo.geodata.dao.TimeZoneDao;
+import com.ethlo.geodata.dao.file.ColumnarLocationDao;
 import com.ethlo.geodata.dao.file.FileIpDao;
+import com.ethlo.geodata.dao.file.FileLocationDao;
+import com.ethlo.geodata.io.RecordType;
 import com.ethlo.geodata.model.Coordinates;
 import com.ethlo.geodata.model.Country;
 import com.ethlo.geodata.model.RawLocation;
@@ -99,7 +103,7 @@ public class FileGeonamesImporter implements DataImporter
                                 final CountryDao countryDao,
                                 final ResourceUtil resourceUtil)
     {
-        this.locationWriter = new BinaryIndexedFileWriter<>(basePath, "locations", false)
+        this.locationWriter = new BinaryIndexedFileWriter<>(basePath, "locations", RecordType.UNCOMPRESSED_PREFIXED_LENGTH)
         {
             @Override
             protected void write(final RawLocation data, final DataOutputStream out) throws IOException
@@ -154,6 +158,14 @@ public class FileGeonamesImporter implements DataImporter
         {
             final int result = locationWriter.writeData(iter);
 
+            logger.info("Writing columnar locations");
+            final FileLocationDao locationDao = new FileLocationDao(basePath);
+            locationDao.load();
+            try (final Stream<RawLocation> locations = locationDao.stream())
+            {
+                new ColumnarLocationWriter(basePath).writeData(locations.sequential().iterator());
+            }
+
             logger.info("Writing countries");
             countryDao.save(countries.values());
 
@@ -185,6 +197,12 @@ public class FileGeonamesImporter implements DataImporter
         }
     }
 
+    @Override
+    public int formatVersion()
+    {
+        return ColumnarLocationDao.FORMAT_VERSION;
+    }
+
     @Override
     public OffsetDateTime lastRemoteModified() throws IOException
     {
@@ -0,0 +1,159 @@
+package com.ethlo.geodata.importer;
+
+/*-
+ * #%L
+ * geodata-importer
+ * %%
+ * Copyright (C) 2017 - 2020 Morten Haraldsen (ethlo)
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.springframework.util.FastByteArrayOutputStream;
+
+import com.ethlo.geodata.dao.file.NameIndex;
+import com.ethlo.geodata.io.VarInts;
+import com.ethlo.geodata.model.RawLocationView;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+
+/**
+ * Writes the name search index read by {@link NameIndex}. Every location is indexed, along with its map feature, so
+ * the server can apply its own feature filter when searching.
+ */
+public class NameIndexWriter
+{
+    public static final int BLOCK_SIZE = 16;
+
+    private final Path file;
+    private final Map<String, LongArrayList> postings = new HashMap<>();
+
+    public NameIndexWriter(final Path directory)
+    {
+        this.file = directory.resolve(NameIndex.FILE);
+    }
+
+    /**
+     * @return The number of distinct terms written
+     */
+    public int writeData(final Iterator<? extends RawLocationView> data) throws IOException
+    {
+        while (data.hasNext())
+        {
+            final RawLocationView location = data.next();
+            if (location.getName() != null)
+            {
+                postings.computeIfAbsent(NameIndex.normalize(location.getName()), k -> new LongArrayList())
+                        .add(((long) location.getId() << 32) | (location.getMapFeatureId() & 0xFFFFFFFFL));
+            }
+        }
+        return write();
+    }
+
+    private int write() throws IOException
+    {
+        final byte[][] terms = new byte[postings.size()][];
+        final LongArrayList[] termPostings = new LongArrayList[postings.size()];
+        final Integer[] order = new Integer[postings.size()];
+        int index = 0;
+        for (final Map.Entry<String, LongArrayList> entry : postings.entrySet())
+        {
+            terms[index] = entry.getKey().getBytes(StandardCharsets.UTF_8);
+            termPostings[index] = entry.getValue();
+            order[index] = index;
+            index++;
+        }
+        Arrays.sort(order, (a, b) -> Arrays.compareUnsigned(terms[a], terms[b]));
+
+        final int termCount = terms.length;
+        final int blockCount = NameIndex.blockCount(termCount, BLOCK_SIZE);
+        final int[] blockOffsets = new int[blockCount];
+        final IntArrayList postingStarts = new IntArrayList(termCount + 1);
+        final IntArrayList ids = new IntArrayList();
+        final IntArrayList mapFeatureIds = new IntArrayList();
+        final FastByteArrayOutputStream termData = new FastByteArrayOutputStream();
+        final DataOutputStream termOut = new DataOutputStream(termData);
+
+        byte[] previous = null;
+        for (int i = 0; i < termCount; i++)
+        {
+            final byte[] term = terms[order[i]];
+            if (i % BLOCK_SIZE == 0)
+            {
+                blockOffsets[i / BLOCK_SIZE] = termData.size();
+                VarInts.writeUnsigned(termOut, term.length);
+                termOut.write(term);
+            }
+            else
+            {
+                final int mismatch = Arrays.mismatch(previous, term);
+                final int shared = mismatch < 0 ? term.length : mismatch;
+                VarInts.writeUnsigned(termOut, shared);
+                VarInts.writeUnsigned(termOut, term.length - shared);
+                termOut.write(term, shared, term.length - shared);
+            }
+            previous = term;
+
+            // Postings ordered by location id
+            final long[] sorted = termPostings[order[i]].toLongArray();
+            Arrays.sort(sorted);
+            postingStarts.add(ids.size());
+            for (final long posting : sorted)
+            {
+                ids.add((int) (posting >> 32));
+                mapFeatureIds.add((int) posting);
+            }
+        }
+        postingStarts.add(ids.size());
+        termOut.flush();
+
+        try (final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file))))
+        {
+            out.writeInt(NameIndex.MAGIC);
+            out.writeInt(NameIndex.FORMAT_VERSION);
+            out.writeInt(termCount);
+            out.writeInt(BLOCK_SIZE);
+            out.writeInt(ids.size());
+            out.writeInt(termData.size());
+            writeInts(out, IntArrayList.wrap(blockOffsets));
+            writeInts(out, postingStarts);
+            writeInts(out, ids);
+            writeInts(out, mapFeatureIds);
+            termData.writeTo(out);
+        }
+
+        return termCount;
+    }
+
+    private static void writeInts(final DataOutputStream out, final IntArrayList values) throws IOException
+    {
+        for (int i = 0; i < values.size(); i++)
+        {
+            out.writeInt(values.getInt(i));
+        }
+    }
+}
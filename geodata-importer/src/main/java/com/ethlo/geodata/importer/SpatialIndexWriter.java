@@ -0,0 +1,87 @@
+package com.ethlo.geodata.importer;
+
+/*-
+ * #%L
+ * geodata-importer
+ * %%
+ * Copyright (C) 2017 - 2020 Morten Haraldsen (ethlo)
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import java.nio.file.Path;
+import java.util.Set;
+
+import org.locationtech.jts.geom.Envelope;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.ethlo.geodata.dao.LocationDao;
+import com.ethlo.geodata.dao.file.BoundaryMetaFile;
+import com.ethlo.geodata.dao.file.FileSpatialIndexDao;
+import com.ethlo.geodata.dao.file.PackedRTree;
+import com.ethlo.geodata.dao.file.RtreeRepository;
+
+/**
+ * Builds the packed spatial indexes at import time, so the server can map them instead of building them on startup
+ */
+public class SpatialIndexWriter
+{
+    private static final Logger logger = LoggerFactory.getLogger(SpatialIndexWriter.class);
+
+    private final Path basePath;
+
+    public SpatialIndexWriter(final Path basePath)
+    {
+        this.basePath = basePath;
+    }
+
+    /**
+     * Index the locations of the included map features, with the location id as value. The tree is the same as the
+     * server builds when there is no persisted index.
+     */
+    public int writeProximityIndex(final LocationDao locationDao, final Set<Integer> mapFeatureIds)
+    {
+        return write(RtreeRepository.buildProximityTree(locationDao, mapFeatureIds), FileSpatialIndexDao.PROXIMITY_FILE);
+    }
+
+    /**
+     * Index the boundaries of existing locations, with the row in the boundary metadata file as value
+     */
+    public int writeBoundaryIndex(final LocationDao locationDao)
+    {
+        final PackedRTree.Builder builder = PackedRTree.builder();
+        try (final BoundaryMetaFile metaFile = BoundaryMetaFile.load(basePath))
+        {
+            for (int row = 0; row < metaFile.size(); row++)
+            {
+                if (locationDao.exists(metaFile.getId(row)))
+                {
+                    final Envelope envelope = metaFile.getEnvelope(row);
+                    builder.add(envelope.getMinX(), envelope.getMinY(), envelope.getMaxX(), envelope.getMaxY(), row);
+                }
+            }
+        }
+        return write(builder.build(), FileSpatialIndexDao.BOUNDARIES_FILE);
+    }
+
+    private int write(final PackedRTree tree, final String filename)
+    {
+        tree.write(basePath.resolve(filename));
+        logger.info("Wrote {} with {} entries in {} KiB. Node fill factor: {}", filename, tree.size(), tree.getByteSize() / 1024, String.format("%.3f", tree.getFillFactor()));
+        return tree.size();
+    }
+}
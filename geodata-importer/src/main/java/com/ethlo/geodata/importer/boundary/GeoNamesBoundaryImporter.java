@@ -22,6 +22,7 @@ package com.ethlo.geodata.importer.boundary;
  * #L%
  */
 
+import java.io.BufferedOutputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.Reader;
@@ -52,11 +53,13 @@ import org.springframework.data.util.CloseableIterator;
 
 import com.ethlo.geodata.DataType;
 import com.ethlo.geodata.dao.LocationDao;
+import com.ethlo.geodata.dao.file.BoundaryMetaFile;
 import com.ethlo.geodata.importer.BinaryIndexedFileWriter;
 import com.ethlo.geodata.importer.CsvFileIterator;
 import com.ethlo.geodata.io.BinaryBoundaryEncoder;
+import com.ethlo.geodata.io.RecordType;
 import com.ethlo.geodata.model.BoundaryData;
-import com.ethlo.geodata.model.RawLocation;
+import com.ethlo.geodata.model.RawLocationView;
 import com.ethlo.geodata.util.GeometryUtil;
 import com.ethlo.geodata.util.Kml2GeoJson;
 import com.ethlo.geodata.util.SerializationUtil;
@@ -72,20 +75,23 @@ public class GeoNamesBoundaryImporter
     private final List<String> columns = Arrays.asList("id", "json");
     private final LocationDao locationDao;
     private final int maxTileSize;
+    private final Path baseDirectory;
 
     private final BinaryIndexedFileWriter<BoundaryData> binaryIndexedFileWriter;
-    private final Predicate<RawLocation> includeGeometryFilter;
+    private final Predicate<RawLocationView> includeGeometryFilter;
 
     public GeoNamesBoundaryImporter(final LocationDao locationDao,
                                     final Path baseDirectory,
                                     final int maxTileSize,
-                                    final Predicate<RawLocation> includeGeometryFilter)
+                                    final RecordType recordType,
+                                    final Predicate<RawLocationView> includeGeometryFilter)
     {
         this.locationDao = locationDao;
         this.maxTileSize = maxTileSize;
+        this.baseDirectory = baseDirectory;
         this.includeGeometryFilter = includeGeometryFilter;
 
-        this.binaryIndexedFileWriter = new BinaryIndexedFileWriter<>(baseDirectory, DataType.BOUNDARIES, true)
+        this.binaryIndexedFileWriter = new BinaryIndexedFileWriter<>(baseDirectory, DataType.BOUNDARIES, recordType)
         {
             @Override
             protected void write(final BoundaryData data, final DataOutputStream out) throws IOException
@@ -124,7 +130,7 @@ public class GeoNamesBoundaryImporter
                 return false;
             }
 
-            final Optional<RawLocation> location = locationDao.get(id);
+            final Optional<RawLocationView> location = locationDao.getView(id);
             if (location.isEmpty())
             {
                 return false;
@@ -246,6 +252,20 @@ public class GeoNamesBoundaryImporter
 
     public int write(final Iterator<BoundaryData> data) throws IOException
     {
-        return this.binaryIndexedFileWriter.writeData(data);
+        try (final DataOutputStream metaOut = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(BoundaryMetaFile.path(baseDirectory)))))
+        {
+            BoundaryMetaFile.writeHeader(metaOut);
+            return this.binaryIndexedFileWriter.writeData(data, (boundary, offset) ->
+            {
+                try
+                {
+                    BoundaryMetaFile.writeRecord(metaOut, boundary, offset);
+                }
+                catch (IOException exc)
+                {
+                    throw new UncheckedIOException(exc);
+                }
+            });
+        }
     }
 }
@@ -0,0 +1,70 @@
+package com.ethlo.geodata.importer;
+
+/*-
+ * #%L
+ * geodata-importer
+ * %%
+ * Copyright (C) 2017 - 2020 Morten Haraldsen (ethlo)
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.ethlo.geodata.dao.file.ColumnarLocationDao;
+import com.ethlo.geodata.model.Coordinates;
+import com.ethlo.geodata.model.RawLocation;
+import com.ethlo.geodata.model.RawLocationView;
+
+public class ColumnarLocationWriterTest
+{
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testRoundTrip() throws IOException
+    {
+        final RawLocation oslo = new RawLocation(3143244, "Oslo", "NO", Coordinates.from(59.91273, 10.74609), 12, 580000L, 3, 23);
+        final RawLocation europe = new RawLocation(6255148, "Europe", null, Coordinates.from(48.69096, 9.14062), 2, 0L, 1, Integer.MIN_VALUE);
+        final RawLocation aero = new RawLocation(2624886, "Ærøskøbing", "DK", Coordinates.from(54.88803, 10.41117), 12, 951L, 4, -5);
+        final List<RawLocation> locations = Arrays.asList(oslo, europe, aero);
+
+        assertThat(new ColumnarLocationWriter(tempDir).writeData(locations.iterator())).isEqualTo(3);
+
+        final ColumnarLocationDao dao = new ColumnarLocationDao(tempDir);
+        assertThat(dao.load()).isEqualTo(3);
+        for (final RawLocation expected : locations)
+        {
+            assertThat(dao.get(expected.getId())).contains(expected);
+            final RawLocationView view = dao.getView(expected.getId()).orElseThrow();
+            assertThat(view.getName()).isEqualTo(expected.getName());
+            assertThat(view.getCountryCode()).isEqualTo(expected.getCountryCode());
+            assertThat(view.getLat()).isEqualTo(expected.getLat());
+            assertThat(view.getElevation()).isEqualTo(expected.getElevation());
+        }
+        assertThat(dao.get(1)).isEmpty();
+        assertThat(dao.stream().map(RawLocation::getId).collect(Collectors.toList())).containsExactly(aero.getId(), oslo.getId(), europe.getId());
+    }
+}
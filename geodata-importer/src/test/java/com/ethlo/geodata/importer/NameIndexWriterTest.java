@@ -0,0 +1,128 @@
+package com.ethlo.geodata.importer;
+
+/*-
+ * #%L
+ * geodata-importer
+ * %%
+ * Copyright (C) 2017 - 2020 Morten Haraldsen (ethlo)
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.ethlo.geodata.dao.file.MmapBackend;
+import com.ethlo.geodata.dao.file.NameIndex;
+import com.ethlo.geodata.model.Coordinates;
+import com.ethlo.geodata.model.RawLocation;
+
+public class NameIndexWriterTest
+{
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testFindClosest() throws IOException
+    {
+        final List<RawLocation> locations = new ArrayList<>();
+        locations.add(location(3, "Oslo", 1));
+        locations.add(location(1, "oslo", 2));
+        locations.add(location(2, "Osaka", 1));
+        locations.add(location(4, "Ærøskøbing", 1));
+        locations.add(location(5, "Bergen", 1));
+        locations.add(location(6, "Østfold", 1));
+        for (int i = 0; i < 40; i++)
+        {
+            locations.add(location(100 + i, "Place " + i, 1));
+        }
+
+        final int terms = new NameIndexWriter(tempDir).writeData(locations.iterator());
+        assertThat(terms).isEqualTo(45);
+
+        try (final NameIndex index = NameIndex.open(tempDir.resolve(NameIndex.FILE), MmapBackend.GC))
+        {
+            assertThat(index.getTermCount()).isEqualTo(45);
+            assertThat(index.getPostingCount()).isEqualTo(46);
+
+            // Prefix match, with the postings of a term ordered by id
+            assertThat(find(index, "os")).containsExactly(2, 1, 3, 6);
+            assertThat(find(index, "OSLO")).containsExactly(1, 3);
+
+            // Closest keys when nothing starts with the whole name
+            assertThat(find(index, "Oslofjord")).containsExactly(1, 3);
+            assertThat(find(index, "Berlin")).containsExactly(5);
+
+            // Folded to ASCII
+            assertThat(find(index, "aero")).containsExactly(4);
+            assertThat(find(index, "Ost")).containsExactly(6);
+
+            // Across blocks
+            assertThat(find(index, "place 3")).containsExactly(103, 130, 131, 132, 133, 134, 135, 136, 137, 138, 139);
+
+            assertThat(find(index, "xyz")).isEmpty();
+        }
+    }
+
+    @Test
+    public void testFindClosestAmongCandidates() throws IOException
+    {
+        // Only feature 1 is searchable, so the longer match on the name of the feature 2 location does not count
+        final List<RawLocation> locations = new ArrayList<>();
+        locations.add(location(1, "Oslo", 1));
+        locations.add(location(2, "Oslofjord", 2));
+        locations.add(location(3, "Oslo S", 2));
+        locations.add(location(4, "Bergen", 1));
+        new NameIndexWriter(tempDir).writeData(locations.iterator());
+
+        try (final NameIndex index = NameIndex.open(tempDir.resolve(NameIndex.FILE), MmapBackend.GC))
+        {
+            final BitSet candidates = index.findTerms(mapFeatureId -> mapFeatureId == 1);
+            assertThat(candidates.cardinality()).isEqualTo(2);
+
+            assertThat(find(index, "Oslofjorden")).containsExactly(2);
+            assertThat(find(index, "Oslofjorden", candidates)).containsExactly(1, 3, 2);
+            assertThat(find(index, "Oslo S", candidates)).containsExactly(1, 3, 2);
+            assertThat(find(index, "Oslofjord", candidates)).containsExactly(1, 3, 2);
+            assertThat(find(index, "Bergenhus", candidates)).containsExactly(4);
+            assertThat(find(index, "Trondheim", candidates)).isEmpty();
+        }
+    }
+
+    private List<Integer> find(final NameIndex index, final String name)
+    {
+        return find(index, name, null);
+    }
+
+    private List<Integer> find(final NameIndex index, final String name, final BitSet candidates)
+    {
+        final List<Integer> ids = new ArrayList<>();
+        index.findClosest(name, candidates, (id, mapFeatureId) -> ids.add(id));
+        return ids;
+    }
+
+    private RawLocation location(final int id, final String name, final int mapFeatureId)
+    {
+        return new RawLocation(id, name, "NO", Coordinates.from(60, 10), mapFeatureId, 0L, 1, 0);
+    }
+}
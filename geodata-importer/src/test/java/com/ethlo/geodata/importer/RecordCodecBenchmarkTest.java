@@ -0,0 +1,104 @@
+package com.ethlo.geodata.importer;
+
+
+/*-
+ * #%L
+ * geodata-importer
+ * %%
+ * Copyright (C) 2017 - 2020 Morten Haraldsen (ethlo)
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.stream.XMLStreamException;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.io.ParseException;
+import org.locationtech.jts.simplify.TopologyPreservingSimplifier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.ethlo.geodata.io.BinaryBoundaryEncoder;
+import com.ethlo.geodata.io.RecordCodec;
+import com.ethlo.geodata.io.RecordType;
+
+/**
+ * Encoded size and decode time of boundary records for each record codec. Not part of the unit tests, run with
+ * <code>mvn test -Pbenchmark</code>.
+ */
+@Tag("benchmark")
+public class RecordCodecBenchmarkTest
+{
+    private static final Logger logger = LoggerFactory.getLogger(RecordCodecBenchmarkTest.class);
+    private static final int ITERATIONS = 2_000;
+    private static final double[] TOLERANCES = {0, 0.0001, 0.001, 0.01, 0.1};
+
+    @Test
+    public void benchmarkBoundaryDecoding() throws IOException, XMLStreamException, ParseException
+    {
+        // The sample boundary at several levels of detail, to get records of different sizes
+        final Geometry geometry = RecordCodecTest.sampleBoundary();
+        final List<byte[]> records = new ArrayList<>();
+        long rawSize = 0;
+        for (final double tolerance : TOLERANCES)
+        {
+            final byte[] record = RecordCodecTest.encode(tolerance > 0 ? TopologyPreservingSimplifier.simplify(geometry, tolerance) : geometry);
+            records.add(record);
+            rawSize += record.length;
+        }
+
+        for (final RecordType type : RecordType.values())
+        {
+            final RecordCodec codec = RecordCodec.forType(type);
+            final List<byte[]> encoded = new ArrayList<>();
+            long encodedSize = 0;
+            for (final byte[] record : records)
+            {
+                final byte[] e = codec.encode(record);
+                encoded.add(e);
+                encodedSize += e.length;
+            }
+
+            decodeAll(codec, encoded);
+            final long start = System.nanoTime();
+            decodeAll(codec, encoded);
+            final long nanosPerRecord = (System.nanoTime() - start) / ((long) ITERATIONS * encoded.size());
+            logger.info("{} records: {}, size: {} of {} bytes, decode: {} ns/record", type.getCodecName(), encoded.size(), encodedSize, rawSize, nanosPerRecord);
+        }
+    }
+
+    private void decodeAll(final RecordCodec codec, final List<byte[]> encoded) throws IOException
+    {
+        for (int iteration = 0; iteration < ITERATIONS; iteration++)
+        {
+            for (final byte[] e : encoded)
+            {
+                try (final DataInputStream in = new DataInputStream(codec.decode(new ByteArrayInputStream(e), e.length)))
+                {
+                    BinaryBoundaryEncoder.readGeometry(in);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.ethlo.geodata.importer;
+
+
+/*-
+ * #%L
+ * geodata-importer
+ * %%
+ * Copyright (C) 2017 - 2020 Morten Haraldsen (ethlo)
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+
+import javax.xml.stream.XMLStreamException;
+
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.io.ParseException;
+import org.locationtech.jts.io.geojson.GeoJsonReader;
+import org.springframework.core.io.ClassPathResource;
+
+import com.ethlo.geodata.io.BinaryBoundaryEncoder;
+import com.ethlo.geodata.io.RecordCodec;
+import com.ethlo.geodata.io.RecordType;
+import com.ethlo.geodata.model.BoundaryData;
+import com.ethlo.geodata.util.Kml2GeoJson;
+import com.google.common.io.ByteStreams;
+
+public class RecordCodecTest
+{
+    @Test
+    public void testBoundaryRoundTrip() throws IOException, XMLStreamException, ParseException
+    {
+        final Geometry geometry = sampleBoundary();
+        final byte[] record = encode(geometry);
+
+        for (final RecordType type : RecordType.values())
+        {
+            final RecordCodec codec = RecordCodec.forType(type);
+            assertThat(codec.getType()).isEqualTo(type);
+
+            final byte[] encoded = codec.encode(record);
+            assertThat(decode(codec, encoded)).as(type.getCodecName()).isEqualTo(record);
+            try (final DataInputStream in = new DataInputStream(codec.decode(new ByteArrayInputStream(encoded), encoded.length));
+                 final DataInputStream expected = new DataInputStream(new ByteArrayInputStream(record)))
+            {
+                final Geometry decoded = BinaryBoundaryEncoder.readGeometry(in).getGeometry();
+                assertThat(decoded.equalsExact(BinaryBoundaryEncoder.readGeometry(expected).getGeometry())).as(type.getCodecName()).isTrue();
+            }
+        }
+    }
+
+    static Geometry sampleBoundary() throws IOException, XMLStreamException, ParseException
+    {
+        return new GeoJsonReader().read(Kml2GeoJson.parse(new InputStreamReader(new ClassPathResource("sample_boundary.kml").getInputStream())).toString());
+    }
+
+    static byte[] encode(final Geometry geometry) throws IOException
+    {
+        final ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bout);
+        BinaryBoundaryEncoder.write(new BoundaryData(1, 0, geometry.getEnvelopeInternal(), geometry.getArea(), geometry), out);
+        out.flush();
+        return bout.toByteArray();
+    }
+
+    private static byte[] decode(final RecordCodec codec, final byte[] encoded) throws IOException
+    {
+        try (final InputStream in = codec.decode(new ByteArrayInputStream(encoded), encoded.length))
+        {
+            return ByteStreams.toByteArray(in);
+        }
+    }
+}
@@ -27,4 +27,8 @@ public class DataType
     public static final String IP = "ip";
     public static final String LOCATIONS = "locations";
     public static final String BOUNDARIES = "boundaries";
+    public static final String PROXIMITY_INDEX = "proximity_index";
+    public static final String BOUNDARY_INDEX = "boundary_index";
+    public static final String NAME_INDEX = "name_index";
+    public static final String HIERARCHY_INDEX = "hierarchy_index";
 }
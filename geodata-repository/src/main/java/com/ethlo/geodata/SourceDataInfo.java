@@ -33,13 +33,20 @@ public class SourceDataInfo
     private final int count;
     private final OffsetDateTime lastModified;
     private final String type;
+    private final int formatVersion;
+
+    public SourceDataInfo(String type, int count, OffsetDateTime lastModified)
+    {
+        this(type, count, lastModified, null);
+    }
 
     @JsonCreator
-    public SourceDataInfo(@JsonProperty("type") String type, @JsonProperty("count") int count, @JsonProperty("lastModified") OffsetDateTime lastModified)
+    public SourceDataInfo(@JsonProperty("type") String type, @JsonProperty("count") int count, @JsonProperty("lastModified") OffsetDateTime lastModified, @JsonProperty("formatVersion") Integer formatVersion)
     {
         this.type = type;
         this.count = count;
         this.lastModified = lastModified;
+        this.formatVersion = formatVersion != null ? formatVersion : 1;
     }
 
     public int getCount()
@@ -57,6 +64,14 @@ public class SourceDataInfo
         return type;
     }
 
+    /**
+     * @return The version of the on-disk format the data was written in. Data written before versioning was introduced is version 1.
+     */
+    public int getFormatVersion()
+    {
+        return formatVersion;
+    }
+
     @Override
     public boolean equals(final Object o)
     {
@@ -77,6 +92,7 @@ public class SourceDataInfo
     {
         return "type=" + type +
                 ", count=" + count +
-                ", lastModified=" + lastModified;
+                ", lastModified=" + lastModified +
+                ", formatVersion=" + formatVersion;
     }
 }
\ No newline at end of file
@@ -38,6 +38,21 @@ public class SourceDataInfoSet
         return entry.orElse(null);
     }
 
+    /**
+     * @return True if the derived data was built in the given format version from the last import of the source data
+     */
+    public boolean isBuiltFrom(final String derivedType, final String sourceType, final int formatVersion)
+    {
+        final SourceDataInfo derivedInfo = get(derivedType);
+        final SourceDataInfo sourceInfo = get(sourceType);
+        return derivedInfo != null
+                && sourceInfo != null
+                && derivedInfo.getFormatVersion() == formatVersion
+                && derivedInfo.getLastModified() != null
+                && sourceInfo.getLastModified() != null
+                && derivedInfo.getLastModified().isEqual(sourceInfo.getLastModified());
+    }
+
     public void add(final SourceDataInfo sourceDataInfo)
     {
         data.remove(sourceDataInfo);
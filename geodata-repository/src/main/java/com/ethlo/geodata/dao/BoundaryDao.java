@@ -23,6 +23,7 @@ package com.ethlo.geodata.dao;
  */
 
 import java.util.Optional;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 import org.locationtech.jts.geom.Geometry;
@@ -31,6 +32,18 @@ import com.ethlo.geodata.model.RTreePayload;
 
 public interface BoundaryDao
 {
+    /**
+     * Load the index of the boundaries, if not already loaded
+     *
+     * @return The number of boundaries, counting each sub-division
+     */
+    int load();
+
+    /**
+     * @return The distinct ids of the locations with a boundary, in ascending order
+     */
+    IntStream getIds();
+
     Stream<RTreePayload> stream();
 
     Optional<Geometry> findGeometryById(int id);
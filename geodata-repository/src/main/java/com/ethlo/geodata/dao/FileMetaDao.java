@@ -36,6 +36,11 @@ public class FileMetaDao implements MetaDao
 {
     public static final String FILE = "metadata.json";
 
+    /**
+     * Written by the importer when all data files are complete, so it is the last file to appear in a new data directory
+     */
+    public static final String COMPLETE = "import.complete";
+
     private final Path metaFile;
 
     public FileMetaDao(@Value("${geodata.base-path}") final Path basePath)
@@ -0,0 +1,89 @@
+package com.ethlo.geodata.dao;
+
+/*-
+ * #%L
+ * geodata-repository
+ * %%
+ * Copyright (C) 2017 - 2020 Morten Haraldsen (ethlo)
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import java.io.Closeable;
+
+/**
+ * Navigation of the location hierarchy by ordinal, the position of a location in the hierarchy
+ */
+public interface Hierarchy extends Closeable
+{
+    int NO_PARENT = -1;
+
+    int size();
+
+    /**
+     * @return True if the ordinals of this hierarchy are the dense ordinals of the {@link LocationDao}
+     */
+    boolean isLocationOrdinals();
+
+    /**
+     * @return The ordinal of the location, or a negative value if it is not part of the hierarchy
+     */
+    int ordinal(int id);
+
+    /**
+     * @return True if the location has a parent or children
+     */
+    boolean contains(int id);
+
+    int getId(int ordinal);
+
+    /**
+     * @return The ordinal of the parent, or {@link #NO_PARENT}
+     */
+    int getParentOrdinal(int ordinal);
+
+    /**
+     * @return The id of the parent, or {@link #NO_PARENT} if the location has none or is not part of the hierarchy
+     */
+    int getParentId(int id);
+
+    /**
+     * @return The ids of the children of the location, ordered by id
+     */
+    int[] getChildIds(int id);
+
+    int getChildCount(int ordinal);
+
+    /**
+     * @return The ordinal of the child at the index, in the order of {@link #getChildOrdinals(int)}
+     */
+    int getChildOrdinal(int ordinal, int index);
+
+    /**
+     * @return The ordinals of the children of the location with the ordinal, ordered by id
+     */
+    int[] getChildOrdinals(int ordinal);
+
+    long getByteSize();
+
+    /**
+     * @return True if the data is memory mapped from a file rather than held on the heap
+     */
+    boolean isMapped();
+
+    @Override
+    void close();
+}
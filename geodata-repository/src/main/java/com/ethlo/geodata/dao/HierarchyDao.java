@@ -29,4 +29,6 @@ public interface HierarchyDao
     void save(Map<Integer, Integer> childToParent);
 
     Map<Integer, Integer> load();
+
+    Hierarchy loadIndex();
 }
@@ -26,6 +26,7 @@ import java.util.Optional;
 import java.util.stream.Stream;
 
 import com.ethlo.geodata.model.RawLocation;
+import com.ethlo.geodata.model.RawLocationView;
 
 public interface LocationDao
 {
@@ -35,5 +36,50 @@ public interface LocationDao
 
     Optional<RawLocation> get(int id);
 
+    /**
+     * Check for the presence of a location without reading it
+     */
+    boolean exists(int id);
+
+    /**
+     * @return The dense ordinal of the location, its position when all locations are ordered by id, or -1 if not present
+     */
+    int ordinalOf(int id);
+
+    /**
+     * @return The id of the location with the ordinal
+     */
+    int idOf(int ordinal);
+
+    /**
+     * Look up a location by its dense ordinal
+     */
+    default RawLocationView getViewAt(int ordinal)
+    {
+        return getView(idOf(ordinal)).orElseThrow();
+    }
+
+    /**
+     * Look up a location without necessarily materializing all of its fields
+     */
+    default Optional<RawLocationView> getView(int id)
+    {
+        return Optional.ofNullable(get(id).orElse(null));
+    }
+
+    /**
+     * Visit the id, feature and coordinates of every location, in a single thread, without materializing the locations
+     */
+    default void forEachPoint(PointVisitor visitor)
+    {
+        stream().sequential().forEach(l -> visitor.visit(l.getId(), l.getMapFeatureId(), l.getLat(), l.getLng()));
+    }
+
     int size();
+
+    @FunctionalInterface
+    interface PointVisitor
+    {
+        void visit(int id, int mapFeatureId, double lat, double lng);
+    }
 }
\ No newline at end of file
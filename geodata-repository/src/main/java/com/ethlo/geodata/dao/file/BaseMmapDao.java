@@ -23,84 +23,126 @@ package com.ethlo.geodata.dao.file;
  */
 
 import java.io.BufferedInputStream;
+import java.io.Closeable;
 import java.io.DataInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.AbstractMap;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 import org.apache.commons.io.input.BoundedInputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.util.Assert;
 
+import com.ethlo.geodata.LoadProgressListener;
+import com.ethlo.geodata.io.RecordCodec;
 import com.ethlo.geodata.io.RecordType;
 import com.ethlo.geodata.util.CompressionUtil;
-import com.google.common.collect.ArrayListMultimap;
-import com.google.common.primitives.Ints;
+import com.ethlo.geodata.util.MemoryAccountable;
+import com.ethlo.geodata.util.MemoryAccounting;
 
-public class BaseMmapDao
+public class BaseMmapDao implements Closeable, MemoryAccountable, Warmable
 {
+    /**
+     * Record type byte and block size preceding each record
+     */
+    protected static final int RECORD_HEADER_SIZE = 1 + 4;
+
+    /**
+     * Leading value of an index with 64-bit offsets, followed by the entry count. Older indexes start directly with the
+     * (non-negative) entry count and hold 32-bit offsets.
+     */
+    public static final int LONG_OFFSET_INDEX_MARKER = -2;
+
+    private static final Logger logger = LoggerFactory.getLogger(BaseMmapDao.class);
+
     private final Path indexPath;
     private final Path dataPath;
+    private final String alias;
+    private final MmapBackend backend;
 
-    private ArrayListMultimap<Integer, Integer> indexMap;
+    private IdOffsetIndex index;
     private ByteBufferHolder byteBufferHolder;
+    private WarmupPolicy warmupPolicy = WarmupPolicy.NONE;
 
     public BaseMmapDao(Path basePath, String alias)
+    {
+        this(basePath, alias, MmapBackend.GC);
+    }
+
+    public BaseMmapDao(Path basePath, String alias, MmapBackend backend)
     {
         this.indexPath = basePath.resolve(alias + ".index");
         this.dataPath = basePath.resolve(alias + ".data");
+        this.alias = alias;
+        this.backend = backend;
     }
 
-    public int load()
+    public synchronized int load()
     {
-        if (indexMap == null)
+        if (index == null)
         {
-            loadIndex();
-            if (!indexMap.isEmpty())
+            this.index = loadIndex();
+            if (index.size() > 0)
             {
-                this.byteBufferHolder = new ByteBufferHolder(dataPath);
+                this.byteBufferHolder = new ByteBufferHolder(dataPath, backend);
             }
         }
-        return indexMap.size();
+        return index.size();
     }
 
-    private void loadIndex()
+    private IdOffsetIndex loadIndex()
     {
-        this.indexMap = ArrayListMultimap.create();
-
         if (Files.exists(indexPath))
         {
             try (final InputStream indexIn = Files.newInputStream(indexPath))
             {
-                final byte[] countBuffer = new byte[4];
-                Assert.isTrue(indexIn.read(countBuffer) == 4, "Expected to read 4 bytes");
-                final int entries = Ints.fromByteArray(countBuffer);
+                final DataInputStream headerIn = new DataInputStream(indexIn);
+                final int header = headerIn.readInt();
+                final boolean longOffsets = header == LONG_OFFSET_INDEX_MARKER;
+                final int entries = longOffsets ? headerIn.readInt() : header;
+                Assert.isTrue(entries >= 0, "Invalid index header in " + indexPath);
 
+                final int[] ids = new int[entries];
+                final long[] offsets = new long[entries];
                 try (final DataInputStream compressedIndexIn = new DataInputStream(CompressionUtil.decompress(new BufferedInputStream(indexIn))))
                 {
                     for (int i = 0; i < entries; i++)
                     {
-                        final int id = compressedIndexIn.readInt();
-                        final int offset = compressedIndexIn.readInt();
-                        indexMap.put(id, offset);
+                        ids[i] = compressedIndexIn.readInt();
+                        offsets[i] = longOffsets ? compressedIndexIn.readLong() : compressedIndexIn.readInt();
                     }
                 }
+
+                final IdOffsetIndex loaded = IdOffsetIndex.of(ids, offsets);
+                logger.info("Loaded index {} with {} entries for {} ids. Heap size: {} KiB (as ArrayListMultimap: ~{} KiB)",
+                        indexPath.getFileName(), loaded.size(), loaded.distinctIds(), loaded.getHeapSize() / 1024,
+                        IdOffsetIndex.estimateMultimapHeapSize(loaded.size(), loaded.distinctIds()) / 1024);
+                return loaded;
             }
             catch (IOException exc)
             {
                 throw new UncheckedIOException(exc);
             }
         }
+        return IdOffsetIndex.empty();
     }
 
     protected Stream<Map.Entry<Integer, DataInputStream>> rawIterator()
     {
-        return indexMap.entries().parallelStream().map(e -> new AbstractMap.SimpleEntry<>(e.getKey(), getInputStream(e.getValue())));
+        return IntStream.range(0, index.size())
+                .parallel()
+                .mapToObj(i -> new AbstractMap.SimpleEntry<>(index.getIdAt(i), getInputStream(index.getOffsetAt(i))));
     }
 
     protected DataInputStream getInputStream(long position)
@@ -111,8 +153,8 @@ public class BaseMmapDao
             final int typeInfo = in.readUnsignedByte();
             final int blockSize = in.readInt();
 
-            final BoundedInputStream bounded = new BoundedInputStream(in, blockSize);
-            return new DataInputStream(typeInfo == RecordType.LZMA2_PREFIXED_LENGTH.getId() ? CompressionUtil.decompress(bounded) : bounded);
+            final RecordCodec codec = RecordCodec.forType(RecordType.from(typeInfo));
+            return new DataInputStream(codec.decode(new BoundedInputStream(in, blockSize), blockSize));
         }
         catch (IOException exc)
         {
@@ -120,24 +162,118 @@ public class BaseMmapDao
         }
     }
 
-    protected Integer getOffset(final int id)
+    protected ByteBuffer getSegment(final long offset)
+    {
+        return byteBufferHolder.getSegment(offset);
+    }
+
+    protected int getSegmentPosition(final long offset)
+    {
+        return byteBufferHolder.getSegmentPosition(offset);
+    }
+
+    /**
+     * @return The offset of the record, or -1 if not present
+     */
+    protected long findOffset(final int id, final int subIndex)
+    {
+        return index.getOffset(id, subIndex);
+    }
+
+    protected Long getOffset(final int id)
     {
         return getOffset(id, 0);
     }
 
-    protected Integer getOffset(final int id, int subIndex)
+    protected Long getOffset(final int id, int subIndex)
     {
-        final List<Integer> parts = indexMap.get(id);
-        return parts.size() > subIndex ? parts.get(subIndex) : null;
+        final long offset = index.getOffset(id, subIndex);
+        return offset >= 0 ? offset : null;
     }
 
     public boolean exists(int id)
     {
-        return this.indexMap.containsKey(id);
+        return this.index.contains(id);
+    }
+
+    /**
+     * @return The position of the first record of the id in id order, or -1 if not present
+     */
+    protected int indexOf(final int id)
+    {
+        return index.indexOf(id);
+    }
+
+    protected int getIdAt(final int index)
+    {
+        return this.index.getIdAt(index);
     }
 
     public int size()
     {
-        return indexMap.size();
+        return index.size();
+    }
+
+    @Override
+    public void registerMemory(final MemoryAccounting accounting)
+    {
+        accounting.register(alias, () ->
+        {
+            final IdOffsetIndex current = index;
+            return current != null ? current.getHeapSize() : 0;
+        }, () ->
+        {
+            final ByteBufferHolder current = byteBufferHolder;
+            return current != null ? current.length() : 0;
+        }, this::sampleResidency);
+    }
+
+    @Override
+    public void warmUp(final WarmupPolicy policy, final LoadProgressListener progressListener)
+    {
+        // The pages are touched outside the monitor, so loading is not held up by the warm-up
+        final List<MappedByteBuffer> mappings;
+        synchronized (this)
+        {
+            load();
+            this.warmupPolicy = policy;
+            mappings = getMappings();
+        }
+        MappedWarmup.warmUp(alias, mappings, policy, MappedWarmup.hotRegionsPath(dataPath), progressListener);
+    }
+
+    @Override
+    public synchronized void saveHotRegions()
+    {
+        if (warmupPolicy == WarmupPolicy.HOT && byteBufferHolder != null)
+        {
+            MappedWarmup.saveHotRegions(byteBufferHolder.getMappings(), MappedWarmup.hotRegionsPath(dataPath));
+        }
+    }
+
+    @Override
+    public double sampleResidency()
+    {
+        return MappedWarmup.sampleResidency(getMappings());
+    }
+
+    private List<MappedByteBuffer> getMappings()
+    {
+        final ByteBufferHolder current = byteBufferHolder;
+        return current != null ? current.getMappings() : Collections.emptyList();
+    }
+
+    /**
+     * Release the index and the mapped data. The DAO can be loaded again afterwards.
+     */
+    @Override
+    public synchronized void close()
+    {
+        if (byteBufferHolder != null)
+        {
+            byteBufferHolder.close();
+            byteBufferHolder = null;
+        }
+        index = null;
     }
 }
@@ -0,0 +1,181 @@
+package com.ethlo.geodata.dao.file;
+
+/*-
+ * #%L
+ * geodata-repository
+ * %%
+ * Copyright (C) 2017 - 2020 Morten Haraldsen (ethlo)
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import java.io.Closeable;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.locationtech.jts.geom.Envelope;
+
+import com.ethlo.geodata.model.BoundaryMetadata;
+import com.ethlo.geodata.model.RTreePayload;
+
+/**
+ * Fixed-width sidecar to the boundary data file, holding the metadata of each boundary record along with its offset
+ * in the data file. Reading it avoids decoding the geometry payloads when only the envelopes are needed.
+ * <p>
+ * Layout: int magic, int version, then one record per boundary: int id, int subdivide index, float minLat, float maxLat,
+ * float minLng, float maxLng, double area, long offset.
+ */
+public class BoundaryMetaFile implements Closeable
+{
+    public static final String FILE = "boundaries.meta";
+    public static final int MAGIC = 0x4744424d;
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 8;
+    public static final int RECORD_SIZE = 40;
+
+    private final ByteBuffer data;
+    private final MmapBackend backend;
+    private final int size;
+
+    private BoundaryMetaFile(final ByteBuffer data, final MmapBackend backend)
+    {
+        this.data = data;
+        this.backend = backend;
+        this.size = (data.limit() - HEADER_SIZE) / RECORD_SIZE;
+    }
+
+    public static Path path(final Path basePath)
+    {
+        return basePath.resolve(FILE);
+    }
+
+    public static BoundaryMetaFile load(final Path basePath)
+    {
+        return open(basePath, MmapBackend.GC);
+    }
+
+    /**
+     * Map the metadata file, after checking its magic, version and that it holds whole records
+     */
+    public static BoundaryMetaFile open(final Path basePath, final MmapBackend backend)
+    {
+        final Path file = path(basePath);
+        try (final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+        {
+            final MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (data.limit() < HEADER_SIZE || data.getInt(0) != MAGIC || data.getInt(4) != VERSION || (data.limit() - HEADER_SIZE) % RECORD_SIZE != 0)
+            {
+                throw new IllegalStateException("Invalid boundary metadata file " + file);
+            }
+            MappedFiles.register(1, data.capacity());
+            return new BoundaryMetaFile(data, backend);
+        }
+        catch (IOException exc)
+        {
+            throw new UncheckedIOException(exc);
+        }
+    }
+
+    public static void writeHeader(final DataOutput out) throws IOException
+    {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+    }
+
+    public static void writeRecord(final DataOutput out, final BoundaryMetadata metadata, final long offset) throws IOException
+    {
+        final Envelope mbr = metadata.getMbr();
+        out.writeInt(metadata.getId());
+        out.writeInt(metadata.getSubDivideIndex());
+        // Rounded outward, so the stored envelope still covers the whole boundary
+        out.writeFloat(PackedRTree.Builder.floatBelow(mbr.getMinY()));
+        out.writeFloat(PackedRTree.Builder.floatAbove(mbr.getMaxY()));
+        out.writeFloat(PackedRTree.Builder.floatBelow(mbr.getMinX()));
+        out.writeFloat(PackedRTree.Builder.floatAbove(mbr.getMaxX()));
+        out.writeDouble(metadata.getArea());
+        out.writeLong(offset);
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    public long getByteSize()
+    {
+        return data.capacity();
+    }
+
+    public int getId(final int row)
+    {
+        return data.getInt(position(row));
+    }
+
+    public int getSubdivideIndex(final int row)
+    {
+        return data.getInt(position(row) + 4);
+    }
+
+    public Envelope getEnvelope(final int row)
+    {
+        final int position = position(row);
+        final float minLat = data.getFloat(position + 8);
+        final float maxLat = data.getFloat(position + 12);
+        final float minLng = data.getFloat(position + 16);
+        final float maxLng = data.getFloat(position + 20);
+        return new Envelope(minLng, maxLng, minLat, maxLat);
+    }
+
+    public double getArea(final int row)
+    {
+        return data.getDouble(position(row) + 24);
+    }
+
+    public long getOffset(final int row)
+    {
+        return data.getLong(position(row) + 32);
+    }
+
+    public RTreePayload getPayload(final int row)
+    {
+        return new RTreePayload(getId(row), getSubdivideIndex(row), getArea(row), getEnvelope(row));
+    }
+
+    public Stream<RTreePayload> stream()
+    {
+        return IntStream.range(0, size).mapToObj(this::getPayload);
+    }
+
+    private int position(final int row)
+    {
+        return HEADER_SIZE + row * RECORD_SIZE;
+    }
+
+    @Override
+    public void close()
+    {
+        backend.release((MappedByteBuffer) data);
+        MappedFiles.unregister(1, data.capacity());
+    }
+}
@@ -22,36 +22,70 @@ package com.ethlo.geodata.dao.file;
  * #L%
  */
 
-import java.io.DataInputStream;
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.RandomAccessFile;
 import java.io.UncheckedIOException;
 import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
 
-import com.ethlo.geodata.io.ByteBufferBackedInputStream;
-import com.google.common.primitives.Ints;
-
-public class ByteBufferHolder
+/**
+ * Maps a file of any size as a series of read-only segments. Each segment overlaps the start of the next one, so that
+ * any record shorter than the overlap can be read from a single segment. Longer records are read through
+ * {@link #getInputStream(long)}, which continues across segment boundaries.
+ * <p>
+ * On {@link #close()} the segments are released according to the {@link MmapBackend}.
+ */
+public class ByteBufferHolder implements Closeable
 {
-    private final ByteBuffer internalBuffer;
+    public static final int DEFAULT_SEGMENT_SIZE = 1 << 30;
+    public static final int DEFAULT_OVERLAP = 1 << 16;
+
+    private final MappedByteBuffer[] mappings;
+    private final ByteBuffer[] segments;
+    private final int segmentSize;
+    private final long length;
+    private final MmapBackend backend;
 
-    private final ThreadLocal<ByteBuffer> readOnlyBuffers = new ThreadLocal<>()
+    private volatile boolean closed;
+
+    public ByteBufferHolder(final Path dataPath)
     {
-        @Override
-        protected ByteBuffer initialValue()
+        this(dataPath, MmapBackend.GC);
+    }
+
+    public ByteBufferHolder(final Path dataPath, final MmapBackend backend)
+    {
+        this(dataPath, DEFAULT_SEGMENT_SIZE, DEFAULT_OVERLAP, backend);
+    }
+
+    ByteBufferHolder(final Path dataPath, final int segmentSize, final int overlap, final MmapBackend backend)
+    {
+        if (segmentSize <= 0 || overlap < 0 || (long) segmentSize + overlap > Integer.MAX_VALUE)
         {
-            return internalBuffer.asReadOnlyBuffer();
+            throw new IllegalArgumentException("Invalid segment size " + segmentSize + " and overlap " + overlap);
         }
-    };
 
-    public ByteBufferHolder(final Path dataPath)
-    {
+        this.segmentSize = segmentSize;
+        this.backend = backend;
         try (final RandomAccessFile file = new RandomAccessFile(dataPath.toFile(), "r"); final FileChannel channel = file.getChannel())
         {
-            this.internalBuffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, file.length()).asReadOnlyBuffer();
+            this.length = file.length();
+            this.mappings = new MappedByteBuffer[(int) ((length + segmentSize - 1) / segmentSize)];
+            this.segments = new ByteBuffer[mappings.length];
+            for (int i = 0; i < segments.length; i++)
+            {
+                final long start = (long) i * segmentSize;
+                final long size = Math.min((long) segmentSize + overlap, length - start);
+                mappings[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+                segments[i] = mappings[i].asReadOnlyBuffer();
+            }
+            MappedFiles.register(mappings.length, mappedSize());
         }
         catch (IOException e)
         {
@@ -59,10 +93,130 @@ public class ByteBufferHolder
         }
     }
 
+    /**
+     * @return The shared, read-only segment containing the position. Only use absolute reads on it, as it is shared between threads
+     */
+    public ByteBuffer getSegment(final long position)
+    {
+        if (closed)
+        {
+            throw new IllegalStateException("The mapped data has been closed");
+        }
+        return segments[(int) (position / segmentSize)];
+    }
+
+    /**
+     * @return The position within the segment returned by {@link #getSegment(long)}
+     */
+    public int getSegmentPosition(final long position)
+    {
+        return (int) (position % segmentSize);
+    }
+
+    public long length()
+    {
+        return length;
+    }
+
+    /**
+     * @return The underlying mappings, for warm-up and residency sampling
+     */
+    List<MappedByteBuffer> getMappings()
+    {
+        if (closed)
+        {
+            throw new IllegalStateException("The mapped data has been closed");
+        }
+        return List.of(mappings);
+    }
+
     public InputStream getInputStream(final long position)
     {
-        final ByteBuffer byteBuffer = readOnlyBuffers.get();
-        byteBuffer.position(Ints.checkedCast(position));
-        return new DataInputStream(new ByteBufferBackedInputStream(byteBuffer));
+        return new SegmentedInputStream(position);
+    }
+
+    @Override
+    public synchronized void close()
+    {
+        if (closed)
+        {
+            return;
+        }
+
+        closed = true;
+        MappedFiles.unregister(mappings.length, mappedSize());
+        for (final MappedByteBuffer mapping : mappings)
+        {
+            backend.release(mapping);
+        }
+        Arrays.fill(segments, null);
+        Arrays.fill(mappings, null);
+    }
+
+    private long mappedSize()
+    {
+        long size = 0;
+        for (final MappedByteBuffer mapping : mappings)
+        {
+            size += mapping.capacity();
+        }
+        return size;
+    }
+
+    private class SegmentedInputStream extends InputStream
+    {
+        private long position;
+
+        private SegmentedInputStream(final long position)
+        {
+            this.position = position;
+        }
+
+        @Override
+        public int read()
+        {
+            if (position >= length)
+            {
+                return -1;
+            }
+            final int value = getSegment(position).get(getSegmentPosition(position)) & 0xFF;
+            position++;
+            return value;
+        }
+
+        @Override
+        public int read(final byte[] bytes, final int off, final int len)
+        {
+            if (len == 0)
+            {
+                return 0;
+            }
+
+            if (position >= length)
+            {
+                return -1;
+            }
+
+            final ByteBuffer segment = getSegment(position);
+            final int segmentPosition = getSegmentPosition(position);
+            final int count = Math.min(len, segment.limit() - segmentPosition);
+            segment.get(segmentPosition, bytes, off, count);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public long skip(final long n)
+        {
+            final long skipped = Math.max(0, Math.min(n, length - position));
+            position += skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available()
+        {
+            return (int) Math.min(Integer.MAX_VALUE, length - position);
+        }
     }
 }
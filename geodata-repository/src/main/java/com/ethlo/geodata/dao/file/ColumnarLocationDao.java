@@ -0,0 +1,467 @@
+package com.ethlo.geodata.dao.file;
+
+/*-
+ * #%L
+ * geodata-repository
+ * %%
+ * Copyright (C) 2017 - 2020 Morten Haraldsen (ethlo)
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import com.ethlo.geodata.LoadProgressListener;
+import com.ethlo.geodata.dao.LocationDao;
+import com.ethlo.geodata.model.Coordinates;
+import com.ethlo.geodata.model.RawLocation;
+import com.ethlo.geodata.model.RawLocationView;
+import com.ethlo.geodata.util.MemoryAccountable;
+import com.ethlo.geodata.util.MemoryAccounting;
+
+/**
+ * Location store with one memory mapped column per field, ordered by id. Coordinates are stored as fixed-point integers
+ * and names in a shared UTF-8 pool addressed by an offsets column.
+ */
+public class ColumnarLocationDao implements LocationDao, Closeable, MemoryAccountable, Warmable
+{
+    public static final String FILE = "locations.columns";
+    public static final int MAGIC = 0x47444c43;
+    public static final int FORMAT_VERSION = 2;
+    public static final double FIXED_POINT_SCALE = 10_000_000D;
+
+    private final Path file;
+    private final MmapBackend backend;
+
+    private Map<LocationColumn, MappedByteBuffer> columns;
+    private int rows;
+    private IntBuffer ids;
+    private IntBuffer lats;
+    private IntBuffer lngs;
+    private IntBuffer mapFeatureIds;
+    private LongBuffer populations;
+    private IntBuffer timeZoneIds;
+    private IntBuffer elevations;
+    private ShortBuffer countryCodes;
+    private IntBuffer nameOffsets;
+    private ByteBuffer names;
+    private WarmupPolicy warmupPolicy = WarmupPolicy.NONE;
+    private volatile boolean closed;
+
+    public ColumnarLocationDao(final Path basePath)
+    {
+        this(basePath, MmapBackend.GC);
+    }
+
+    public ColumnarLocationDao(final Path basePath, final MmapBackend backend)
+    {
+        this.file = basePath.resolve(FILE);
+        this.backend = backend;
+    }
+
+    public static boolean exists(final Path basePath)
+    {
+        return Files.exists(basePath.resolve(FILE));
+    }
+
+    public static int headerSize()
+    {
+        return 4 * Integer.BYTES + LocationColumn.values().length * 2 * Long.BYTES;
+    }
+
+    public static int toFixedPoint(final double value)
+    {
+        return (int) Math.round(value * FIXED_POINT_SCALE);
+    }
+
+    public static double fromFixedPoint(final int value)
+    {
+        return value / FIXED_POINT_SCALE;
+    }
+
+    /**
+     * @return The two-letter country code packed into a short, or 0 if it is missing
+     */
+    public static short packCountryCode(final String countryCode)
+    {
+        if (countryCode == null || countryCode.isEmpty())
+        {
+            return 0;
+        }
+
+        if (countryCode.length() != 2 || countryCode.charAt(0) > 0xFF || countryCode.charAt(1) > 0xFF)
+        {
+            throw new IllegalArgumentException("Not a two-letter country code: " + countryCode);
+        }
+        return (short) ((countryCode.charAt(0) << 8) | countryCode.charAt(1));
+    }
+
+    public static String unpackCountryCode(final short packed)
+    {
+        if (packed == 0)
+        {
+            return null;
+        }
+        return new String(new char[]{(char) ((packed >> 8) & 0xFF), (char) (packed & 0xFF)});
+    }
+
+    @Override
+    public synchronized int load()
+    {
+        if (columns != null)
+        {
+            return rows;
+        }
+
+        try (final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+        {
+            final ByteBuffer header = ByteBuffer.allocate(headerSize());
+            while (header.hasRemaining())
+            {
+                if (channel.read(header, header.position()) < 0)
+                {
+                    throw new IllegalStateException("Unexpected end of file in header of " + file);
+                }
+            }
+            header.flip();
+            final int magic = header.getInt();
+            final int version = header.getInt();
+            if (magic != MAGIC || version != FORMAT_VERSION)
+            {
+                throw new IllegalStateException("Unsupported columnar location file " + file + ", version " + version);
+            }
+            this.rows = header.getInt();
+            final int columnCount = header.getInt();
+            if (columnCount != LocationColumn.values().length)
+            {
+                throw new IllegalStateException("Expected " + LocationColumn.values().length + " columns in " + file + ", found " + columnCount);
+            }
+
+            final Map<LocationColumn, MappedByteBuffer> columns = new EnumMap<>(LocationColumn.class);
+            long mappedBytes = 0;
+            for (final LocationColumn column : LocationColumn.values())
+            {
+                final long offset = header.getLong();
+                final long length = header.getLong();
+                columns.put(column, channel.map(FileChannel.MapMode.READ_ONLY, offset, length));
+                mappedBytes += length;
+            }
+            MappedFiles.register(columns.size(), mappedBytes);
+
+            this.ids = columns.get(LocationColumn.ID).asIntBuffer();
+            this.lats = columns.get(LocationColumn.LAT).asIntBuffer();
+            this.lngs = columns.get(LocationColumn.LNG).asIntBuffer();
+            this.mapFeatureIds = columns.get(LocationColumn.MAP_FEATURE_ID).asIntBuffer();
+            this.populations = columns.get(LocationColumn.POPULATION).asLongBuffer();
+            this.timeZoneIds = columns.get(LocationColumn.TIME_ZONE_ID).asIntBuffer();
+            this.elevations = columns.get(LocationColumn.ELEVATION).asIntBuffer();
+            this.countryCodes = columns.get(LocationColumn.COUNTRY_CODE).asShortBuffer();
+            this.nameOffsets = columns.get(LocationColumn.NAME_OFFSET).asIntBuffer();
+            this.names = columns.get(LocationColumn.NAME);
+            this.columns = columns;
+            this.closed = false;
+            return rows;
+        }
+        catch (IOException exc)
+        {
+            throw new UncheckedIOException(exc);
+        }
+    }
+
+    @Override
+    public Stream<RawLocation> stream()
+    {
+        checkOpen();
+        return IntStream.range(0, rows).parallel().mapToObj(this::materialize);
+    }
+
+    @Override
+    public Optional<RawLocation> get(final int id)
+    {
+        checkOpen();
+        final int row = rowOf(id);
+        return row >= 0 ? Optional.of(materialize(row)) : Optional.empty();
+    }
+
+    @Override
+    public Optional<RawLocationView> getView(final int id)
+    {
+        checkOpen();
+        final int row = rowOf(id);
+        return row >= 0 ? Optional.of(new ColumnarLocation(row)) : Optional.empty();
+    }
+
+    @Override
+    public boolean exists(final int id)
+    {
+        checkOpen();
+        return rowOf(id) >= 0;
+    }
+
+    @Override
+    public int ordinalOf(final int id)
+    {
+        checkOpen();
+        return rowOf(id);
+    }
+
+    @Override
+    public int idOf(final int ordinal)
+    {
+        checkOpen();
+        return ids.get(ordinal);
+    }
+
+    @Override
+    public RawLocationView getViewAt(final int ordinal)
+    {
+        checkOpen();
+        return new ColumnarLocation(ordinal);
+    }
+
+    /**
+     * @return The ids of all locations in ordinal order
+     */
+    public int[] getIds()
+    {
+        checkOpen();
+        final int[] result = new int[rows];
+        ids.get(0, result);
+        return result;
+    }
+
+    @Override
+    public void forEachPoint(final PointVisitor visitor)
+    {
+        checkOpen();
+        for (int row = 0; row < rows; row++)
+        {
+            visitor.visit(ids.get(row), mapFeatureIds.get(row), fromFixedPoint(lats.get(row)), fromFixedPoint(lngs.get(row)));
+        }
+    }
+
+    @Override
+    public int size()
+    {
+        return rows;
+    }
+
+    @Override
+    public void registerMemory(final MemoryAccounting accounting)
+    {
+        accounting.register("locations", () -> 0, () ->
+        {
+            final Map<LocationColumn, MappedByteBuffer> current = columns;
+            return current != null ? current.values().stream().mapToLong(MappedByteBuffer::capacity).sum() : 0;
+        }, this::sampleResidency);
+    }
+
+    @Override
+    public void warmUp(final WarmupPolicy policy, final LoadProgressListener progressListener)
+    {
+        // The pages are touched outside the monitor, so loading is not held up by the warm-up
+        final List<MappedByteBuffer> mappings;
+        synchronized (this)
+        {
+            load();
+            this.warmupPolicy = policy;
+            mappings = getMappings();
+        }
+        MappedWarmup.warmUp("locations", mappings, policy, MappedWarmup.hotRegionsPath(file), progressListener);
+    }
+
+    @Override
+    public synchronized void saveHotRegions()
+    {
+        if (warmupPolicy == WarmupPolicy.HOT && columns != null)
+        {
+            MappedWarmup.saveHotRegions(getMappings(), MappedWarmup.hotRegionsPath(file));
+        }
+    }
+
+    @Override
+    public double sampleResidency()
+    {
+        return MappedWarmup.sampleResidency(getMappings());
+    }
+
+    private List<MappedByteBuffer> getMappings()
+    {
+        final Map<LocationColumn, MappedByteBuffer> current = columns;
+        return current != null ? new ArrayList<>(current.values()) : Collections.emptyList();
+    }
+
+    /**
+     * Release the mapped columns. The DAO can be loaded again afterwards.
+     */
+    @Override
+    public synchronized void close()
+    {
+        if (columns == null)
+        {
+            return;
+        }
+
+        // The column views are kept, so a read racing with closing fails in checkOpen() instead of with a NullPointerException
+        final Map<LocationColumn, MappedByteBuffer> released = columns;
+        columns = null;
+        closed = true;
+
+        long mappedBytes = 0;
+        for (final MappedByteBuffer column : released.values())
+        {
+            mappedBytes += column.capacity();
+            backend.release(column);
+        }
+        MappedFiles.unregister(released.size(), mappedBytes);
+    }
+
+    private void checkOpen()
+    {
+        if (closed)
+        {
+            throw new IllegalStateException("The mapped data has been closed");
+        }
+    }
+
+    private int rowOf(final int id)
+    {
+        int low = 0;
+        int high = rows - 1;
+        while (low <= high)
+        {
+            final int mid = (low + high) >>> 1;
+            final int midVal = ids.get(mid);
+            if (midVal < id)
+            {
+                low = mid + 1;
+            }
+            else if (midVal > id)
+            {
+                high = mid - 1;
+            }
+            else
+            {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private String getName(final int row)
+    {
+        final int start = nameOffsets.get(row);
+        final byte[] bytes = new byte[nameOffsets.get(row + 1) - start];
+        names.get(start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private RawLocation materialize(final int row)
+    {
+        return new RawLocation(ids.get(row),
+                getName(row),
+                unpackCountryCode(countryCodes.get(row)),
+                Coordinates.from(fromFixedPoint(lats.get(row)), fromFixedPoint(lngs.get(row))),
+                mapFeatureIds.get(row),
+                populations.get(row),
+                timeZoneIds.get(row),
+                elevations.get(row));
+    }
+
+    private class ColumnarLocation implements RawLocationView
+    {
+        private final int row;
+
+        private ColumnarLocation(final int row)
+        {
+            this.row = row;
+        }
+
+        @Override
+        public int getId()
+        {
+            return ids.get(row);
+        }
+
+        @Override
+        public String getName()
+        {
+            return ColumnarLocationDao.this.getName(row);
+        }
+
+        @Override
+        public String getCountryCode()
+        {
+            return unpackCountryCode(countryCodes.get(row));
+        }
+
+        @Override
+        public double getLat()
+        {
+            return fromFixedPoint(lats.get(row));
+        }
+
+        @Override
+        public double getLng()
+        {
+            return fromFixedPoint(lngs.get(row));
+        }
+
+        @Override
+        public int getMapFeatureId()
+        {
+            return mapFeatureIds.get(row);
+        }
+
+        @Override
+        public long getPopulation()
+        {
+            return populations.get(row);
+        }
+
+        @Override
+        public int getTimeZoneId()
+        {
+            return timeZoneIds.get(row);
+        }
+
+        @Override
+        public int getElevation()
+        {
+            return elevations.get(row);
+        }
+    }
+}
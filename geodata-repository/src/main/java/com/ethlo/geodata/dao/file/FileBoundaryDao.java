@@ -25,29 +25,57 @@ package com.ethlo.geodata.dao.file;
 import java.io.DataInputStream;
 import java.io.IOException;
 import java.io.UncheckedIOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Optional;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 import org.locationtech.jts.geom.Geometry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import com.ethlo.geodata.dao.BoundaryDao;
 import com.ethlo.geodata.io.BinaryBoundaryEncoder;
-import com.ethlo.geodata.model.BoundaryData;
 import com.ethlo.geodata.model.BoundaryMetadata;
 import com.ethlo.geodata.model.RTreePayload;
 
 public class FileBoundaryDao extends BaseMmapDao implements BoundaryDao
 {
+    private static final Logger logger = LoggerFactory.getLogger(FileBoundaryDao.class);
+
+    private final Path basePath;
+    private final MmapBackend backend;
+
     public FileBoundaryDao(final Path basePath)
     {
-        super(basePath, "boundaries");
+        this(basePath, MmapBackend.GC);
+    }
+
+    public FileBoundaryDao(final Path basePath, final MmapBackend backend)
+    {
+        super(basePath, "boundaries", backend);
+        this.basePath = basePath;
+        this.backend = backend;
     }
 
     @Override
     public Stream<RTreePayload> stream()
     {
-        super.load();
+        final int size = super.load();
+        if (Files.exists(BoundaryMetaFile.path(basePath)))
+        {
+            try (final BoundaryMetaFile metaFile = BoundaryMetaFile.open(basePath, backend))
+            {
+                if (metaFile.size() == size && isOffsetsMatching(metaFile))
+                {
+                    // Copied out, so the file is released before the stream is consumed
+                    return metaFile.stream().toList().stream();
+                }
+            }
+            logger.warn("Boundary metadata file does not match the {} entries of the index. Reading metadata from the data file", size);
+        }
+
         return super.rawIterator().map(e ->
         {
             try (final DataInputStream in = e.getValue())
@@ -62,22 +90,46 @@ public class FileBoundaryDao extends BaseMmapDao implements BoundaryDao
         });
     }
 
+    private boolean isOffsetsMatching(final BoundaryMetaFile metaFile)
+    {
+        for (int row = 0; row < metaFile.size(); row++)
+        {
+            if (findOffset(metaFile.getId(row), metaFile.getSubdivideIndex(row)) != metaFile.getOffset(row))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
     @Override
     public Optional<Geometry> findGeometryById(final int id)
     {
-        return Optional.ofNullable(getOffset(id))
-                .map(this::getInputStream)
-                .map(BinaryBoundaryEncoder::readGeometry)
-                .map(BoundaryData::getGeometry);
+        return Optional.ofNullable(getOffset(id)).map(this::readGeometryAt);
     }
 
     @Override
     public Optional<Geometry> findGeometryById(final int id, final int subdivideIndex)
     {
-        return Optional.ofNullable(getOffset(id, subdivideIndex))
-                .map(this::getInputStream)
-                .map(BinaryBoundaryEncoder::readGeometry)
-                .map(BoundaryData::getGeometry);
+        return Optional.ofNullable(getOffset(id, subdivideIndex)).map(this::readGeometryAt);
+    }
+
+    private Geometry readGeometryAt(final long offset)
+    {
+        try (final DataInputStream in = getInputStream(offset))
+        {
+            return BinaryBoundaryEncoder.readGeometry(in).getGeometry();
+        }
+        catch (IOException exc)
+        {
+            throw new UncheckedIOException(exc);
+        }
+    }
+
+    @Override
+    public IntStream getIds()
+    {
+        return IntStream.range(0, size()).map(this::getIdAt).distinct();
     }
 
     @Override
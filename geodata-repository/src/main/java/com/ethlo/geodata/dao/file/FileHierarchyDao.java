@@ -33,23 +33,49 @@ import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
 import java.util.Map;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Repository;
 
+import com.ethlo.geodata.DataType;
+import com.ethlo.geodata.SourceDataInfoSet;
+import com.ethlo.geodata.dao.Hierarchy;
 import com.ethlo.geodata.dao.HierarchyDao;
+import com.ethlo.geodata.dao.MetaDao;
 import com.ethlo.geodata.io.IntIntMapSerializer;
 import com.ethlo.geodata.util.CompressionUtil;
 
 @Repository
 public class FileHierarchyDao implements HierarchyDao
 {
+    private static final Logger logger = LoggerFactory.getLogger(FileHierarchyDao.class);
+
     public static final String HIERARCHY_DATA = "hierarchy.data";
     final IntIntMapSerializer serializer = new IntIntMapSerializer();
     private final Path basePath;
+    private final MetaDao metaDao;
+    private final MmapBackend backend;
+
+    @Autowired
+    public FileHierarchyDao(@Value("${geodata.base-path}") final Path basePath, final MetaDao metaDao)
+    {
+        this(basePath, metaDao, MmapBackend.GC);
+    }
 
-    public FileHierarchyDao(@Value("${geodata.base-path}") final Path basePath)
+    public FileHierarchyDao(final Path basePath, final MetaDao metaDao, final MmapBackend backend)
     {
         this.basePath = basePath;
+        this.metaDao = metaDao;
+        this.backend = backend;
+    }
+
+    public static boolean isCurrent(final Path basePath, final SourceDataInfoSet dataInfoSet)
+    {
+        return dataInfoSet.isBuiltFrom(DataType.HIERARCHY_INDEX, DataType.LOCATIONS, HierarchyIndex.FORMAT_VERSION)
+                && Files.exists(basePath.resolve(HierarchyIndex.FILE));
     }
 
     @Override
@@ -91,4 +117,54 @@ public class FileHierarchyDao implements HierarchyDao
             throw new UncheckedIOException(e);
         }
     }
+
+    @Override
+    public Hierarchy loadIndex()
+    {
+        final Path indexPath = basePath.resolve(HierarchyIndex.FILE);
+        try
+        {
+            if (isCurrent(basePath, metaDao.load()))
+            {
+                return HierarchyIndex.open(indexPath, backend);
+            }
+            logger.info("No current hierarchy index, building it from {}", HIERARCHY_DATA);
+        }
+        catch (RuntimeException exc)
+        {
+            logger.warn("Unable to use {}, rebuilding the hierarchy from {}: {}", indexPath, HIERARCHY_DATA, exc.getMessage());
+        }
+        return buildIndex(load());
+    }
+
+    /**
+     * Write the hierarchy index for the saved hierarchy and the current locations
+     *
+     * @return The number of locations in the hierarchy
+     */
+    public int writeIndex()
+    {
+        final HierarchyIndex index = buildIndex(load());
+        index.write(basePath.resolve(HierarchyIndex.FILE));
+        return index.size();
+    }
+
+    /**
+     * Build the hierarchy in the dense ordinal space of the columnar locations when they are available
+     */
+    private HierarchyIndex buildIndex(final Map<Integer, Integer> childToParent)
+    {
+        if (!ColumnarLocationDao.exists(basePath))
+        {
+            return HierarchyIndex.of(childToParent);
+        }
+
+        final int[] locationIds;
+        try (final ColumnarLocationDao locationDao = new ColumnarLocationDao(basePath, backend))
+        {
+            locationDao.load();
+            locationIds = locationDao.getIds();
+        }
+        return HierarchyIndex.of(childToParent, locationIds);
+    }
 }
@@ -25,13 +25,16 @@ package com.ethlo.geodata.dao.file;
 import java.io.DataInputStream;
 import java.io.IOException;
 import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
 import java.nio.file.Path;
 import java.util.Optional;
 import java.util.stream.Stream;
 
 import com.ethlo.geodata.DataType;
 import com.ethlo.geodata.dao.LocationDao;
+import com.ethlo.geodata.io.RecordType;
 import com.ethlo.geodata.model.RawLocation;
+import com.ethlo.geodata.model.RawLocationView;
 
 public class FileLocationDao extends BaseMmapDao implements LocationDao
 {
@@ -40,6 +43,11 @@ public class FileLocationDao extends BaseMmapDao implements LocationDao
         super(basePath, DataType.LOCATIONS);
     }
 
+    public FileLocationDao(final Path basePath, final MmapBackend backend)
+    {
+        super(basePath, DataType.LOCATIONS, backend);
+    }
+
     @Override
     public int load()
     {
@@ -70,7 +78,38 @@ public class FileLocationDao extends BaseMmapDao implements LocationDao
         return Optional.ofNullable(super.getOffset(id)).map(this::readDataAtOffset);
     }
 
-    private RawLocation readDataAtOffset(final Integer offset)
+    @Override
+    public int ordinalOf(final int id)
+    {
+        return indexOf(id);
+    }
+
+    @Override
+    public int idOf(final int ordinal)
+    {
+        return getIdAt(ordinal);
+    }
+
+    @Override
+    public Optional<RawLocationView> getView(final int id)
+    {
+        final long offset = findOffset(id, 0);
+        if (offset < 0)
+        {
+            return Optional.empty();
+        }
+
+        final ByteBuffer segment = getSegment(offset);
+        final int position = getSegmentPosition(offset);
+        final boolean contiguous = position + RECORD_HEADER_SIZE + (long) segment.getInt(position + 1) <= segment.limit();
+        if (segment.get(position) != RecordType.UNCOMPRESSED_PREFIXED_LENGTH.getId() || !contiguous)
+        {
+            return Optional.of(readDataAtOffset(offset));
+        }
+        return Optional.of(new MappedRawLocation(segment, position + RECORD_HEADER_SIZE));
+    }
+
+    private RawLocation readDataAtOffset(final long offset)
     {
         final DataInputStream in = getInputStream(offset);
         final RawLocation l = new RawLocation();
@@ -0,0 +1,73 @@
+package com.ethlo.geodata.dao.file;
+
+/*-
+ * #%L
+ * geodata-repository
+ * %%
+ * Copyright (C) 2017 - 2020 Morten Haraldsen (ethlo)
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.ethlo.geodata.DataType;
+import com.ethlo.geodata.SourceDataInfoSet;
+import com.ethlo.geodata.dao.MetaDao;
+
+/**
+ * Access to the name search index written by the importer. The index is only used when it was written in the current
+ * format from the last location import, otherwise the caller is expected to build its own.
+ */
+public class FileNameIndexDao
+{
+    private static final Logger logger = LoggerFactory.getLogger(FileNameIndexDao.class);
+
+    private final Path basePath;
+    private final MetaDao metaDao;
+    private final MmapBackend backend;
+
+    public FileNameIndexDao(final Path basePath, final MetaDao metaDao, final MmapBackend backend)
+    {
+        this.basePath = basePath;
+        this.metaDao = metaDao;
+        this.backend = backend;
+    }
+
+    public static boolean isCurrent(final Path basePath, final SourceDataInfoSet dataInfoSet)
+    {
+        return dataInfoSet.isBuiltFrom(DataType.NAME_INDEX, DataType.LOCATIONS, NameIndex.FORMAT_VERSION)
+                && Files.exists(basePath.resolve(NameIndex.FILE));
+    }
+
+    public Optional<NameIndex> load()
+    {
+        if (!isCurrent(basePath, metaDao.load()))
+        {
+            logger.info("No current name index");
+            return Optional.empty();
+        }
+
+        final NameIndex index = NameIndex.open(basePath.resolve(NameIndex.FILE), backend);
+        logger.info("Mapped name index with {} terms and {} postings", index.getTermCount(), index.getPostingCount());
+        return Optional.of(index);
+    }
+}
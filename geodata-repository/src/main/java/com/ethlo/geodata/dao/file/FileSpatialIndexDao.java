@@ -0,0 +1,119 @@
+package com.ethlo.geodata.dao.file;
+
+/*-
+ * #%L
+ * geodata-repository
+ * %%
+ * Copyright (C) 2017 - 2020 Morten Haraldsen (ethlo)
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.ethlo.geodata.DataType;
+import com.ethlo.geodata.SourceDataInfoSet;
+import com.ethlo.geodata.dao.MetaDao;
+
+/**
+ * Access to the spatial indexes persisted by the importer. An index is only used when it was written in the current
+ * format from the same source data as the one it indexes, otherwise the caller is expected to build it in memory.
+ */
+public class FileSpatialIndexDao
+{
+    public static final String PROXIMITY_FILE = "proximity.rtree";
+    public static final String BOUNDARIES_FILE = "boundaries.rtree";
+
+    private static final Logger logger = LoggerFactory.getLogger(FileSpatialIndexDao.class);
+
+    private final Path basePath;
+    private final MetaDao metaDao;
+    private final MmapBackend backend;
+
+    public FileSpatialIndexDao(final Path basePath, final MetaDao metaDao, final MmapBackend backend)
+    {
+        this.basePath = basePath;
+        this.metaDao = metaDao;
+        this.backend = backend;
+    }
+
+    /**
+     * @return True if the index exists and was built in the current format from the data last imported for the source type
+     */
+    public static boolean isCurrent(final Path basePath, final SourceDataInfoSet dataInfoSet, final String indexType, final String sourceType)
+    {
+        return dataInfoSet.isBuiltFrom(indexType, sourceType, PackedRTree.FORMAT_VERSION)
+                && Files.exists(basePath.resolve(getFile(indexType)));
+    }
+
+    public static String getFile(final String indexType)
+    {
+        switch (indexType)
+        {
+            case DataType.PROXIMITY_INDEX:
+                return PROXIMITY_FILE;
+
+            case DataType.BOUNDARY_INDEX:
+                return BOUNDARIES_FILE;
+
+            default:
+                throw new IllegalArgumentException("Unknown index type: " + indexType);
+        }
+    }
+
+    /**
+     * @return The proximity index of administrative locations, with location ids as values
+     */
+    public Optional<PackedRTree> loadProximityIndex()
+    {
+        return load(DataType.PROXIMITY_INDEX, DataType.LOCATIONS);
+    }
+
+    /**
+     * @return The boundary index, with rows of the {@link BoundaryMetaFile} as values
+     */
+    public Optional<PackedRTree> loadBoundaryIndex()
+    {
+        if (!Files.exists(BoundaryMetaFile.path(basePath)))
+        {
+            return Optional.empty();
+        }
+        return load(DataType.BOUNDARY_INDEX, DataType.BOUNDARIES);
+    }
+
+    public BoundaryMetaFile loadBoundaryMetadata()
+    {
+        return BoundaryMetaFile.open(basePath, backend);
+    }
+
+    private Optional<PackedRTree> load(final String indexType, final String sourceType)
+    {
+        if (!isCurrent(basePath, metaDao.load(), indexType, sourceType))
+        {
+            logger.info("No current persisted index of type {}", indexType);
+            return Optional.empty();
+        }
+
+        final PackedRTree tree = PackedRTree.open(basePath.resolve(getFile(indexType)), backend);
+        logger.info("Mapped persisted index of type {} with {} entries", indexType, tree.size());
+        return Optional.of(tree);
+    }
+}
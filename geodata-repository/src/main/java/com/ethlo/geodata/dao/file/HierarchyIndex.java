@@ -0,0 +1,358 @@
+package com.ethlo.geodata.dao.file;
+
+/*-
+ * #%L
+ * geodata-repository
+ * %%
+ * Copyright (C) 2017 - 2020 Morten Haraldsen (ethlo)
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Map;
+
+import com.ethlo.geodata.dao.Hierarchy;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+
+/**
+ * The location hierarchy in compressed sparse row form. Every location in the hierarchy has an ordinal, its position in
+ * the sorted id array, which indexes the parent array and the child offset array. The children of a location are the
+ * child ordinals between its offset and the next, ordered by id. The same layout is used on the heap and on disk, so a
+ * persisted hierarchy can be memory mapped and navigated without any per-location objects.
+ * <p>
+ * When built from the location ids, the ordinals are the same as the dense location ordinals of the
+ * {@link com.ethlo.geodata.dao.LocationDao}, see {@link #isLocationOrdinals()}, so a location and its place in the
+ * hierarchy are found with a single id lookup.
+ * <p>
+ * Layout: int magic, int version, int location count, int child count, int flags, then int[count] ids, int[count]
+ * parent ordinals (-1 for none), int[count + 1] child offsets and int[child count] child ordinals.
+ */
+public class HierarchyIndex implements Hierarchy
+{
+    public static final String FILE = "hierarchy.csr";
+    public static final int MAGIC = 0x47444843;
+    public static final int FORMAT_VERSION = 2;
+
+    private static final int HEADER_SIZE = 5 * Integer.BYTES;
+    private static final int FLAG_LOCATION_ORDINALS = 1;
+
+    private final ByteBuffer data;
+    private final MmapBackend backend;
+    private final int size;
+    private final int flags;
+    private final IntBuffer ids;
+    private final IntBuffer parents;
+    private final IntBuffer childOffsets;
+    private final IntBuffer children;
+
+    private HierarchyIndex(final ByteBuffer data, final MmapBackend backend)
+    {
+        this.data = data;
+        this.backend = backend;
+        if (data.getInt(0) != MAGIC || data.getInt(4) != FORMAT_VERSION)
+        {
+            throw new IllegalStateException("Unsupported hierarchy data, version " + data.getInt(4));
+        }
+        this.size = data.getInt(8);
+        final int childCount = data.getInt(12);
+        this.flags = data.getInt(16);
+        int position = HEADER_SIZE;
+        this.ids = slice(position, size);
+        position += size * Integer.BYTES;
+        this.parents = slice(position, size);
+        position += size * Integer.BYTES;
+        this.childOffsets = slice(position, size + 1);
+        position += (size + 1) * Integer.BYTES;
+        this.children = slice(position, childCount);
+    }
+
+    /**
+     * Build the hierarchy on the heap from child to parent references. A location referencing itself as parent is ignored.
+     */
+    public static HierarchyIndex of(final Map<Integer, Integer> childToParent)
+    {
+        final IntArrayList allIds = new IntArrayList(childToParent.size() * 2);
+        childToParent.forEach((child, parent) ->
+        {
+            allIds.add(child.intValue());
+            allIds.add(parent.intValue());
+        });
+        final int[] sortedIds = allIds.toIntArray();
+        Arrays.parallelSort(sortedIds);
+        int size = 0;
+        for (int i = 0; i < sortedIds.length; i++)
+        {
+            if (i == 0 || sortedIds[i] != sortedIds[i - 1])
+            {
+                sortedIds[size++] = sortedIds[i];
+            }
+        }
+        return build(childToParent, Arrays.copyOf(sortedIds, size), 0);
+    }
+
+    /**
+     * Build the hierarchy on the heap in the ordinal space of the locations, given their ids in ascending order.
+     * References to locations that are not among them are dropped.
+     */
+    public static HierarchyIndex of(final Map<Integer, Integer> childToParent, final int[] locationIds)
+    {
+        return build(childToParent, locationIds, FLAG_LOCATION_ORDINALS);
+    }
+
+    private static HierarchyIndex build(final Map<Integer, Integer> childToParent, final int[] ids, final int flags)
+    {
+        final int size = ids.length;
+        final int[] parents = new int[size];
+        Arrays.fill(parents, NO_PARENT);
+        final int[] childOffsets = new int[size + 1];
+        childToParent.forEach((child, parent) ->
+        {
+            final int childOrdinal = Arrays.binarySearch(ids, child);
+            final int parentOrdinal = Arrays.binarySearch(ids, parent);
+            if (childOrdinal >= 0 && parentOrdinal >= 0 && childOrdinal != parentOrdinal)
+            {
+                parents[childOrdinal] = parentOrdinal;
+                childOffsets[parentOrdinal + 1]++;
+            }
+        });
+        for (int i = 0; i < size; i++)
+        {
+            childOffsets[i + 1] += childOffsets[i];
+        }
+
+        // Filling in ordinal order leaves the children of each location ordered by id
+        final int[] children = new int[childOffsets[size]];
+        final int[] fill = Arrays.copyOf(childOffsets, size);
+        for (int ordinal = 0; ordinal < size; ordinal++)
+        {
+            if (parents[ordinal] != NO_PARENT)
+            {
+                children[fill[parents[ordinal]]++] = ordinal;
+            }
+        }
+
+        final ByteBuffer data = ByteBuffer.allocate(HEADER_SIZE + (size * 3 + 1 + children.length) * Integer.BYTES);
+        data.putInt(MAGIC);
+        data.putInt(FORMAT_VERSION);
+        data.putInt(size);
+        data.putInt(children.length);
+        data.putInt(flags);
+        final IntBuffer body = data.asIntBuffer();
+        body.put(ids);
+        body.put(parents);
+        body.put(childOffsets);
+        body.put(children);
+        data.clear();
+        return new HierarchyIndex(data, null);
+    }
+
+    /**
+     * Map a hierarchy previously written with {@link #write(Path)}
+     */
+    public static HierarchyIndex open(final Path file, final MmapBackend backend)
+    {
+        try (final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+        {
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            final HierarchyIndex index = new HierarchyIndex(buffer, backend);
+            MappedFiles.register(1, buffer.capacity());
+            return index;
+        }
+        catch (IOException exc)
+        {
+            throw new UncheckedIOException(exc);
+        }
+    }
+
+    private IntBuffer slice(final int position, final int count)
+    {
+        return data.duplicate().position(position).limit(position + count * Integer.BYTES).slice().asIntBuffer();
+    }
+
+    /**
+     * Write the hierarchy to a temporary file that replaces the file when complete, so a mapped or concurrently opened
+     * file is never seen half written
+     */
+    public void write(final Path file)
+    {
+        final Path tmpFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try
+        {
+            try (final FileChannel channel = FileChannel.open(tmpFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))
+            {
+                final ByteBuffer source = data.duplicate().clear();
+                while (source.hasRemaining())
+                {
+                    channel.write(source);
+                }
+            }
+            Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (IOException exc)
+        {
+            throw new UncheckedIOException(exc);
+        }
+        finally
+        {
+            try
+            {
+                Files.deleteIfExists(tmpFile);
+            }
+            catch (IOException ignored)
+            {
+
+            }
+        }
+    }
+
+    @Override
+    public int size()
+    {
+        return size;
+    }
+
+    @Override
+    public boolean isLocationOrdinals()
+    {
+        return (flags & FLAG_LOCATION_ORDINALS) != 0;
+    }
+
+    @Override
+    public int ordinal(final int id)
+    {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high)
+        {
+            final int mid = (low + high) >>> 1;
+            final int midVal = ids.get(mid);
+            if (midVal < id)
+            {
+                low = mid + 1;
+            }
+            else if (midVal > id)
+            {
+                high = mid - 1;
+            }
+            else
+            {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    @Override
+    public boolean contains(final int id)
+    {
+        final int ordinal = ordinal(id);
+        return ordinal >= 0 && (parents.get(ordinal) != NO_PARENT || childOffsets.get(ordinal + 1) > childOffsets.get(ordinal));
+    }
+
+    @Override
+    public int getId(final int ordinal)
+    {
+        return ids.get(ordinal);
+    }
+
+    @Override
+    public int getParentOrdinal(final int ordinal)
+    {
+        return parents.get(ordinal);
+    }
+
+    @Override
+    public int getParentId(final int id)
+    {
+        final int ordinal = ordinal(id);
+        if (ordinal < 0)
+        {
+            return NO_PARENT;
+        }
+        final int parent = parents.get(ordinal);
+        return parent != NO_PARENT ? ids.get(parent) : NO_PARENT;
+    }
+
+    @Override
+    public int[] getChildIds(final int id)
+    {
+        final int ordinal = ordinal(id);
+        if (ordinal < 0)
+        {
+            return new int[0];
+        }
+        final int[] result = getChildOrdinals(ordinal);
+        for (int i = 0; i < result.length; i++)
+        {
+            result[i] = ids.get(result[i]);
+        }
+        return result;
+    }
+
+    @Override
+    public int getChildCount(final int ordinal)
+    {
+        return childOffsets.get(ordinal + 1) - childOffsets.get(ordinal);
+    }
+
+    @Override
+    public int getChildOrdinal(final int ordinal, final int index)
+    {
+        return children.get(childOffsets.get(ordinal) + index);
+    }
+
+    @Override
+    public int[] getChildOrdinals(final int ordinal)
+    {
+        final int start = childOffsets.get(ordinal);
+        final int[] result = new int[childOffsets.get(ordinal + 1) - start];
+        children.get(start, result);
+        return result;
+    }
+
+    @Override
+    public long getByteSize()
+    {
+        return data.capacity();
+    }
+
+    @Override
+    public boolean isMapped()
+    {
+        return data instanceof MappedByteBuffer;
+    }
+
+    @Override
+    public void close()
+    {
+        if (data instanceof MappedByteBuffer)
+        {
+            backend.release((MappedByteBuffer) data);
+            MappedFiles.unregister(1, data.capacity());
+        }
+    }
+}
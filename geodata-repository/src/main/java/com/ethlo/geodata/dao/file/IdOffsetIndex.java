@@ -0,0 +1,197 @@
+package com.ethlo.geodata.dao.file;
+
+/*-
+ * #%L
+ * geodata-repository
+ * %%
+ * Copyright (C) 2017 - 2020 Morten Haraldsen (ethlo)
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import java.util.Arrays;
+
+/**
+ * Primitive id to offset index. The entries are kept sorted by id in two parallel arrays, so a lookup is a binary search.
+ * An id may have several offsets (for example the sub-divisions of a boundary), and these keep the order they were added in.
+ */
+public class IdOffsetIndex
+{
+    private static final IdOffsetIndex EMPTY = new IdOffsetIndex(new int[0], new long[0], 0);
+
+    private final int[] ids;
+    private final long[] offsets;
+    private final int distinctIds;
+
+    private IdOffsetIndex(final int[] ids, final long[] offsets, final int distinctIds)
+    {
+        this.ids = ids;
+        this.offsets = offsets;
+        this.distinctIds = distinctIds;
+    }
+
+    public static IdOffsetIndex empty()
+    {
+        return EMPTY;
+    }
+
+    /**
+     * Create an index from parallel arrays of ids and offsets in file order. The arrays are taken over by the index.
+     */
+    public static IdOffsetIndex of(final int[] ids, final long[] offsets)
+    {
+        if (ids.length != offsets.length)
+        {
+            throw new IllegalArgumentException("ids and offsets must have the same length");
+        }
+
+        if (!isSorted(ids))
+        {
+            // Sort on id, with the original position as tie-breaker to keep the order of repeating ids
+            final long[] keys = new long[ids.length];
+            for (int i = 0; i < ids.length; i++)
+            {
+                keys[i] = ((long) ids[i] << 32) | i;
+            }
+            Arrays.parallelSort(keys);
+
+            final long[] sortedOffsets = new long[offsets.length];
+            for (int i = 0; i < keys.length; i++)
+            {
+                ids[i] = (int) (keys[i] >>> 32);
+                sortedOffsets[i] = offsets[(int) keys[i]];
+            }
+            return new IdOffsetIndex(ids, sortedOffsets, countDistinct(ids));
+        }
+
+        return new IdOffsetIndex(ids, offsets, countDistinct(ids));
+    }
+
+    private static boolean isSorted(final int[] ids)
+    {
+        for (int i = 1; i < ids.length; i++)
+        {
+            if (ids[i] < ids[i - 1])
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int countDistinct(final int[] sortedIds)
+    {
+        int count = sortedIds.length > 0 ? 1 : 0;
+        for (int i = 1; i < sortedIds.length; i++)
+        {
+            if (sortedIds[i] != sortedIds[i - 1])
+            {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Rough heap cost of holding the same entries in a Guava <code>ArrayListMultimap&lt;Integer, Integer&gt;</code>,
+     * assuming compressed oops: a hash node, a boxed key, an <code>ArrayList</code> and its backing array per distinct id,
+     * and a boxed value plus an array slot per entry.
+     */
+    public static long estimateMultimapHeapSize(final int entries, final int distinctIds)
+    {
+        final long perKey = 32 + 16 + 24 + 32 + 8;
+        final long perValue = 16 + 4;
+        return distinctIds * perKey + (long) entries * perValue;
+    }
+
+    public int size()
+    {
+        return ids.length;
+    }
+
+    public int distinctIds()
+    {
+        return distinctIds;
+    }
+
+    public boolean contains(final int id)
+    {
+        return Arrays.binarySearch(ids, id) >= 0;
+    }
+
+    /**
+     * @return The offset of the sub-index for the id, or -1 if not present
+     */
+    public long getOffset(final int id, final int subIndex)
+    {
+        final int first = firstIndexOf(id);
+        if (first < 0)
+        {
+            return -1;
+        }
+
+        final int index = first + subIndex;
+        return index < ids.length && ids[index] == id ? offsets[index] : -1;
+    }
+
+    /**
+     * @return The position of the first entry for the id, or -1 if not present
+     */
+    public int indexOf(final int id)
+    {
+        return firstIndexOf(id);
+    }
+
+    public int getIdAt(final int index)
+    {
+        return ids[index];
+    }
+
+    public long getOffsetAt(final int index)
+    {
+        return offsets[index];
+    }
+
+    public long getHeapSize()
+    {
+        return 16 + (16 + 4L * ids.length) + (16 + 8L * offsets.length);
+    }
+
+    private int firstIndexOf(final int id)
+    {
+        int low = 0;
+        int high = ids.length - 1;
+        int found = -1;
+        while (low <= high)
+        {
+            final int mid = (low + high) >>> 1;
+            final int midVal = ids[mid];
+            if (midVal < id)
+            {
+                low = mid + 1;
+            }
+            else
+            {
+                if (midVal == id)
+                {
+                    found = mid;
+                }
+                high = mid - 1;
+            }
+        }
+        return found;
+    }
+}
@@ -0,0 +1,52 @@
+package com.ethlo.geodata.dao.file;
+
+/*-
+ * #%L
+ * geodata-repository
+ * %%
+ * Copyright (C) 2017 - 2020 Morten Haraldsen (ethlo)
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+/**
+ * The columns of the columnar location store, in the order they appear in the file
+ */
+public enum LocationColumn
+{
+    ID(Integer.BYTES),
+    LAT(Integer.BYTES),
+    LNG(Integer.BYTES),
+    MAP_FEATURE_ID(Integer.BYTES),
+    POPULATION(Long.BYTES),
+    TIME_ZONE_ID(Integer.BYTES),
+    ELEVATION(Integer.BYTES),
+    COUNTRY_CODE(Short.BYTES),
+    NAME_OFFSET(Integer.BYTES),
+    NAME(Byte.BYTES);
+
+    private final int width;
+
+    LocationColumn(final int width)
+    {
+        this.width = width;
+    }
+
+    public int getWidth()
+    {
+        return width;
+    }
+}
@@ -0,0 +1,131 @@
+package com.ethlo.geodata.dao.file;
+
+/*-
+ * #%L
+ * geodata-repository
+ * %%
+ * Copyright (C) 2017 - 2020 Morten Haraldsen (ethlo)
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Book-keeping of the memory mapped files held open by the DAOs, and explicit unmapping of mapped buffers
+ */
+public final class MappedFiles
+{
+    private static final AtomicInteger openFiles = new AtomicInteger();
+    private static final AtomicLong openSegments = new AtomicLong();
+    private static final AtomicLong mappedBytes = new AtomicLong();
+    private static final AtomicLong unmappedBytes = new AtomicLong();
+
+    private MappedFiles()
+    {
+    }
+
+    static void register(final int segments, final long bytes)
+    {
+        openFiles.incrementAndGet();
+        openSegments.addAndGet(segments);
+        mappedBytes.addAndGet(bytes);
+    }
+
+    static void unregister(final int segments, final long bytes)
+    {
+        openFiles.decrementAndGet();
+        openSegments.addAndGet(-segments);
+        mappedBytes.addAndGet(-bytes);
+    }
+
+    /**
+     * Release the mapping immediately. The buffer, and any view of it, must never be accessed again, as that would crash the JVM.
+     */
+    static void unmap(final MappedByteBuffer buffer)
+    {
+        try
+        {
+            Cleaner.INVOKE_CLEANER.invokeExact((ByteBuffer) buffer);
+        }
+        catch (RuntimeException | Error exc)
+        {
+            throw exc;
+        }
+        catch (Throwable exc)
+        {
+            throw new IllegalStateException("Unable to unmap buffer", exc);
+        }
+        unmappedBytes.addAndGet(buffer.capacity());
+    }
+
+    /**
+     * Holds sun.misc.Unsafe.invokeCleaner, which is looked up on the first unmap. Only the explicit backend unmaps, so the
+     * book-keeping does not depend on Unsafe being available. The method is looked up by name, because referring to the
+     * class directly gives a compiler warning on every use, and that warning cannot be turned off with @SuppressWarnings.
+     */
+    private static final class Cleaner
+    {
+        private static final MethodHandle INVOKE_CLEANER = findInvokeCleaner();
+
+        private static MethodHandle findInvokeCleaner()
+        {
+            try
+            {
+                final Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+                final Field field = unsafeClass.getDeclaredField("theUnsafe");
+                field.setAccessible(true);
+                return MethodHandles.lookup()
+                        .findVirtual(unsafeClass, "invokeCleaner", MethodType.methodType(void.class, ByteBuffer.class))
+                        .bindTo(field.get(null));
+            }
+            catch (ReflectiveOperationException exc)
+            {
+                throw new IllegalStateException("Unable to access sun.misc.Unsafe for unmapping", exc);
+            }
+        }
+    }
+
+    public static int getOpenFiles()
+    {
+        return openFiles.get();
+    }
+
+    public static long getOpenSegments()
+    {
+        return openSegments.get();
+    }
+
+    public static long getMappedBytes()
+    {
+        return mappedBytes.get();
+    }
+
+    /**
+     * @return The total number of bytes explicitly unmapped since startup
+     */
+    public static long getUnmappedBytes()
+    {
+        return unmappedBytes.get();
+    }
+}
@@ -0,0 +1,121 @@
+package com.ethlo.geodata.dao.file;
+
+
+/*-
+ * #%L
+ * geodata-repository
+ * %%
+ * Copyright (C) 2017 - 2020 Morten Haraldsen (ethlo)
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import java.nio.ByteBuffer;
+
+import com.ethlo.geodata.io.ModifiedUtf8;
+import com.ethlo.geodata.model.RawLocation;
+import com.ethlo.geodata.model.RawLocationView;
+
+/**
+ * Flyweight over a {@link RawLocation} record in a mapped data file. Fields are read from the buffer on access, and the
+ * strings are only decoded when asked for. The buffer is only used with absolute reads, so it can be shared between threads.
+ */
+public class MappedRawLocation implements RawLocationView
+{
+    private final ByteBuffer buffer;
+    private final int position;
+
+    public MappedRawLocation(final ByteBuffer buffer, final int position)
+    {
+        this.buffer = buffer;
+        this.position = position;
+    }
+
+    @Override
+    public int getId()
+    {
+        return buffer.getInt(position);
+    }
+
+    @Override
+    public String getName()
+    {
+        return ModifiedUtf8.read(buffer, namePosition());
+    }
+
+    @Override
+    public String getCountryCode()
+    {
+        final int countryCodePosition = countryCodePosition();
+        return ModifiedUtf8.encodedLength(buffer, countryCodePosition) > 2 ? ModifiedUtf8.read(buffer, countryCodePosition) : null;
+    }
+
+    @Override
+    public double getLat()
+    {
+        return buffer.getDouble(fixedPosition());
+    }
+
+    @Override
+    public double getLng()
+    {
+        return buffer.getDouble(fixedPosition() + 8);
+    }
+
+    @Override
+    public int getMapFeatureId()
+    {
+        return buffer.getInt(fixedPosition() + 16);
+    }
+
+    @Override
+    public long getPopulation()
+    {
+        return buffer.getLong(fixedPosition() + 20);
+    }
+
+    @Override
+    public int getTimeZoneId()
+    {
+        return buffer.getInt(fixedPosition() + 28);
+    }
+
+    @Override
+    public int getElevation()
+    {
+        return buffer.getInt(fixedPosition() + 32);
+    }
+
+    private int namePosition()
+    {
+        return position + 4;
+    }
+
+    private int countryCodePosition()
+    {
+        final int namePosition = namePosition();
+        return namePosition + ModifiedUtf8.encodedLength(buffer, namePosition);
+    }
+
+    /**
+     * Start of the fixed-width fields following the name and the country code
+     */
+    private int fixedPosition()
+    {
+        final int countryCodePosition = countryCodePosition();
+        return countryCodePosition + ModifiedUtf8.encodedLength(buffer, countryCodePosition);
+    }
+}
@@ -0,0 +1,269 @@
+package com.ethlo.geodata.dao.file;
+
+/*-
+ * #%L
+ * geodata-repository
+ * %%
+ * Copyright (C) 2017 - 2020 Morten Haraldsen (ethlo)
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.BitSet;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.ethlo.geodata.LoadProgressListener;
+
+/**
+ * Warm-up and residency sampling of the mapped buffers of a data file. The buffers are treated as one sequence of
+ * {@value #REGION_SIZE} byte regions, which is also the granularity of the hot regions recorded between runs.
+ */
+public final class MappedWarmup
+{
+    public static final int PAGE_SIZE = 4096;
+    public static final int REGION_SIZE = 1 << 16;
+    public static final String HOT_REGIONS_SUFFIX = ".hot";
+
+    private static final int HOT_REGIONS_MAGIC = 0x47444852;
+    private static final int RESIDENCY_SAMPLES = 256;
+    private static final int PROGRESS_INTERVAL = 256;
+
+    private static final Logger logger = LoggerFactory.getLogger(MappedWarmup.class);
+
+    // Keeps the page reads from being optimized away
+    private static volatile int sink;
+
+    private MappedWarmup()
+    {
+    }
+
+    public static Path hotRegionsPath(final Path dataFile)
+    {
+        return dataFile.resolveSibling(dataFile.getFileName() + HOT_REGIONS_SUFFIX);
+    }
+
+    public static void warmUp(final String name, final List<MappedByteBuffer> buffers, final WarmupPolicy policy, final Path hotRegionsFile, final LoadProgressListener progressListener)
+    {
+        if (policy == WarmupPolicy.NONE)
+        {
+            return;
+        }
+
+        final int totalRegions = countRegions(buffers);
+        final BitSet selected = new BitSet(totalRegions);
+        if (policy == WarmupPolicy.HOT)
+        {
+            selected.or(readHotRegions(hotRegionsFile, totalRegions));
+        }
+        else
+        {
+            selected.set(0, totalRegions);
+        }
+
+        final long started = System.nanoTime();
+        final int total = selected.cardinality();
+        progressListener.begin("warmup_" + name, total);
+        int done = 0;
+        int checksum = 0;
+        int base = 0;
+        for (final MappedByteBuffer buffer : buffers)
+        {
+            final int regions = regionsOf(buffer);
+            if (policy == WarmupPolicy.LOAD)
+            {
+                buffer.load();
+                done += regions;
+                progressListener.progress(done, total);
+            }
+            else
+            {
+                for (int region = selected.nextSetBit(base); region >= 0 && region < base + regions; region = selected.nextSetBit(region + 1))
+                {
+                    checksum += touch(buffer, (region - base) * REGION_SIZE);
+                    if (++done % PROGRESS_INTERVAL == 0)
+                    {
+                        progressListener.progress(done, total);
+                    }
+                }
+            }
+            base += regions;
+        }
+        sink = checksum;
+        progressListener.progress(total, total);
+        progressListener.end();
+        logger.info("Warmed up {} regions of {} with policy {} in {} ms", total, name, policy, (System.nanoTime() - started) / 1_000_000);
+    }
+
+    /**
+     * Record the regions that are fully resident, to be touched by {@link WarmupPolicy#HOT} on the next start
+     */
+    public static void saveHotRegions(final List<MappedByteBuffer> buffers, final Path hotRegionsFile)
+    {
+        final int totalRegions = countRegions(buffers);
+        final BitSet hot = new BitSet(totalRegions);
+        int base = 0;
+        for (final MappedByteBuffer buffer : buffers)
+        {
+            final int regions = regionsOf(buffer);
+            for (int region = 0; region < regions; region++)
+            {
+                final int offset = region * REGION_SIZE;
+                if (buffer.slice(offset, Math.min(REGION_SIZE, buffer.capacity() - offset)).isLoaded())
+                {
+                    hot.set(base + region);
+                }
+            }
+            base += regions;
+        }
+
+        final Path tmp = hotRegionsFile.resolveSibling(hotRegionsFile.getFileName() + ".tmp");
+        try
+        {
+            try (final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp))))
+            {
+                final long[] words = hot.toLongArray();
+                out.writeInt(HOT_REGIONS_MAGIC);
+                out.writeInt(REGION_SIZE);
+                out.writeInt(totalRegions);
+                out.writeInt(words.length);
+                for (final long word : words)
+                {
+                    out.writeLong(word);
+                }
+            }
+            Files.move(tmp, hotRegionsFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            logger.info("Recorded {} of {} regions as hot in {}", hot.cardinality(), totalRegions, hotRegionsFile);
+        }
+        catch (IOException exc)
+        {
+            logger.warn("Unable to record hot regions in {}: {}", hotRegionsFile, exc.getMessage());
+        }
+    }
+
+    static BitSet readHotRegions(final Path hotRegionsFile, final int totalRegions)
+    {
+        if (!Files.exists(hotRegionsFile))
+        {
+            logger.info("No hot regions recorded in {}", hotRegionsFile);
+            return new BitSet();
+        }
+
+        try (final DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(hotRegionsFile))))
+        {
+            final int magic = in.readInt();
+            final int regionSize = in.readInt();
+            final int regions = in.readInt();
+            if (magic != HOT_REGIONS_MAGIC || regionSize != REGION_SIZE || regions != totalRegions)
+            {
+                logger.warn("Ignoring hot regions in {}, as they were recorded for different data", hotRegionsFile);
+                return new BitSet();
+            }
+
+            final long[] words = new long[in.readInt()];
+            for (int i = 0; i < words.length; i++)
+            {
+                words[i] = in.readLong();
+            }
+            return BitSet.valueOf(words);
+        }
+        catch (IOException exc)
+        {
+            logger.warn("Unable to read hot regions from {}: {}", hotRegionsFile, exc.getMessage());
+            return new BitSet();
+        }
+    }
+
+    /**
+     * @return The fraction of evenly spaced sample pages that are resident, or -1 if there are no buffers
+     */
+    public static double sampleResidency(final List<MappedByteBuffer> buffers)
+    {
+        long totalPages = 0;
+        for (final MappedByteBuffer buffer : buffers)
+        {
+            totalPages += pagesOf(buffer);
+        }
+        if (totalPages == 0)
+        {
+            return -1;
+        }
+
+        final long samples = Math.min(RESIDENCY_SAMPLES, totalPages);
+        int resident = 0;
+        for (long sample = 0; sample < samples; sample++)
+        {
+            long page = sample * totalPages / samples;
+            for (final MappedByteBuffer buffer : buffers)
+            {
+                final int pages = pagesOf(buffer);
+                if (page < pages)
+                {
+                    final int offset = (int) page * PAGE_SIZE;
+                    if (buffer.slice(offset, Math.min(PAGE_SIZE, buffer.capacity() - offset)).isLoaded())
+                    {
+                        resident++;
+                    }
+                    break;
+                }
+                page -= pages;
+            }
+        }
+        return resident / (double) samples;
+    }
+
+    private static int touch(final MappedByteBuffer buffer, final int regionOffset)
+    {
+        final int end = Math.min(regionOffset + REGION_SIZE, buffer.capacity());
+        int checksum = 0;
+        for (int position = regionOffset; position < end; position += PAGE_SIZE)
+        {
+            checksum += buffer.get(position);
+        }
+        return checksum;
+    }
+
+    private static int countRegions(final List<MappedByteBuffer> buffers)
+    {
+        int regions = 0;
+        for (final MappedByteBuffer buffer : buffers)
+        {
+            regions += regionsOf(buffer);
+        }
+        return regions;
+    }
+
+    private static int regionsOf(final MappedByteBuffer buffer)
+    {
+        return (buffer.capacity() + REGION_SIZE - 1) / REGION_SIZE;
+    }
+
+    private static int pagesOf(final MappedByteBuffer buffer)
+    {
+        return (buffer.capacity() + PAGE_SIZE - 1) / PAGE_SIZE;
+    }
+}
@@ -0,0 +1,57 @@
+package com.ethlo.geodata.dao.file;
+
+/*-
+ * #%L
+ * geodata-repository
+ * %%
+ * Copyright (C) 2017 - 2020 Morten Haraldsen (ethlo)
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import java.nio.MappedByteBuffer;
+import java.util.Locale;
+
+/**
+ * How memory mapped data files are released
+ */
+public enum MmapBackend
+{
+    /**
+     * Mappings are released by the garbage collector some time after the owning DAO is closed
+     */
+    GC,
+
+    /**
+     * Mappings are released as soon as the owning DAO is closed. This is opt-in, as it is only safe when the owner
+     * guarantees that nothing reads the data after closing, including views obtained before closing, such as location
+     * flyweights and input streams. Reading unmapped data crashes the JVM instead of throwing an exception.
+     */
+    EXPLICIT;
+
+    public static MmapBackend from(final String name)
+    {
+        return valueOf(name.trim().toUpperCase(Locale.ENGLISH));
+    }
+
+    void release(final MappedByteBuffer buffer)
+    {
+        if (this == EXPLICIT)
+        {
+            MappedFiles.unmap(buffer);
+        }
+    }
+}
@@ -0,0 +1,367 @@
+package com.ethlo.geodata.dao.file;
+
+/*-
+ * #%L
+ * geodata-repository
+ * %%
+ * Copyright (C) 2017 - 2020 Morten Haraldsen (ethlo)
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.function.IntPredicate;
+
+import com.illucit.util.ASCIIUtils;
+
+/**
+ * Memory mapped name search index. The normalized names are kept as a sorted dictionary of UTF-8 terms, front-coded
+ * in blocks, with a posting list of location id and map feature id per term, ordered by id.
+ * <p>
+ * Layout: int magic, int version, int term count, int block size, int posting count, int term data length, then the
+ * int offset of each block in the term data, the int start of each term in the postings (plus the end), the posting
+ * ids, the posting map feature ids and finally the term data. The first term of a block is stored as a varint length
+ * and the bytes, the following terms as a varint length of the prefix shared with the term before, a varint suffix
+ * length and the suffix bytes.
+ */
+public class NameIndex implements Closeable
+{
+    public static final String FILE = "names.index";
+    public static final int MAGIC = 0x47444e49;
+    public static final int FORMAT_VERSION = 1;
+    public static final int HEADER_SIZE = 6 * Integer.BYTES;
+
+    private final MappedByteBuffer buffer;
+    private final MmapBackend backend;
+    private final int termCount;
+    private final int blockSize;
+    private final int blockCount;
+    private final int postingCount;
+    private final IntBuffer blockOffsets;
+    private final IntBuffer postingStarts;
+    private final IntBuffer ids;
+    private final IntBuffer mapFeatureIds;
+    private final ByteBuffer terms;
+
+    private NameIndex(final MappedByteBuffer buffer, final MmapBackend backend)
+    {
+        this.buffer = buffer;
+        this.backend = backend;
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != FORMAT_VERSION)
+        {
+            throw new IllegalStateException("Unsupported name index, version " + buffer.getInt(4));
+        }
+        this.termCount = buffer.getInt(8);
+        this.blockSize = buffer.getInt(12);
+        this.postingCount = buffer.getInt(16);
+        final int termDataLength = buffer.getInt(20);
+        this.blockCount = blockCount(termCount, blockSize);
+
+        int position = HEADER_SIZE;
+        this.blockOffsets = slice(position, blockCount * Integer.BYTES).asIntBuffer();
+        position += blockCount * Integer.BYTES;
+        this.postingStarts = slice(position, (termCount + 1) * Integer.BYTES).asIntBuffer();
+        position += (termCount + 1) * Integer.BYTES;
+        this.ids = slice(position, postingCount * Integer.BYTES).asIntBuffer();
+        position += postingCount * Integer.BYTES;
+        this.mapFeatureIds = slice(position, postingCount * Integer.BYTES).asIntBuffer();
+        position += postingCount * Integer.BYTES;
+        this.terms = slice(position, termDataLength);
+    }
+
+    public static int blockCount(final int termCount, final int blockSize)
+    {
+        return (termCount + blockSize - 1) / blockSize;
+    }
+
+    /**
+     * The normalization applied to names both when indexing and when searching
+     */
+    public static String normalize(final String name)
+    {
+        return ASCIIUtils.foldToASCII(name.toLowerCase());
+    }
+
+    public static NameIndex open(final Path file, final MmapBackend backend)
+    {
+        try (final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+        {
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            final NameIndex index = new NameIndex(buffer, backend);
+            MappedFiles.register(1, buffer.capacity());
+            return index;
+        }
+        catch (IOException exc)
+        {
+            throw new UncheckedIOException(exc);
+        }
+    }
+
+    private ByteBuffer slice(final int position, final int length)
+    {
+        return buffer.duplicate().position(position).limit(position + length).slice();
+    }
+
+    public long getByteSize()
+    {
+        return buffer.capacity();
+    }
+
+    public int getTermCount()
+    {
+        return termCount;
+    }
+
+    public int getPostingCount()
+    {
+        return postingCount;
+    }
+
+    /**
+     * @return The terms with at least one posting of a map feature accepted by the filter
+     */
+    public BitSet findTerms(final IntPredicate mapFeatureFilter)
+    {
+        final BitSet result = new BitSet(termCount);
+        for (int term = 0; term < termCount; term++)
+        {
+            final int end = postingStarts.get(term + 1);
+            for (int posting = postingStarts.get(term); posting < end; posting++)
+            {
+                if (mapFeatureFilter.test(mapFeatureIds.get(posting)))
+                {
+                    result.set(term);
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Visit the postings of the terms starting with the longest prefix of the normalized name that any term starts
+     * with, in term order. This matches the closest keys of a radix tree.
+     */
+    public void findClosest(final String name, final PostingVisitor visitor)
+    {
+        findClosest(name, null, visitor);
+    }
+
+    /**
+     * As {@link #findClosest(String, PostingVisitor)}, but the longest prefix is chosen among the given terms only, as
+     * if the index held nothing else. The postings of all terms with that prefix are still visited.
+     *
+     * @param candidates The terms to choose the prefix from, as returned by {@link #findTerms(IntPredicate)}, or null for all
+     */
+    public void findClosest(final String name, final BitSet candidates, final PostingVisitor visitor)
+    {
+        if (termCount == 0)
+        {
+            return;
+        }
+
+        final byte[] key = normalize(name).getBytes(StandardCharsets.UTF_8);
+        final TermCursor cursor = new TermCursor();
+
+        // The longest prefix shared with any candidate is shared with one of the candidates next to the insertion point
+        final int insertionPoint = lowerBound(cursor, key, key.length);
+        final int next = candidates != null ? candidates.nextSetBit(insertionPoint) : insertionPoint;
+        final int previous = candidates != null ? candidates.previousSetBit(insertionPoint - 1) : insertionPoint - 1;
+        int prefixLength = 0;
+        if (next >= 0 && next < termCount)
+        {
+            cursor.seek(next);
+            prefixLength = commonPrefix(cursor.term, cursor.length, key);
+        }
+        if (previous >= 0)
+        {
+            cursor.seek(previous);
+            prefixLength = Math.max(prefixLength, commonPrefix(cursor.term, cursor.length, key));
+        }
+
+        // Do not split a multibyte character
+        while (prefixLength > 0 && prefixLength < key.length && (key[prefixLength] & 0xC0) == 0x80)
+        {
+            prefixLength--;
+        }
+
+        if (prefixLength == 0 && key.length > 0)
+        {
+            return;
+        }
+
+        final int start = lowerBound(cursor, key, prefixLength);
+        cursor.seek(start);
+        while (cursor.index < termCount && startsWith(cursor.term, cursor.length, key, prefixLength))
+        {
+            final int end = postingStarts.get(cursor.index + 1);
+            for (int posting = postingStarts.get(cursor.index); posting < end; posting++)
+            {
+                if (!visitor.visit(ids.get(posting), mapFeatureIds.get(posting)))
+                {
+                    return;
+                }
+            }
+            cursor.next();
+        }
+    }
+
+    /**
+     * @return The index of the first term that is not less than the first length bytes of the key
+     */
+    private int lowerBound(final TermCursor cursor, final byte[] key, final int length)
+    {
+        // Last block with a first term not greater than the key
+        int low = 0;
+        int high = blockCount - 1;
+        int block = -1;
+        while (low <= high)
+        {
+            final int mid = (low + high) >>> 1;
+            cursor.seek(mid * blockSize);
+            if (Arrays.compareUnsigned(cursor.term, 0, cursor.length, key, 0, length) <= 0)
+            {
+                block = mid;
+                low = mid + 1;
+            }
+            else
+            {
+                high = mid - 1;
+            }
+        }
+
+        if (block < 0)
+        {
+            return 0;
+        }
+
+        cursor.seek(block * blockSize);
+        while (cursor.index < termCount && Arrays.compareUnsigned(cursor.term, 0, cursor.length, key, 0, length) < 0)
+        {
+            cursor.next();
+        }
+        return cursor.index;
+    }
+
+    private static int commonPrefix(final byte[] term, final int termLength, final byte[] key)
+    {
+        final int mismatch = Arrays.mismatch(term, 0, termLength, key, 0, key.length);
+        return mismatch < 0 ? Math.min(termLength, key.length) : mismatch;
+    }
+
+    private static boolean startsWith(final byte[] term, final int termLength, final byte[] key, final int length)
+    {
+        return termLength >= length && Arrays.equals(term, 0, length, key, 0, length);
+    }
+
+    @Override
+    public void close()
+    {
+        backend.release(buffer);
+        MappedFiles.unregister(1, buffer.capacity());
+    }
+
+    @FunctionalInterface
+    public interface PostingVisitor
+    {
+        /**
+         * @return False to stop visiting
+         */
+        boolean visit(int id, int mapFeatureId);
+    }
+
+    /**
+     * Decodes the front-coded terms sequentially, starting at the beginning of a block
+     */
+    private class TermCursor
+    {
+        private byte[] term = new byte[64];
+        private int length;
+        private int index;
+        private int position;
+
+        void seek(final int termIndex)
+        {
+            final int block = termIndex / blockSize;
+            index = block * blockSize;
+            position = blockOffsets.get(block);
+            length = readVarInt();
+            ensureCapacity(length);
+            terms.get(position, term, 0, length);
+            position += length;
+            while (index < termIndex)
+            {
+                next();
+            }
+        }
+
+        void next()
+        {
+            index++;
+            if (index >= termCount)
+            {
+                return;
+            }
+
+            if (index % blockSize == 0)
+            {
+                seek(index);
+                return;
+            }
+
+            final int shared = readVarInt();
+            final int suffix = readVarInt();
+            ensureCapacity(shared + suffix);
+            terms.get(position, term, shared, suffix);
+            position += suffix;
+            length = shared + suffix;
+        }
+
+        private void ensureCapacity(final int capacity)
+        {
+            if (capacity > term.length)
+            {
+                term = Arrays.copyOf(term, Math.max(capacity, term.length * 2));
+            }
+        }
+
+        private int readVarInt()
+        {
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do
+            {
+                b = terms.get(position++);
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            }
+            while (b < 0);
+            return value;
+        }
+    }
+}
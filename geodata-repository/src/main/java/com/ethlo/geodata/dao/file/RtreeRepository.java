@@ -22,15 +22,14 @@ package com.ethlo.geodata.dao.file;
  * #L%
  */
 
+import java.io.Closeable;
+import java.util.ArrayList;
 import java.util.Comparator;
-import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
 import java.util.Set;
 import java.util.stream.Collectors;
-import java.util.stream.StreamSupport;
 
 import org.locationtech.jts.geom.Coordinate;
 import org.locationtech.jts.geom.Envelope;
@@ -40,55 +39,108 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.data.domain.Pageable;
 
+import com.ethlo.geodata.GeoConstants;
 import com.ethlo.geodata.dao.BoundaryDao;
 import com.ethlo.geodata.dao.LocationDao;
 import com.ethlo.geodata.model.Coordinates;
+import com.ethlo.geodata.model.MapFeature;
 import com.ethlo.geodata.model.RTreePayload;
-import com.ethlo.geodata.model.RawLocation;
+import com.ethlo.geodata.util.MemoryAccountable;
+import com.ethlo.geodata.util.MemoryAccounting;
 import com.github.davidmoten.grumpy.core.Position;
-import com.github.davidmoten.guavamini.Lists;
 import com.github.davidmoten.rtree2.Entry;
 import com.github.davidmoten.rtree2.RTree;
 import com.github.davidmoten.rtree2.geometry.Geometries;
 import com.github.davidmoten.rtree2.geometry.Geometry;
 import com.github.davidmoten.rtree2.geometry.Point;
 import com.github.davidmoten.rtree2.geometry.Rectangle;
-import com.github.davidmoten.rtree2.geometry.internal.RectangleDouble;
 import com.github.davidmoten.rtree2.internal.EntryDefault;
-import com.google.common.collect.AbstractIterator;
-import com.google.common.collect.Iterators;
 import com.google.common.primitives.Ints;
 
-public class RtreeRepository
+public class RtreeRepository implements Closeable, MemoryAccountable
 {
     private static final Logger logger = LoggerFactory.getLogger(RtreeRepository.class);
 
+    // Entry, float rectangle, payload with its envelope, and a share of the node holding the entry
+    private static final long BOUNDARY_ENTRY_HEAP_BYTES = 24 + 32 + 32 + 48 + 16;
+
     private final BoundaryDao boundaryDao;
+
+    private final PackedRTree proximity;
+
+    // Either the persisted, packed tree or the one built in memory is used
+    private final PackedRTree packedBoundaries;
+    private final BoundaryMetaFile boundaryMetadata;
     private final RTree<RTreePayload, Geometry> boundaryRTree;
-    private RTree<Integer, Point> proximity;
 
     public RtreeRepository(LocationDao locationDao, BoundaryDao boundaryDao, final Set<Integer> featureCodesIncluded)
+    {
+        this(locationDao, boundaryDao, featureCodesIncluded, null);
+    }
+
+    /**
+     * @param spatialIndexDao Source of persisted indexes, or null to always build the indexes in memory
+     */
+    public RtreeRepository(LocationDao locationDao, BoundaryDao boundaryDao, final Set<Integer> featureCodesIncluded, final FileSpatialIndexDao spatialIndexDao)
     {
         this.boundaryDao = boundaryDao;
 
         // Load proximity tree
-        logger.info("Loading proximity tree");
-        this.proximity = RTree.star().create();
-        final int batchSize = 20_000;
-        final Iterator<RawLocation> iter = locationDao.stream().iterator();
-        List<Entry<Integer, Point>> batch;
-        do
-        {
-            final Iterator<RawLocation> filtered = Iterators.filter(iter, l -> featureCodesIncluded.contains(Objects.requireNonNull(l).getMapFeatureId()));
-            batch = Lists.newArrayList(Iterators.limit(new ConvertingIterator(filtered), batchSize));
-            proximity = proximity.add(batch);
+        final PackedRTree persistedProximity = spatialIndexDao != null ? spatialIndexDao.loadProximityIndex().orElse(null) : null;
+        if (persistedProximity != null)
+        {
+            this.proximity = persistedProximity;
+            logger.info("Using persisted proximity tree with {} location points", proximity.size());
+        }
+        else
+        {
+            logger.info("Loading proximity tree");
+            final long started = System.nanoTime();
+            this.proximity = buildProximityTree(locationDao, featureCodesIncluded);
+            logger.info("Loaded {} location points in {} ms. Node fill factor: {}", proximity.size(), (System.nanoTime() - started) / 1_000_000, String.format("%.3f", proximity.getFillFactor()));
         }
-        while (batch.size() == batchSize);
-        logger.info("Loaded {} location points", proximity.size());
 
         // Load boundaries
-        boundaryRTree = getBoundaryRTree(locationDao, boundaryDao);
-        logger.info("Loaded {} location bounding boxes", boundaryRTree.size());
+        this.packedBoundaries = spatialIndexDao != null ? spatialIndexDao.loadBoundaryIndex().orElse(null) : null;
+        if (packedBoundaries != null)
+        {
+            this.boundaryMetadata = spatialIndexDao.loadBoundaryMetadata();
+            this.boundaryRTree = null;
+            logger.info("Using persisted boundary tree with {} location bounding boxes", packedBoundaries.size());
+        }
+        else
+        {
+            this.boundaryMetadata = null;
+            this.boundaryRTree = getBoundaryRTree(locationDao, boundaryDao);
+            logger.info("Loaded {} location bounding boxes", boundaryRTree.size());
+        }
+    }
+
+    /**
+     * @return The ids of the map features included in the proximity tree
+     */
+    public static Set<Integer> getProximityFeatureIds(final Map<Integer, MapFeature> featureCodes)
+    {
+        return featureCodes.entrySet().stream()
+                .filter(e -> GeoConstants.ADMINISTRATIVE_OR_ABOVE.contains(e.getValue().getKey()))
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toSet());
+    }
+
+    /**
+     * Bulk load the points of the included map features into a packed tree in Hilbert order, with the location id as value
+     */
+    public static PackedRTree buildProximityTree(final LocationDao locationDao, final Set<Integer> featureCodesIncluded)
+    {
+        final PackedRTree.Builder builder = PackedRTree.builder().sortOrder(PackedRTree.SortOrder.HILBERT);
+        locationDao.forEachPoint((id, mapFeatureId, lat, lng) ->
+        {
+            if (featureCodesIncluded.contains(mapFeatureId))
+            {
+                builder.add(lng, lat, id);
+            }
+        });
+        return builder.build();
     }
 
     private static Rectangle createBounds(final Position from, final double distanceKm)
@@ -107,7 +159,7 @@ public class RtreeRepository
     private RTree<RTreePayload, Geometry> getBoundaryRTree(final LocationDao locationDao, final BoundaryDao boundaryDao)
     {
         return RTree.create(boundaryDao.stream()
-                .filter(entry -> locationDao.get(entry.getId()).isPresent())
+                .filter(entry -> locationDao.exists(entry.getId()))
                 .map(this::envelopeEntry)
                 .collect(Collectors.toList()));
     }
@@ -118,22 +170,29 @@ public class RtreeRepository
         return EntryDefault.entry(payload, Geometries.rectangleGeographic(env.getMinX(), env.getMinY(), env.getMaxX(), env.getMaxY()));
     }
 
-    public Entry<RTreePayload, Geometry> find(Coordinates coordinates)
+    public RTreePayload find(Coordinates coordinates)
     {
-        // Point to find
-        final Point target = Geometries.pointGeographic(coordinates.getLng(), coordinates.getLat());
-        final Iterator<Entry<RTreePayload, Geometry>> iter = boundaryRTree.search(target).iterator();
-
         // The candidates are the ones that have a matching bounding-box, but it may still not be a real match
-        final List<Entry<RTreePayload, Geometry>> candidates = Lists.newArrayList(iter);
+        final List<RTreePayload> candidates = new ArrayList<>();
+        if (packedBoundaries != null)
+        {
+            packedBoundaries.search(coordinates.getLng(), coordinates.getLat(), coordinates.getLng(), coordinates.getLat(),
+                    row -> candidates.add(boundaryMetadata.getPayload(row)));
+        }
+        else
+        {
+            // Point to find
+            final Point target = Geometries.pointGeographic(coordinates.getLng(), coordinates.getLat());
+            boundaryRTree.search(target).forEach(e -> candidates.add(e.value()));
+        }
 
         // Sort by area, as we would like to find the smallest one that match
-        candidates.sort(Comparator.comparingDouble(o -> o.value().getArea()));
+        candidates.sort(Comparator.comparingDouble(RTreePayload::getArea));
 
         // Loop through candidates from smallest to largest and check actual polygon
-        for (Entry<RTreePayload, Geometry> candidate : candidates)
+        for (RTreePayload candidate : candidates)
         {
-            if (isReallyInside(coordinates, candidate.value().getId(), candidate.value().getSubdivideIndex()))
+            if (isReallyInside(coordinates, candidate.getId(), candidate.getSubdivideIndex()))
             {
                 return candidate;
             }
@@ -179,52 +238,56 @@ public class RtreeRepository
         final int max = Ints.saturatedCast((pageable.getOffset() + pageable.getPageSize()));
         final Position from = Position.create(point.getLat(), point.getLng());
         //final Rectangle bounds = createBounds(from, maxDistanceInKilometers);
-        return StreamSupport
-                .stream(proximity.nearest(RectangleDouble.create(point.getLng(), point.getLat(), point.getLng(), point.getLat()), maxDistanceInKilometers, max).spliterator(), false)
-                .skip(pageable.getOffset())
-                .limit(pageable.getPageSize())
-                .collect(Collectors.toMap(Entry::value,
-                        entry -> from.getDistanceToKm(Position.create(entry.geometry().y(), entry.geometry().x())),
-                        (e1, e2) -> e1,
-                        LinkedHashMap::new
-                ));
+        final Map<Integer, Double> result = new LinkedHashMap<>();
+        final int[] skipped = new int[1];
+        proximity.nearest(point.getLng(), point.getLat(), max, maxDistanceInKilometers, (id, minX, minY, maxX, maxY) ->
+        {
+            if (skipped[0]++ >= pageable.getOffset())
+            {
+                result.putIfAbsent(id, from.getDistanceToKm(Position.create(minY, minX)));
+            }
+        });
+        return result;
     }
 
-    private static class ConvertingIterator extends AbstractIterator<Entry<Integer, Point>>
+    @Override
+    public void registerMemory(final MemoryAccounting accounting)
     {
-        private final Iterator<RawLocation> locations;
-
-        public ConvertingIterator(Iterator<RawLocation> locations)
+        register(accounting, "proximity_tree", proximity);
+        if (packedBoundaries != null)
         {
-            this.locations = locations;
+            register(accounting, "boundary_tree", packedBoundaries);
+            accounting.registerMapped("boundary_metadata", boundaryMetadata::getByteSize);
         }
-
-        @Override
-        protected Entry<Integer, Point> computeNext()
+        else
         {
-            if (locations.hasNext())
-            {
-                final RawLocation location = locations.next();
+            accounting.registerHeap("boundary_tree", () -> boundaryRTree.size() * BOUNDARY_ENTRY_HEAP_BYTES);
+        }
+    }
 
-                final double lat = location.getCoordinates().getLat();
-                final double lng = location.getCoordinates().getLng();
+    private static void register(final MemoryAccounting accounting, final String name, final PackedRTree tree)
+    {
+        if (tree.isMapped())
+        {
+            accounting.registerMapped(name, tree::getByteSize);
+        }
+        else
+        {
+            accounting.registerHeap(name, tree::getByteSize);
+        }
+    }
 
-                return new Entry<>()
-                {
-                    @Override
-                    public Integer value()
-                    {
-                        return location.getId();
-                    }
-
-                    @Override
-                    public Point geometry()
-                    {
-                        return Geometries.point(lng, lat);
-                    }
-                };
-            }
-            return endOfData();
+    /**
+     * Release the mapped spatial indexes
+     */
+    @Override
+    public void close()
+    {
+        proximity.close();
+        if (packedBoundaries != null)
+        {
+            packedBoundaries.close();
+            boundaryMetadata.close();
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,46 @@
+package com.ethlo.geodata.dao.file;
+
+/*-
+ * #%L
+ * geodata-repository
+ * %%
+ * Copyright (C) 2017 - 2020 Morten Haraldsen (ethlo)
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import com.ethlo.geodata.LoadProgressListener;
+
+/**
+ * A data structure backed by memory mapped files that can be brought into memory ahead of the first requests
+ */
+public interface Warmable
+{
+    /**
+     * Load the data if needed, and bring its mapped pages into memory according to the policy
+     */
+    void warmUp(WarmupPolicy policy, LoadProgressListener progressListener);
+
+    /**
+     * Record the regions currently resident, if the data was warmed up with {@link WarmupPolicy#HOT}
+     */
+    void saveHotRegions();
+
+    /**
+     * @return The estimated fraction of the mapped pages that are resident, or -1 if nothing is mapped
+     */
+    double sampleResidency();
+}
@@ -0,0 +1,83 @@
+package com.ethlo.geodata.dao.file;
+
+/*-
+ * #%L
+ * geodata-repository
+ * %%
+ * Copyright (C) 2017 - 2020 Morten Haraldsen (ethlo)
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * How the pages of a memory mapped data file are brought into memory before the first requests need them
+ */
+public enum WarmupPolicy
+{
+    /**
+     * Pages are read on first access
+     */
+    NONE,
+
+    /**
+     * All pages are loaded with {@link java.nio.MappedByteBuffer#load()}
+     */
+    LOAD,
+
+    /**
+     * All pages are touched in sequence, one read per page
+     */
+    TOUCH,
+
+    /**
+     * Only the regions that were resident when the previous run ended are touched. The resident regions are recorded
+     * again when this run ends.
+     */
+    HOT;
+
+    public static WarmupPolicy from(final String name)
+    {
+        return valueOf(name.trim().toUpperCase(Locale.ENGLISH));
+    }
+
+    /**
+     * Parse a comma separated list of <code>name:policy</code> pairs, for example <code>locations:touch,boundaries:hot</code>
+     */
+    public static Map<String, WarmupPolicy> parse(final String spec)
+    {
+        if (spec == null || spec.isBlank())
+        {
+            return Collections.emptyMap();
+        }
+
+        final Map<String, WarmupPolicy> policies = new LinkedHashMap<>();
+        for (final String entry : spec.split(","))
+        {
+            final String[] parts = entry.split(":");
+            if (parts.length != 2)
+            {
+                throw new IllegalArgumentException("Invalid warm-up policy '" + entry.trim() + "', expected name:policy");
+            }
+            policies.put(parts[0].trim(), from(parts[1]));
+        }
+        return Collections.unmodifiableMap(policies);
+    }
+}
@@ -28,13 +28,11 @@ import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.UncheckedIOException;
-import java.util.AbstractMap;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
 
 import org.locationtech.jts.geom.Coordinate;
-import org.locationtech.jts.geom.CoordinateXY;
 import org.locationtech.jts.geom.Envelope;
 import org.locationtech.jts.geom.Geometry;
 import org.locationtech.jts.geom.GeometryCollection;
@@ -42,16 +40,26 @@ import org.locationtech.jts.geom.GeometryFactory;
 import org.locationtech.jts.geom.LineString;
 import org.locationtech.jts.geom.LinearRing;
 import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.geom.impl.PackedCoordinateSequence;
+import org.locationtech.jts.geom.impl.PackedCoordinateSequenceFactory;
 import org.locationtech.jts.util.Assert;
 
 import com.ethlo.geodata.model.BoundaryData;
 import com.ethlo.geodata.model.BoundaryMetadata;
 import com.ethlo.geodata.model.Coordinates;
 
+/**
+ * Binary boundary records. Version 1 stores every vertex as an absolute {@link LatLngEncoder} value. Version 2 is
+ * marked by a leading {@link #VERSION_2_MARKER} and stores each vertex as zig-zag varint deltas to the previous vertex
+ * of the ring, on the same 1e-4 degree grid. Both versions can be read.
+ */
 public class BinaryBoundaryEncoder
 {
     public static final int SIZE_OF_COORDINATE = 6;
-    private static final GeometryFactory factory = new GeometryFactory();
+    public static final int FORMAT_VERSION = 2;
+    public static final int VERSION_2_MARKER = -2;
+    public static final double GRID_SCALE = 10_000D;
+    private static final GeometryFactory factory = new GeometryFactory(PackedCoordinateSequenceFactory.DOUBLE_FACTORY);
 
     public static BoundaryData readGeometry(final DataInputStream in)
     {
@@ -67,27 +75,30 @@ public class BinaryBoundaryEncoder
 
     private static BoundaryData doRead(final DataInputStream in) throws IOException
     {
-        final int id = in.readInt();
+        final int first = in.readInt();
+        final int version = readVersion(first);
+        final int id = version == 1 ? first : in.readInt();
         final int subDivideIndex = in.readInt();
         final Envelope bb = readBoundingBox(in);
         final double area = readArea(in);
 
-        final int numGeometries = in.readInt();
+        final int numGeometries = readCount(in, version);
 
         final List<Polygon> coll = new ArrayList<>();
 
         for (int numGeometry = 0; numGeometry < numGeometries; numGeometry++)
         {
-            final Map.Entry<Boolean, Coordinate[]> coordinates = readCoordinates(in);
-            if (coordinates.getValue().length == 0)
+            final boolean isHole = in.readByte() == 0;
+            final double[] ordinates = version == 1 ? readCoordinates(in) : readDeltaCoordinates(in);
+            if (ordinates.length == 0)
             {
                 continue;
             }
 
-            final boolean isHole = coordinates.getKey();
+            final LinearRing ring = factory.createLinearRing(new PackedCoordinateSequence.Double(closeRing(ordinates), 2, 0));
             if (!isHole)
             {
-                coll.add(createPolygon((coordinates.getValue())));
+                coll.add(factory.createPolygon(ring));
             }
             else
             {
@@ -103,10 +114,10 @@ public class BinaryBoundaryEncoder
                 }
 
                 // Add new hole
-                holes[holes.length - 1] = factory.createLinearRing(coordinates.getValue());
+                holes[holes.length - 1] = ring;
 
-                // Return polygon with new hole
-                factory.createPolygon(previous.getExteriorRing(), holes);
+                // Replace the shell with the polygon including the new hole
+                coll.set(coll.size() - 1, factory.createPolygon(previous.getExteriorRing(), holes));
             }
         }
 
@@ -117,44 +128,66 @@ public class BinaryBoundaryEncoder
         return new BoundaryData(id, subDivideIndex, bb, area, coll.get(0));
     }
 
-    private static Polygon createPolygon(final Coordinate[] value)
+    /**
+     * @return The interleaved x/y ordinates, with the first point repeated at the end if the ring is not already closed
+     */
+    private static double[] closeRing(final double[] ordinates)
     {
-        LinearRing ring = null;
-        if (isClosed(value))
+        final int last = ordinates.length - 2;
+        if (ordinates[0] == ordinates[last] && ordinates[1] == ordinates[last + 1])
         {
-            ring = factory.createLinearRing(value);
+            return ordinates;
         }
-        else
+
+        final double[] closed = Arrays.copyOf(ordinates, ordinates.length + 2);
+        closed[ordinates.length] = ordinates[0];
+        closed[ordinates.length + 1] = ordinates[1];
+        return closed;
+    }
+
+    private static double[] readCoordinates(final DataInputStream in) throws IOException
+    {
+        final int coordinateCount = in.readInt();
+        final double[] ordinates = new double[coordinateCount * 2];
+        for (int i = 0; i < ordinates.length; i += 2)
         {
-            final Coordinate[] array = new Coordinate[value.length + 1];
-            for (int i = 0; i < array.length - 1; i++)
-            {
-                array[i] = value[i];
-                array[array.length - 1] = value[0];
-                ring = factory.createLinearRing(array);
-            }
+            final int lat = (in.readUnsignedShort() << 8) | in.readUnsignedByte();
+            final int lng = (in.readUnsignedShort() << 8) | in.readUnsignedByte();
+            ordinates[i] = LatLngEncoder.decodeLng(lng);
+            ordinates[i + 1] = LatLngEncoder.decodeLat(lat);
         }
-        return factory.createPolygon(ring, null);
+        return ordinates;
     }
 
-    private static boolean isClosed(final Coordinate[] value)
+    private static double[] readDeltaCoordinates(final DataInputStream in) throws IOException
     {
-        return value[0].equals2D(value[value.length - 1]);
+        final int coordinateCount = VarInts.readUnsigned(in);
+        final double[] ordinates = new double[coordinateCount * 2];
+        int lat = 0;
+        int lng = 0;
+        for (int i = 0; i < ordinates.length; i += 2)
+        {
+            lat += VarInts.readSigned(in);
+            lng += VarInts.readSigned(in);
+            ordinates[i] = lng / GRID_SCALE;
+            ordinates[i + 1] = lat / GRID_SCALE;
+        }
+        return ordinates;
     }
 
-    private static Map.Entry<Boolean, Coordinate[]> readCoordinates(final DataInputStream in) throws IOException
+    private static int readVersion(final int first)
     {
-        boolean isHole = in.readByte() == 0;
-        final int coordinateCount = in.readInt();
-        final Coordinate[] coordinates = new Coordinate[coordinateCount];
-        final byte[] data = new byte[6];
-        for (int i = 0; i < coordinateCount; i++)
+        if (first == VERSION_2_MARKER)
         {
-            Assert.isTrue(in.read(data) == 6);
-            final Coordinates coord = LatLngEncoder.decode(data);
-            coordinates[i] = new CoordinateXY(coord.getLng(), coord.getLat());
+            return 2;
         }
-        return new AbstractMap.SimpleEntry<>(isHole, coordinates);
+        isTrue(first > 0, "Expected a version marker or a positive id, got " + first);
+        return 1;
+    }
+
+    private static int readCount(final DataInputStream in, final int version) throws IOException
+    {
+        return version == 1 ? in.readInt() : VarInts.readUnsigned(in);
     }
 
     private static Envelope readBoundingBox(final DataInputStream in) throws IOException
@@ -168,32 +201,43 @@ public class BinaryBoundaryEncoder
 
     public static BoundaryMetadata readBoundaryMetadata(final DataInputStream in) throws IOException
     {
-        final int id = in.readInt();
+        final int first = in.readInt();
+        final int version = readVersion(first);
+        final int id = version == 1 ? first : in.readInt();
         isTrue(id > 0, "id must be a positive integer");
         final int subDivideIndex = in.readInt();
         isTrue(subDivideIndex >= 0, "subDivideIndex must be a non-negative integer");
         final Envelope bb = readBoundingBox(in);
         final double area = readArea(in);
-        skipGeometry(in);
+        skipGeometry(in, version);
         return new BoundaryMetadata(id, subDivideIndex, bb, area);
     }
 
-    private static void skipGeometry(final DataInputStream in) throws IOException
+    private static void skipGeometry(final DataInputStream in, final int version) throws IOException
     {
-        final int numGeometries = in.readInt();
+        final int numGeometries = readCount(in, version);
         for (int i = 0; i < numGeometries; i++)
         {
-            skipCoordinates(in);
+            skipCoordinates(in, version);
         }
     }
 
-    private static void skipCoordinates(final DataInputStream in) throws IOException
+    private static void skipCoordinates(final DataInputStream in, final int version) throws IOException
     {
         final byte isHole = in.readByte();
         isTrue(isHole == 0 || isHole == 1, "isHole should be 0 or 1");
-        final int pointCount = in.readInt();
-        final int skipBytes = SIZE_OF_COORDINATE * pointCount;
-        in.skipBytes(skipBytes);
+        final int pointCount = readCount(in, version);
+        if (version == 1)
+        {
+            in.skipBytes(SIZE_OF_COORDINATE * pointCount);
+        }
+        else
+        {
+            for (int i = 0; i < pointCount * 2; i++)
+            {
+                VarInts.readUnsigned(in);
+            }
+        }
     }
 
     private static double readArea(final DataInputStream din) throws IOException
@@ -203,18 +247,28 @@ public class BinaryBoundaryEncoder
 
     public static void write(BoundaryData data, DataOutputStream out) throws IOException
     {
+        write(data, out, FORMAT_VERSION);
+    }
+
+    public static void write(BoundaryData data, DataOutputStream out, int version) throws IOException
+    {
+        isTrue(version == 1 || version == 2, "Unsupported boundary format version: " + version);
+        if (version == 2)
+        {
+            out.writeInt(VERSION_2_MARKER);
+        }
         out.writeInt(data.getId());
         out.writeInt(data.getSubDivideIndex());
         writeBoundingBox(data.getMbr(), out);
         out.writeDouble(data.getArea());
-        writeData(data.getGeometry(), out);
+        writeData(data.getGeometry(), out, version);
     }
 
-    private static void writeData(final Geometry geometry, final DataOutputStream out) throws IOException
+    private static void writeData(final Geometry geometry, final DataOutputStream out, final int version) throws IOException
     {
         final int count = countCoordinateRings(geometry);
-        out.writeInt(count);
-        final int written = doWriteData(geometry, out);
+        writeCount(out, count, version);
+        final int written = doWriteData(geometry, out, version);
         isTrue(count == written, "Expected " + count + " but wrote " + written);
     }
 
@@ -247,7 +301,19 @@ public class BinaryBoundaryEncoder
         return count;
     }
 
-    private static int doWriteData(final Geometry geometry, final DataOutputStream out) throws IOException
+    private static void writeCount(final DataOutputStream out, final int count, final int version) throws IOException
+    {
+        if (version == 1)
+        {
+            out.writeInt(count);
+        }
+        else
+        {
+            VarInts.writeUnsigned(out, count);
+        }
+    }
+
+    private static int doWriteData(final Geometry geometry, final DataOutputStream out, final int version) throws IOException
     {
         int written = 0;
         if (geometry instanceof GeometryCollection)
@@ -256,7 +322,7 @@ public class BinaryBoundaryEncoder
             for (int i = 0; i < collection.getNumGeometries(); i++)
             {
                 final Geometry g = collection.getGeometryN(i);
-                written += doWriteData(g, out);
+                written += doWriteData(g, out, version);
             }
         }
         else if (geometry instanceof Polygon)
@@ -264,13 +330,13 @@ public class BinaryBoundaryEncoder
             final Polygon poly = (Polygon) geometry;
 
             // Always output the shell first, as that is what the holes are in (if any)
-            handleShell(poly, out);
+            handleShell(poly, out, version);
             written++;
-            written += handleHole(poly, out);
+            written += handleHole(poly, out, version);
         }
         else if (geometry instanceof LineString)
         {
-            writeCoordinates(false, geometry.getCoordinates(), out);
+            writeCoordinates(false, geometry.getCoordinates(), out, version);
             written++;
         }
         else
@@ -280,27 +346,43 @@ public class BinaryBoundaryEncoder
         return written;
     }
 
-    private static int handleHole(final Polygon poly, DataOutputStream out) throws IOException
+    private static int handleHole(final Polygon poly, DataOutputStream out, final int version) throws IOException
     {
         for (int i = 0; i < poly.getNumInteriorRing(); i++)
         {
-            writeCoordinates(true, poly.getInteriorRingN(i).getCoordinates(), out);
+            writeCoordinates(true, poly.getInteriorRingN(i).getCoordinates(), out, version);
         }
         return poly.getNumInteriorRing();
     }
 
-    private static void handleShell(final Polygon poly, DataOutputStream out) throws IOException
+    private static void handleShell(final Polygon poly, DataOutputStream out, final int version) throws IOException
     {
-        writeCoordinates(false, poly.getExteriorRing().getCoordinates(), out);
+        writeCoordinates(false, poly.getExteriorRing().getCoordinates(), out, version);
     }
 
-    private static void writeCoordinates(final boolean hole, final Coordinate[] coordinates, final DataOutputStream out) throws IOException
+    private static void writeCoordinates(final boolean hole, final Coordinate[] coordinates, final DataOutputStream out, final int version) throws IOException
     {
         out.writeByte(hole ? 0 : 1);
-        out.writeInt(coordinates.length);
+        writeCount(out, coordinates.length, version);
+        if (version == 1)
+        {
+            for (Coordinate coord : coordinates)
+            {
+                out.write(LatLngEncoder.encode(Coordinates.of(coord)));
+            }
+            return;
+        }
+
+        int previousLat = 0;
+        int previousLng = 0;
         for (Coordinate coord : coordinates)
         {
-            out.write(LatLngEncoder.encode(Coordinates.of(coord)));
+            final int lat = (int) Math.round(coord.getY() * GRID_SCALE);
+            final int lng = (int) Math.round(coord.getX() * GRID_SCALE);
+            VarInts.writeSigned(out, lat - previousLat);
+            VarInts.writeSigned(out, lng - previousLng);
+            previousLat = lat;
+            previousLng = lng;
         }
     }
 
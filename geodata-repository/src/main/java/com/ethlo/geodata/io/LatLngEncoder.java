@@ -72,12 +72,18 @@ public class LatLngEncoder
 
     public static Coordinates decode(byte[] data)
     {
-        final double lat = decodeUnsigned(data, 0, 3) / 10_000D;
-        final double latSigned = lat > 90 ? lat - 180 : lat;
+        return Coordinates.from(decodeLat(decodeUnsigned(data, 0, 3)), decodeLng(decodeUnsigned(data, 3, 3)));
+    }
 
-        final double lng = decodeUnsigned(data, 3, 3) / 10_000D;
-        final double lngSigned = lng > 180 ? lng - 360 : lng;
+    public static double decodeLat(final int value)
+    {
+        final double lat = value / 10_000D;
+        return lat > 90 ? lat - 180 : lat;
+    }
 
-        return Coordinates.from(latSigned, lngSigned);
+    public static double decodeLng(final int value)
+    {
+        final double lng = value / 10_000D;
+        return lng > 180 ? lng - 360 : lng;
     }
 }
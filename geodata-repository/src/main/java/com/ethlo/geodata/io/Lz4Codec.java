@@ -0,0 +1,241 @@
+package com.ethlo.geodata.io;
+
+
+/*-
+ * #%L
+ * geodata-repository
+ * %%
+ * Copyright (C) 2017 - 2020 Morten Haraldsen (ethlo)
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import com.google.common.io.ByteStreams;
+import com.google.common.primitives.Ints;
+
+/**
+ * Pure Java codec for the LZ4 block format. The payload is the uncompressed length as a 4 byte int followed by a
+ * single LZ4 block. Compression is a simple greedy single-pass match finder, trading ratio for very cheap decoding.
+ */
+public class Lz4Codec implements RecordCodec
+{
+    public static final Lz4Codec INSTANCE = new Lz4Codec();
+
+    private static final int MIN_MATCH = 4;
+    private static final int LAST_LITERALS = 5;
+    private static final int MF_LIMIT = 12;
+    private static final int MAX_DISTANCE = 65_535;
+    private static final int HASH_LOG = 12;
+    private static final int RUN_MASK = 15;
+
+    @Override
+    public RecordType getType()
+    {
+        return RecordType.LZ4_PREFIXED_LENGTH;
+    }
+
+    @Override
+    public byte[] encode(final byte[] data)
+    {
+        final byte[] compressed = compress(data);
+        final byte[] payload = new byte[4 + compressed.length];
+        System.arraycopy(Ints.toByteArray(data.length), 0, payload, 0, 4);
+        System.arraycopy(compressed, 0, payload, 4, compressed.length);
+        return payload;
+    }
+
+    @Override
+    public InputStream decode(final InputStream in, final int length) throws IOException
+    {
+        final byte[] payload = new byte[length];
+        ByteStreams.readFully(in, payload);
+        final byte[] decompressed = new byte[Ints.fromBytes(payload[0], payload[1], payload[2], payload[3])];
+        decompress(payload, 4, length, decompressed);
+        return new ByteArrayInputStream(decompressed);
+    }
+
+    public static byte[] compress(final byte[] src)
+    {
+        final int length = src.length;
+        final byte[] dst = new byte[length + length / 255 + 16];
+        final int[] table = new int[1 << HASH_LOG];
+        Arrays.fill(table, -1);
+
+        final int matchStartLimit = length - MF_LIMIT;
+        final int matchEndLimit = length - LAST_LITERALS;
+        int anchor = 0;
+        int ip = 0;
+        int op = 0;
+        while (ip < matchStartLimit)
+        {
+            final int sequence = readInt(src, ip);
+            final int hash = (sequence * -1640531535) >>> (32 - HASH_LOG);
+            int ref = table[hash];
+            table[hash] = ip;
+            if (ref < 0 || ip - ref > MAX_DISTANCE || readInt(src, ref) != sequence)
+            {
+                ip++;
+                continue;
+            }
+
+            // Extend the match backwards into the pending literals
+            while (ip > anchor && ref > 0 && src[ip - 1] == src[ref - 1])
+            {
+                ip--;
+                ref--;
+            }
+
+            int matchLength = MIN_MATCH;
+            while (ip + matchLength < matchEndLimit && src[ip + matchLength] == src[ref + matchLength])
+            {
+                matchLength++;
+            }
+
+            op = writeSequence(src, anchor, ip - anchor, dst, op, ip - ref, matchLength);
+            ip += matchLength;
+            anchor = ip;
+        }
+
+        // Remaining literals
+        final int literals = length - anchor;
+        final int token = op++;
+        dst[token] = (byte) (Math.min(literals, RUN_MASK) << 4);
+        op = writeLength(dst, op, literals);
+        System.arraycopy(src, anchor, dst, op, literals);
+        op += literals;
+        return Arrays.copyOf(dst, op);
+    }
+
+    /**
+     * Decompress the LZ4 block in <code>src[srcOffset, srcEnd)</code>, which must fill <code>dst</code> exactly
+     */
+    public static void decompress(final byte[] src, final int srcOffset, final int srcEnd, final byte[] dst)
+    {
+        int ip = srcOffset;
+        int op = 0;
+        try
+        {
+            while (true)
+            {
+                final int token = src[ip++] & 0xFF;
+
+                int literals = token >>> 4;
+                if (literals == RUN_MASK)
+                {
+                    int b;
+                    do
+                    {
+                        b = src[ip++] & 0xFF;
+                        literals += b;
+                    }
+                    while (b == 255);
+                }
+                System.arraycopy(src, ip, dst, op, literals);
+                ip += literals;
+                op += literals;
+
+                if (ip >= srcEnd)
+                {
+                    break;
+                }
+
+                final int distance = (src[ip++] & 0xFF) | ((src[ip++] & 0xFF) << 8);
+                int matchLength = token & RUN_MASK;
+                if (matchLength == RUN_MASK)
+                {
+                    int b;
+                    do
+                    {
+                        b = src[ip++] & 0xFF;
+                        matchLength += b;
+                    }
+                    while (b == 255);
+                }
+                matchLength += MIN_MATCH;
+
+                final int ref = op - distance;
+                if (distance == 0 || ref < 0)
+                {
+                    throw new IllegalArgumentException("Invalid match offset " + distance + " at position " + op);
+                }
+
+                if (distance >= matchLength)
+                {
+                    System.arraycopy(dst, ref, dst, op, matchLength);
+                }
+                else
+                {
+                    // Overlapping copy repeats the last bytes
+                    for (int i = 0; i < matchLength; i++)
+                    {
+                        dst[op + i] = dst[ref + i];
+                    }
+                }
+                op += matchLength;
+            }
+        }
+        catch (ArrayIndexOutOfBoundsException exc)
+        {
+            throw new IllegalArgumentException("Malformed LZ4 block", exc);
+        }
+
+        if (op != dst.length)
+        {
+            throw new IllegalArgumentException("Expected " + dst.length + " bytes, but decompressed " + op);
+        }
+    }
+
+    private static int writeSequence(final byte[] src, final int literalStart, final int literals, final byte[] dst, int op, final int distance, final int matchLength)
+    {
+        final int token = op++;
+        op = writeLength(dst, op, literals);
+        System.arraycopy(src, literalStart, dst, op, literals);
+        op += literals;
+
+        dst[op++] = (byte) distance;
+        dst[op++] = (byte) (distance >>> 8);
+
+        final int extraMatchLength = matchLength - MIN_MATCH;
+        op = writeLength(dst, op, extraMatchLength);
+        dst[token] = (byte) ((Math.min(literals, RUN_MASK) << 4) | Math.min(extraMatchLength, RUN_MASK));
+        return op;
+    }
+
+    private static int writeLength(final byte[] dst, int op, final int length)
+    {
+        if (length >= RUN_MASK)
+        {
+            int remaining = length - RUN_MASK;
+            while (remaining >= 255)
+            {
+                dst[op++] = (byte) 255;
+                remaining -= 255;
+            }
+            dst[op++] = (byte) remaining;
+        }
+        return op;
+    }
+
+    private static int readInt(final byte[] src, final int index)
+    {
+        return Ints.fromBytes(src[index], src[index + 1], src[index + 2], src[index + 3]);
+    }
+}
@@ -0,0 +1,52 @@
+package com.ethlo.geodata.io;
+
+
+/*-
+ * #%L
+ * geodata-repository
+ * %%
+ * Copyright (C) 2017 - 2020 Morten Haraldsen (ethlo)
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.ethlo.geodata.util.CompressionUtil;
+
+public class Lzma2Codec implements RecordCodec
+{
+    public static final Lzma2Codec INSTANCE = new Lzma2Codec();
+
+    @Override
+    public RecordType getType()
+    {
+        return RecordType.LZMA2_PREFIXED_LENGTH;
+    }
+
+    @Override
+    public byte[] encode(final byte[] data) throws IOException
+    {
+        return CompressionUtil.compress(data);
+    }
+
+    @Override
+    public InputStream decode(final InputStream in, final int length) throws IOException
+    {
+        return CompressionUtil.decompress(in);
+    }
+}
@@ -0,0 +1,109 @@
+package com.ethlo.geodata.io;
+
+
+/*-
+ * #%L
+ * geodata-repository
+ * %%
+ * Copyright (C) 2017 - 2020 Morten Haraldsen (ethlo)
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import java.io.UTFDataFormatException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Decodes strings written by {@link java.io.DataOutputStream#writeUTF(String)} directly from a buffer, using absolute reads only.
+ */
+public class ModifiedUtf8
+{
+    public static int encodedLength(final ByteBuffer buffer, final int position)
+    {
+        return 2 + Short.toUnsignedInt(buffer.getShort(position));
+    }
+
+    public static String read(final ByteBuffer buffer, final int position)
+    {
+        final int length = Short.toUnsignedInt(buffer.getShort(position));
+        final int start = position + 2;
+        final byte[] bytes = new byte[length];
+        buffer.get(start, bytes);
+
+        boolean ascii = true;
+        for (int i = 0; i < length && ascii; i++)
+        {
+            ascii = bytes[i] > 0;
+        }
+
+        if (ascii)
+        {
+            return new String(bytes, StandardCharsets.ISO_8859_1);
+        }
+
+        return decode(bytes);
+    }
+
+    private static String decode(final byte[] bytes)
+    {
+        final char[] chars = new char[bytes.length];
+        int count = 0;
+        int index = 0;
+        while (index < bytes.length)
+        {
+            final int c = bytes[index] & 0xff;
+            if (c < 0x80)
+            {
+                chars[count++] = (char) c;
+                index++;
+            }
+            else if ((c & 0xE0) == 0xC0)
+            {
+                final int c2 = continuation(bytes, index + 1);
+                chars[count++] = (char) (((c & 0x1F) << 6) | (c2 & 0x3F));
+                index += 2;
+            }
+            else if ((c & 0xF0) == 0xE0)
+            {
+                final int c2 = continuation(bytes, index + 1);
+                final int c3 = continuation(bytes, index + 2);
+                chars[count++] = (char) (((c & 0x0F) << 12) | ((c2 & 0x3F) << 6) | (c3 & 0x3F));
+                index += 3;
+            }
+            else
+            {
+                throw malformed(index);
+            }
+        }
+        return new String(chars, 0, count);
+    }
+
+    private static int continuation(final byte[] bytes, final int index)
+    {
+        if (index >= bytes.length || (bytes[index] & 0xC0) != 0x80)
+        {
+            throw malformed(index);
+        }
+        return bytes[index];
+    }
+
+    private static UncheckedIOException malformed(final int index)
+    {
+        return new UncheckedIOException(new UTFDataFormatException("Malformed input around byte " + index));
+    }
+}
@@ -0,0 +1,60 @@
+package com.ethlo.geodata.io;
+
+
+/*-
+ * #%L
+ * geodata-repository
+ * %%
+ * Copyright (C) 2017 - 2020 Morten Haraldsen (ethlo)
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Encoding of the payload of a record in an indexed data file. The codec is identified by the record type byte,
+ * so files written with different codecs can be read by the same DAO.
+ */
+public interface RecordCodec
+{
+    static RecordCodec forType(RecordType type)
+    {
+        switch (type)
+        {
+            case UNCOMPRESSED_PREFIXED_LENGTH:
+                return UncompressedCodec.INSTANCE;
+            case LZMA2_PREFIXED_LENGTH:
+                return Lzma2Codec.INSTANCE;
+            case LZ4_PREFIXED_LENGTH:
+                return Lz4Codec.INSTANCE;
+            default:
+                throw new IllegalArgumentException("Unhandled record type: " + type);
+        }
+    }
+
+    RecordType getType();
+
+    byte[] encode(byte[] data) throws IOException;
+
+    /**
+     * @param in     The encoded payload
+     * @param length The length of the encoded payload
+     * @return A stream of the decoded data
+     */
+    InputStream decode(InputStream in, int length) throws IOException;
+}
@@ -22,19 +22,53 @@ package com.ethlo.geodata.io;
  * #L%
  */
 
+import java.util.Locale;
+
 public enum RecordType
 {
-    UNCOMPRESSED_PREFIXED_LENGTH(1), LZMA2_PREFIXED_LENGTH(2);
+    UNCOMPRESSED_PREFIXED_LENGTH(1, "none"), LZMA2_PREFIXED_LENGTH(2, "lzma2"), LZ4_PREFIXED_LENGTH(3, "lz4");
 
     private final int id;
+    private final String codecName;
 
-    RecordType(final int id)
+    RecordType(final int id, final String codecName)
     {
         this.id = id;
+        this.codecName = codecName;
+    }
+
+    public static RecordType from(final int id)
+    {
+        for (final RecordType type : values())
+        {
+            if (type.id == id)
+            {
+                return type;
+            }
+        }
+        throw new IllegalArgumentException("Unknown record type: " + id);
+    }
+
+    public static RecordType fromCodecName(final String codecName)
+    {
+        final String name = codecName.trim().toLowerCase(Locale.ENGLISH);
+        for (final RecordType type : values())
+        {
+            if (type.codecName.equals(name))
+            {
+                return type;
+            }
+        }
+        throw new IllegalArgumentException("Unknown record codec: " + codecName);
     }
 
     public int getId()
     {
         return id;
     }
+
+    public String getCodecName()
+    {
+        return codecName;
+    }
 }
@@ -0,0 +1,49 @@
+package com.ethlo.geodata.io;
+
+
+/*-
+ * #%L
+ * geodata-repository
+ * %%
+ * Copyright (C) 2017 - 2020 Morten Haraldsen (ethlo)
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import java.io.InputStream;
+
+public class UncompressedCodec implements RecordCodec
+{
+    public static final UncompressedCodec INSTANCE = new UncompressedCodec();
+
+    @Override
+    public RecordType getType()
+    {
+        return RecordType.UNCOMPRESSED_PREFIXED_LENGTH;
+    }
+
+    @Override
+    public byte[] encode(final byte[] data)
+    {
+        return data;
+    }
+
+    @Override
+    public InputStream decode(final InputStream in, final int length)
+    {
+        return in;
+    }
+}
@@ -31,10 +31,15 @@ public class GeoLocationSummary
 
     public GeoLocationSummary(com.ethlo.geodata.model.GeoLocation location)
     {
-        this.id = location.getId();
-        this.name = location.getName();
-        this.featureClass = location.getFeatureClass();
-        this.featureCode = location.getFeatureCode();
+        this(location.getId(), location.getName(), location.getFeatureClass(), location.getFeatureCode());
+    }
+
+    public GeoLocationSummary(final int id, final String name, final String featureClass, final String featureCode)
+    {
+        this.id = id;
+        this.name = name;
+        this.featureClass = featureClass;
+        this.featureCode = featureCode;
     }
 
     public int getId()
@@ -28,7 +28,7 @@ import java.io.IOException;
 import java.io.Serializable;
 import java.util.Objects;
 
-public class RawLocation implements CompactSerializable, IntIdentifiable, Serializable
+public class RawLocation implements CompactSerializable, IntIdentifiable, RawLocationView, Serializable
 {
     private int id;
     private String name;
@@ -83,6 +83,16 @@ public class RawLocation implements CompactSerializable, IntIdentifiable, Serial
         return Coordinates.from(lat, lng);
     }
 
+    public double getLat()
+    {
+        return lat;
+    }
+
+    public double getLng()
+    {
+        return lng;
+    }
+
     public int getMapFeatureId()
     {
         return mapFeatureId;
@@ -0,0 +1,53 @@
+package com.ethlo.geodata.model;
+
+
+/*-
+ * #%L
+ * geodata-repository
+ * %%
+ * Copyright (C) 2017 - 2020 Morten Haraldsen (ethlo)
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+/**
+ * Read-only access to the fields of a stored location, regardless of how it is backed.
+ */
+public interface RawLocationView
+{
+    int getId();
+
+    String getName();
+
+    String getCountryCode();
+
+    double getLat();
+
+    double getLng();
+
+    int getMapFeatureId();
+
+    long getPopulation();
+
+    int getTimeZoneId();
+
+    int getElevation();
+
+    default Coordinates getCoordinates()
+    {
+        return Coordinates.from(getLat(), getLng());
+    }
+}
@@ -27,6 +27,7 @@ import java.io.InputStream;
 import java.io.OutputStream;
 
 import org.springframework.util.FastByteArrayOutputStream;
+import org.tukaani.xz.BasicArrayCache;
 import org.tukaani.xz.LZMA2Options;
 import org.tukaani.xz.UnsupportedOptionsException;
 import org.tukaani.xz.XZ;
@@ -57,9 +58,12 @@ public class CompressionUtil
         return new XZOutputStream(out, options);
     }
 
+    /**
+     * Decompress using pooled decoder buffers. The buffers are only returned to the pool when the stream is closed.
+     */
     public static InputStream decompress(InputStream in) throws IOException
     {
-        return new XZInputStream(in);
+        return new XZInputStream(in, BasicArrayCache.getInstance());
     }
 
     public static byte[] compress(byte[] uncompressed) throws IOException
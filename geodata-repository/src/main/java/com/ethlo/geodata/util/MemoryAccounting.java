@@ -0,0 +1,133 @@
+package com.ethlo.geodata.util;
+
+/*-
+ * #%L
+ * geodata-common
+ * %%
+ * Copyright (C) 2017 - 2020 Morten Haraldsen (ethlo)
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.DoubleSupplier;
+import java.util.function.LongSupplier;
+
+/**
+ * Registry of the data structures held by a service and the memory each of them retains. Each structure registers an
+ * estimator of its heap bytes, an exact count for primitive arrays and buffers or entries times a per-entry cost for
+ * object graphs, and of its memory mapped bytes. The estimators are evaluated when a snapshot is taken.
+ */
+public class MemoryAccounting
+{
+    private static final LongSupplier NONE = () -> 0;
+    private static final DoubleSupplier UNKNOWN = () -> -1;
+
+    private final Map<String, Estimator> estimators = new LinkedHashMap<>();
+
+    public void register(final String name, final LongSupplier heapBytes, final LongSupplier mappedBytes)
+    {
+        register(name, heapBytes, mappedBytes, UNKNOWN);
+    }
+
+    public synchronized void register(final String name, final LongSupplier heapBytes, final LongSupplier mappedBytes, final DoubleSupplier residentFraction)
+    {
+        estimators.put(name, new Estimator(heapBytes, mappedBytes, residentFraction));
+    }
+
+    public void registerHeap(final String name, final LongSupplier heapBytes)
+    {
+        register(name, heapBytes, NONE);
+    }
+
+    public void registerMapped(final String name, final LongSupplier mappedBytes)
+    {
+        register(name, NONE, mappedBytes);
+    }
+
+    public synchronized void unregister(final String name)
+    {
+        estimators.remove(name);
+    }
+
+    public synchronized List<Usage> snapshot()
+    {
+        final List<Usage> result = new ArrayList<>(estimators.size());
+        estimators.forEach((name, estimator) -> result.add(new Usage(name, estimator.heapBytes.getAsLong(), estimator.mappedBytes.getAsLong(), estimator.residentFraction.getAsDouble())));
+        return result;
+    }
+
+    private static class Estimator
+    {
+        private final LongSupplier heapBytes;
+        private final LongSupplier mappedBytes;
+        private final DoubleSupplier residentFraction;
+
+        private Estimator(final LongSupplier heapBytes, final LongSupplier mappedBytes, final DoubleSupplier residentFraction)
+        {
+            this.heapBytes = heapBytes;
+            this.mappedBytes = mappedBytes;
+            this.residentFraction = residentFraction;
+        }
+    }
+
+    public static class Usage
+    {
+        private final String name;
+        private final long heapBytes;
+        private final long mappedBytes;
+        private final double residentFraction;
+
+        public Usage(final String name, final long heapBytes, final long mappedBytes)
+        {
+            this(name, heapBytes, mappedBytes, -1);
+        }
+
+        public Usage(final String name, final long heapBytes, final long mappedBytes, final double residentFraction)
+        {
+            this.name = name;
+            this.heapBytes = heapBytes;
+            this.mappedBytes = mappedBytes;
+            this.residentFraction = residentFraction;
+        }
+
+        public String getName()
+        {
+            return name;
+        }
+
+        public long getHeapBytes()
+        {
+            return heapBytes;
+        }
+
+        public long getMappedBytes()
+        {
+            return mappedBytes;
+        }
+
+        /**
+         * @return The sampled fraction of the mapped pages that are resident, or -1 if not known
+         */
+        public double getResidentFraction()
+        {
+            return residentFraction;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.ethlo.geodata.dao.file;
+
+/*-
+ * #%L
+ * geodata-repository
+ * %%
+ * Copyright (C) 2017 - 2020 Morten Haraldsen (ethlo)
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.locationtech.jts.geom.Envelope;
+
+import com.ethlo.geodata.model.BoundaryMetadata;
+import com.ethlo.geodata.model.RTreePayload;
+
+public class BoundaryMetaFileTest
+{
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testRoundTrip() throws IOException
+    {
+        try (final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(BoundaryMetaFile.path(tempDir)))))
+        {
+            BoundaryMetaFile.writeHeader(out);
+            BoundaryMetaFile.writeRecord(out, new BoundaryMetadata(3144096, 0, new Envelope(4.5, 31.1, 57.9, 71.2), 38.25), 0);
+            BoundaryMetaFile.writeRecord(out, new BoundaryMetadata(3144096, 1, new Envelope(-10, 10, -5, 5), 1.5), 5_000_000_000L);
+        }
+        assertThat(Files.size(BoundaryMetaFile.path(tempDir))).isEqualTo(BoundaryMetaFile.HEADER_SIZE + 2 * BoundaryMetaFile.RECORD_SIZE);
+
+        try (final BoundaryMetaFile metaFile = BoundaryMetaFile.load(tempDir))
+        {
+            assertThat(metaFile.size()).isEqualTo(2);
+            assertThat(metaFile.getOffset(1)).isEqualTo(5_000_000_000L);
+
+            final List<RTreePayload> payloads = metaFile.stream().collect(Collectors.toList());
+            assertThat(payloads.get(0).getId()).isEqualTo(3144096);
+            assertThat(payloads.get(0).getArea()).isEqualTo(38.25);
+            assertThat(payloads.get(0).getEnvelope().getMinX()).isEqualTo(4.5D);
+            assertThat(payloads.get(1).getSubdivideIndex()).isEqualTo(1);
+            assertThat(payloads.get(1).getEnvelope().equals(new Envelope(-10, 10, -5, 5))).isTrue();
+        }
+    }
+
+    @Test
+    public void testEnvelopeIsRoundedOutward() throws IOException
+    {
+        // None of the bounds can be represented exactly as a float
+        final Envelope mbr = new Envelope(4.1, 31.1, 57.9, 71.2);
+        try (final DataOutputStream out = new DataOutputStream(Files.newOutputStream(BoundaryMetaFile.path(tempDir))))
+        {
+            BoundaryMetaFile.writeHeader(out);
+            BoundaryMetaFile.writeRecord(out, new BoundaryMetadata(3144096, 0, mbr, 38.25), 0);
+        }
+
+        try (final BoundaryMetaFile metaFile = BoundaryMetaFile.load(tempDir))
+        {
+            assertThat(metaFile.getEnvelope(0).covers(mbr)).isTrue();
+        }
+    }
+
+    @Test
+    public void testRejectsOtherVersion() throws IOException
+    {
+        try (final DataOutputStream out = new DataOutputStream(Files.newOutputStream(BoundaryMetaFile.path(tempDir))))
+        {
+            out.writeInt(BoundaryMetaFile.MAGIC);
+            out.writeInt(BoundaryMetaFile.VERSION + 1);
+        }
+        assertThatThrownBy(() -> BoundaryMetaFile.load(tempDir)).isInstanceOf(IllegalStateException.class);
+    }
+}
@@ -0,0 +1,91 @@
+package com.ethlo.geodata.dao.file;
+
+/*-
+ * #%L
+ * geodata-repository
+ * %%
+ * Copyright (C) 2017 - 2020 Morten Haraldsen (ethlo)
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class ByteBufferHolderTest
+{
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testReadAcrossSegments() throws IOException
+    {
+        final byte[] data = new byte[1000];
+        for (int i = 0; i < data.length; i++)
+        {
+            data[i] = (byte) i;
+        }
+        final Path file = tempDir.resolve("test.data");
+        Files.write(file, data);
+
+        final ByteBufferHolder holder = new ByteBufferHolder(file, 64, 8, MmapBackend.GC);
+        assertThat(holder.length()).isEqualTo(1000);
+
+        // Within the overlap of the first segment
+        assertThat(holder.getSegmentPosition(130)).isEqualTo(2);
+        assertThat(holder.getSegment(63).get(holder.getSegmentPosition(63) + 4)).isEqualTo(data[67]);
+
+        final byte[] read = new byte[900];
+        try (final DataInputStream in = new DataInputStream(holder.getInputStream(60)))
+        {
+            in.readFully(read);
+            assertThat(in.read()).isEqualTo(data[960] & 0xFF);
+            assertThat(in.skip(100)).isEqualTo(39);
+            assertThat(in.read()).isEqualTo(-1);
+        }
+        for (int i = 0; i < read.length; i++)
+        {
+            assertThat(read[i]).isEqualTo(data[60 + i]);
+        }
+    }
+
+    @Test
+    public void testExplicitClose() throws IOException
+    {
+        final Path file = tempDir.resolve("close.data");
+        Files.write(file, new byte[200]);
+
+        final int openFiles = MappedFiles.getOpenFiles();
+        final long mappedBytes = MappedFiles.getMappedBytes();
+        final ByteBufferHolder holder = new ByteBufferHolder(file, 64, 8, MmapBackend.EXPLICIT);
+        assertThat(MappedFiles.getOpenFiles()).isEqualTo(openFiles + 1);
+        assertThat(MappedFiles.getMappedBytes()).isEqualTo(mappedBytes + 72 + 72 + 72 + 8);
+
+        holder.close();
+        holder.close();
+        assertThat(MappedFiles.getOpenFiles()).isEqualTo(openFiles);
+        assertThat(MappedFiles.getMappedBytes()).isEqualTo(mappedBytes);
+        assertThatThrownBy(() -> holder.getSegment(0)).isInstanceOf(IllegalStateException.class);
+    }
+}
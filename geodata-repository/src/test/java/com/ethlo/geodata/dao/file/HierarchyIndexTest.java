@@ -0,0 +1,89 @@
+package com.ethlo.geodata.dao.file;
+
+/*-
+ * #%L
+ * geodata-repository
+ * %%
+ * Copyright (C) 2017 - 2020 Morten Haraldsen (ethlo)
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class HierarchyIndexTest
+{
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testRoundTrip()
+    {
+        // Earth > Europe > Norway > Oslo, Viken
+        final Map<Integer, Integer> childToParent = new HashMap<>();
+        childToParent.put(6255148, 6295630);
+        childToParent.put(3144096, 6255148);
+        childToParent.put(3143242, 3144096);
+        childToParent.put(11954292, 3144096);
+        childToParent.put(3137966, 3137966);
+
+        final Path file = tempDir.resolve(HierarchyIndex.FILE);
+        HierarchyIndex.of(childToParent).write(file);
+
+        try (final HierarchyIndex index = HierarchyIndex.open(file, MmapBackend.GC))
+        {
+            assertThat(index.size()).isEqualTo(6);
+            assertThat(index.getChildIds(3144096)).containsExactly(3143242, 11954292);
+            assertThat(index.getChildIds(3143242)).isEmpty();
+            assertThat(index.getChildIds(1)).isEmpty();
+            assertThat(index.getParentId(3143242)).isEqualTo(3144096);
+            assertThat(index.getParentId(6295630)).isEqualTo(HierarchyIndex.NO_PARENT);
+            assertThat(index.getParentId(3137966)).isEqualTo(HierarchyIndex.NO_PARENT);
+            assertThat(index.contains(1)).isFalse();
+
+            final int oslo = index.ordinal(3143242);
+            assertThat(index.getId(index.getParentOrdinal(index.getParentOrdinal(oslo)))).isEqualTo(6255148);
+        }
+    }
+
+    @Test
+    public void testLocationOrdinals()
+    {
+        final Map<Integer, Integer> childToParent = new HashMap<>();
+        childToParent.put(3143242, 3144096);
+        childToParent.put(11954292, 3144096);
+        childToParent.put(3144096, 6255148);
+
+        // 6255148 is not among the locations, 1 has no place in the hierarchy
+        final int[] locationIds = {1, 3143242, 3144096, 11954292};
+        final HierarchyIndex index = HierarchyIndex.of(childToParent, locationIds);
+        assertThat(index.isLocationOrdinals()).isTrue();
+        assertThat(index.size()).isEqualTo(4);
+        assertThat(index.ordinal(3144096)).isEqualTo(2);
+        assertThat(index.getChildOrdinals(2)).containsExactly(1, 3);
+        assertThat(index.getParentId(3144096)).isEqualTo(HierarchyIndex.NO_PARENT);
+        assertThat(index.contains(3144096)).isTrue();
+        assertThat(index.contains(1)).isFalse();
+        assertThat(HierarchyIndex.of(childToParent).isLocationOrdinals()).isFalse();
+    }
+}
@@ -0,0 +1,64 @@
+package com.ethlo.geodata.dao.file;
+
+/*-
+ * #%L
+ * geodata-repository
+ * %%
+ * Copyright (C) 2017 - 2020 Morten Haraldsen (ethlo)
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+public class IdOffsetIndexTest
+{
+    @Test
+    public void testLookupWithRepeatingIds()
+    {
+        final IdOffsetIndex index = IdOffsetIndex.of(new int[]{42, 7, 42, 3, 42}, new long[]{0, 10, 20, 30, 40});
+        assertThat(index.size()).isEqualTo(5);
+        assertThat(index.distinctIds()).isEqualTo(3);
+
+        assertThat(index.getOffset(42, 0)).isEqualTo(0);
+        assertThat(index.getOffset(42, 1)).isEqualTo(20);
+        assertThat(index.getOffset(42, 2)).isEqualTo(40);
+        assertThat(index.getOffset(42, 3)).isEqualTo(-1);
+        assertThat(index.getOffset(7, 0)).isEqualTo(10);
+        assertThat(index.getOffset(3, 0)).isEqualTo(30);
+    }
+
+    @Test
+    public void testMissing()
+    {
+        final IdOffsetIndex index = IdOffsetIndex.of(new int[]{1, 2, 3}, new long[]{0, 5, 9});
+        assertThat(index.contains(2)).isTrue();
+        assertThat(index.contains(4)).isFalse();
+        assertThat(index.getOffset(0, 0)).isEqualTo(-1);
+        assertThat(IdOffsetIndex.empty().contains(1)).isFalse();
+    }
+
+    @Test
+    public void testOffsetsBeyond2GB()
+    {
+        final long large = 5L * Integer.MAX_VALUE;
+        final IdOffsetIndex index = IdOffsetIndex.of(new int[]{9, 4}, new long[]{large, 12});
+        assertThat(index.getOffset(9, 0)).isEqualTo(large);
+        assertThat(index.getOffsetAt(0)).isEqualTo(12);
+    }
+}
@@ -0,0 +1,74 @@
+package com.ethlo.geodata.dao.file;
+
+/*-
+ * #%L
+ * geodata-repository
+ * %%
+ * Copyright (C) 2017 - 2020 Morten Haraldsen (ethlo)
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.junit.jupiter.api.Test;
+
+import com.ethlo.geodata.model.Coordinates;
+import com.ethlo.geodata.model.RawLocation;
+
+public class MappedRawLocationTest
+{
+    @Test
+    public void testReadFields() throws IOException
+    {
+        final RawLocation location = new RawLocation(3143242, "Østfold Ärøskøbing", "NO", Coordinates.from(59.91273, 10.74609), 12, 580000L, 3, 23);
+        final MappedRawLocation mapped = map(location);
+        assertThat(mapped.getId()).isEqualTo(location.getId());
+        assertThat(mapped.getName()).isEqualTo(location.getName());
+        assertThat(mapped.getCountryCode()).isEqualTo(location.getCountryCode());
+        assertThat(mapped.getLat()).isEqualTo(location.getLat());
+        assertThat(mapped.getLng()).isEqualTo(location.getLng());
+        assertThat(mapped.getMapFeatureId()).isEqualTo(location.getMapFeatureId());
+        assertThat(mapped.getPopulation()).isEqualTo(location.getPopulation());
+        assertThat(mapped.getTimeZoneId()).isEqualTo(location.getTimeZoneId());
+        assertThat(mapped.getElevation()).isEqualTo(location.getElevation());
+    }
+
+    @Test
+    public void testWithoutCountryCode() throws IOException
+    {
+        final RawLocation location = new RawLocation(6255148, "Europe", null, Coordinates.from(48.69096, 9.14062), 2, 0L, 1, Integer.MIN_VALUE);
+        final MappedRawLocation mapped = map(location);
+        assertThat(mapped.getCountryCode()).isNull();
+        assertThat(mapped.getName()).isEqualTo("Europe");
+        assertThat(mapped.getElevation()).isEqualTo(Integer.MIN_VALUE);
+    }
+
+    private MappedRawLocation map(final RawLocation location) throws IOException
+    {
+        final ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bout);
+        out.writeLong(Long.MAX_VALUE);
+        location.write(out);
+        out.flush();
+        return new MappedRawLocation(ByteBuffer.wrap(bout.toByteArray()).asReadOnlyBuffer(), 8);
+    }
+}
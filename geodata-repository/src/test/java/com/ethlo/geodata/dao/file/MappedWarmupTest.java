@@ -0,0 +1,99 @@
+package com.ethlo.geodata.dao.file;
+
+/*-
+ * #%L
+ * geodata-repository
+ * %%
+ * Copyright (C) 2017 - 2020 Morten Haraldsen (ethlo)
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.ethlo.geodata.LoadProgressListener;
+
+public class MappedWarmupTest
+{
+    private static final LoadProgressListener NO_PROGRESS = new LoadProgressListener()
+    {
+        @Override
+        public void begin(final String name)
+        {
+        }
+
+        @Override
+        public void begin(final String name, final Integer total)
+        {
+        }
+
+        @Override
+        public void progress(final int progress)
+        {
+        }
+
+        @Override
+        public void progress(final int progress, final Integer total)
+        {
+        }
+
+        @Override
+        public void end()
+        {
+        }
+    };
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testTouchAndRecordHotRegions() throws IOException
+    {
+        final Path data = tempDir.resolve("test.data");
+        Files.write(data, new byte[3 * MappedWarmup.REGION_SIZE + 100]);
+
+        try (final FileChannel channel = FileChannel.open(data))
+        {
+            final List<MappedByteBuffer> buffers = List.of(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            MappedWarmup.warmUp("test", buffers, WarmupPolicy.TOUCH, MappedWarmup.hotRegionsPath(data), NO_PROGRESS);
+            assertThat(MappedWarmup.sampleResidency(buffers)).isEqualTo(1D);
+
+            final Path hotRegions = MappedWarmup.hotRegionsPath(data);
+            MappedWarmup.saveHotRegions(buffers, hotRegions);
+            assertThat(MappedWarmup.readHotRegions(hotRegions, 4).cardinality()).isEqualTo(4);
+            assertThat(MappedWarmup.readHotRegions(hotRegions, 5).isEmpty()).isTrue();
+        }
+    }
+
+    @Test
+    public void testParsePolicies()
+    {
+        assertThat(WarmupPolicy.parse("locations:touch, boundaries:HOT"))
+                .containsEntry("locations", WarmupPolicy.TOUCH)
+                .containsEntry("boundaries", WarmupPolicy.HOT);
+        assertThat(WarmupPolicy.parse("")).isEmpty();
+    }
+}
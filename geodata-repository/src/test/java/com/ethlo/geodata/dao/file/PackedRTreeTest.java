@@ -0,0 +1,143 @@
+package com.ethlo.geodata.dao.file;
+
+/*-
+ * #%L
+ * geodata-repository
+ * %%
+ * Copyright (C) 2017 - 2020 Morten Haraldsen (ethlo)
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class PackedRTreeTest
+{
+    private static final int ITEMS = 5_000;
+
+    @TempDir
+    Path tempDir;
+
+    private final double[] xs = new double[ITEMS];
+    private final double[] ys = new double[ITEMS];
+
+    private PackedRTree buildPoints()
+    {
+        return buildPoints(PackedRTree.SortOrder.STR);
+    }
+
+    private PackedRTree buildPoints(final PackedRTree.SortOrder sortOrder)
+    {
+        final Random random = new Random(42);
+        final PackedRTree.Builder builder = PackedRTree.builder().sortOrder(sortOrder);
+        for (int i = 0; i < ITEMS; i++)
+        {
+            xs[i] = (float) (random.nextDouble() * 360 - 180);
+            ys[i] = (float) (random.nextDouble() * 180 - 90);
+            builder.add(xs[i], ys[i], i);
+        }
+        return builder.build();
+    }
+
+    @Test
+    public void testSearch()
+    {
+        final PackedRTree tree = buildPoints();
+        assertThat(tree.size()).isEqualTo(ITEMS);
+
+        final List<Integer> found = new ArrayList<>();
+        tree.search(10, 20, 40, 35, found::add);
+
+        final List<Integer> expected = IntStream.range(0, ITEMS)
+                .filter(i -> xs[i] >= 10 && xs[i] <= 40 && ys[i] >= 20 && ys[i] <= 35)
+                .boxed()
+                .collect(Collectors.toList());
+        assertThat(expected).isNotEmpty();
+        assertThat(found).containsExactlyInAnyOrderElementsOf(expected);
+    }
+
+    @Test
+    public void testNearest()
+    {
+        for (final PackedRTree.SortOrder sortOrder : PackedRTree.SortOrder.values())
+        {
+            assertNearest(buildPoints(sortOrder));
+        }
+    }
+
+    @Test
+    public void testFillFactor()
+    {
+        final PackedRTree tree = buildPoints(PackedRTree.SortOrder.HILBERT);
+        assertThat(tree.getFillFactor()).isGreaterThan(0.95).isLessThanOrEqualTo(1);
+    }
+
+    private void assertNearest(final PackedRTree tree)
+    {
+        final List<Integer> found = new ArrayList<>();
+        tree.nearest(5, 60, 10, 20, (value, minX, minY, maxX, maxY) -> found.add(value));
+
+        final List<Integer> expected = IntStream.range(0, ITEMS)
+                .boxed()
+                .sorted(Comparator.comparingDouble(i -> Math.hypot(xs[i] - 5, ys[i] - 60)))
+                .limit(10)
+                .collect(Collectors.toList());
+        assertThat(found).containsExactlyElementsOf(expected);
+
+        final List<Integer> none = new ArrayList<>();
+        tree.nearest(5, 60, 10, 0.0001, (value, minX, minY, maxX, maxY) -> none.add(value));
+        assertThat(none).isEmpty();
+    }
+
+    @Test
+    public void testWriteAndMap()
+    {
+        final PackedRTree.Builder builder = PackedRTree.builder(4);
+        builder.add(0.1, 0.1, 1.9, 2.1, 7);
+        builder.add(5, 5, 6, 6, 8);
+        final Path file = tempDir.resolve("test.rtree");
+        builder.build().write(file);
+
+        try (final PackedRTree tree = PackedRTree.open(file, MmapBackend.EXPLICIT))
+        {
+            assertThat(tree.size()).isEqualTo(2);
+            final List<Integer> found = new ArrayList<>();
+            tree.search(1.9, 2.1, 1.9, 2.1, found::add);
+            assertThat(found).containsExactly(7);
+        }
+    }
+
+    @Test
+    public void testEmpty()
+    {
+        final PackedRTree tree = PackedRTree.builder().build();
+        final List<Integer> found = new ArrayList<>();
+        tree.search(-180, -90, 180, 90, found::add);
+        tree.nearest(0, 0, 10, 100, (value, minX, minY, maxX, maxY) -> found.add(value));
+        assertThat(found).isEmpty();
+    }
+}
@@ -23,6 +23,7 @@ package com.ethlo.geodata.io;
  */
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
@@ -35,6 +36,9 @@ import org.locationtech.jts.geom.Coordinate;
 import org.locationtech.jts.geom.CoordinateXY;
 import org.locationtech.jts.geom.Geometry;
 import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.LinearRing;
+import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.geom.impl.PackedCoordinateSequence;
 
 import com.ethlo.geodata.model.BoundaryData;
 import com.ethlo.geodata.model.BoundaryMetadata;
@@ -59,4 +63,74 @@ public class BinaryBoundaryEncoderTest
         final BoundaryMetadata deserialized = BinaryBoundaryEncoder.readBoundaryMetadata(new DataInputStream(new ByteArrayInputStream(bout.toByteArray())));
         assertThat(deserialized.getId()).isEqualTo(data.getId());
     }
+
+    @Test
+    public void readBothVersions() throws IOException
+    {
+        final GeometryFactory factory = new GeometryFactory();
+        final Coordinate[] shell = new Coordinate[200];
+        for (int i = 0; i < shell.length - 1; i++)
+        {
+            final double angle = 2 * Math.PI * i / (shell.length - 1);
+            shell[i] = new CoordinateXY(10.7461 + Math.cos(angle), 59.9127 + Math.sin(angle) / 2);
+        }
+        shell[shell.length - 1] = shell[0];
+        final Geometry geom = factory.createPolygon(shell);
+        final BoundaryData data = new BoundaryData(3143244, 2, geom.getEnvelopeInternal(), geom.getArea(), geom);
+
+        final byte[] version1 = write(data, 1);
+        final byte[] version2 = write(data, 2);
+        assertThat(version2.length).isLessThan(version1.length * 3 / 4);
+
+        for (final byte[] encoded : new byte[][]{version1, version2})
+        {
+            final BoundaryMetadata metadata = BinaryBoundaryEncoder.readBoundaryMetadata(new DataInputStream(new ByteArrayInputStream(encoded)));
+            assertThat(metadata.getId()).isEqualTo(3143244);
+            assertThat(metadata.getSubDivideIndex()).isEqualTo(2);
+
+            final Geometry read = BinaryBoundaryEncoder.readGeometry(new DataInputStream(new ByteArrayInputStream(encoded))).getGeometry();
+            assertThat(read.getNumPoints()).isEqualTo(shell.length);
+            assertThat(read.getArea()).isCloseTo(geom.getArea(), within(0.001));
+        }
+
+        final Coordinate[] decoded = BinaryBoundaryEncoder.readGeometry(new DataInputStream(new ByteArrayInputStream(version2))).getGeometry().getCoordinates();
+        for (int i = 0; i < shell.length; i++)
+        {
+            assertThat(decoded[i].getX()).isCloseTo(shell[i].getX(), within(0.00005));
+            assertThat(decoded[i].getY()).isCloseTo(shell[i].getY(), within(0.00005));
+        }
+    }
+
+    @Test
+    public void readPolygonWithHole() throws IOException
+    {
+        final GeometryFactory factory = new GeometryFactory();
+        final LinearRing shell = factory.createLinearRing(new Coordinate[]{
+                new CoordinateXY(0, 0), new CoordinateXY(10, 0), new CoordinateXY(10, 10), new CoordinateXY(0, 10), new CoordinateXY(0, 0)});
+        final LinearRing hole = factory.createLinearRing(new Coordinate[]{
+                new CoordinateXY(2, 2), new CoordinateXY(2, 4), new CoordinateXY(4, 4), new CoordinateXY(4, 2), new CoordinateXY(2, 2)});
+        final Polygon polygon = factory.createPolygon(shell, new LinearRing[]{hole});
+        final BoundaryData data = new BoundaryData(42, 0, polygon.getEnvelopeInternal(), polygon.getArea(), polygon);
+
+        for (final int version : new int[]{1, 2})
+        {
+            final Geometry read = BinaryBoundaryEncoder.readGeometry(new DataInputStream(new ByteArrayInputStream(write(data, version)))).getGeometry();
+            assertThat(read.getGeometryType()).isEqualTo(Geometry.TYPENAME_POLYGON);
+            final Polygon readPolygon = (Polygon) read;
+            assertThat(readPolygon.getNumInteriorRing()).isEqualTo(1);
+            assertThat(readPolygon.getExteriorRing().getCoordinateSequence()).isInstanceOf(PackedCoordinateSequence.Double.class);
+            assertThat(readPolygon.getArea()).isCloseTo(96, within(0.001));
+            assertThat(readPolygon.contains(factory.createPoint(new CoordinateXY(3, 3)))).isFalse();
+            assertThat(readPolygon.contains(factory.createPoint(new CoordinateXY(6, 6)))).isTrue();
+        }
+    }
+
+    private byte[] write(final BoundaryData data, final int version) throws IOException
+    {
+        final ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bout);
+        BinaryBoundaryEncoder.write(data, out, version);
+        out.flush();
+        return bout.toByteArray();
+    }
 }
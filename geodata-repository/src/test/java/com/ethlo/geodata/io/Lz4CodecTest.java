@@ -0,0 +1,79 @@
+package com.ethlo.geodata.io;
+
+
+/*-
+ * #%L
+ * geodata-repository
+ * %%
+ * Copyright (C) 2017 - 2020 Morten Haraldsen (ethlo)
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import com.google.common.io.ByteStreams;
+
+public class Lz4CodecTest
+{
+    @Test
+    public void testRoundTrip() throws IOException
+    {
+        final Random random = new Random(42);
+        final byte[] noise = new byte[10_000];
+        random.nextBytes(noise);
+
+        final byte[] repetitive = new byte[50_000];
+        for (int i = 0; i < repetitive.length; i++)
+        {
+            repetitive[i] = (byte) (i % 7 == 0 ? random.nextInt(4) : i % 13);
+        }
+
+        final byte[] run = new byte[1_000];
+
+        for (final byte[] data : new byte[][]{new byte[0], "short".getBytes(StandardCharsets.UTF_8), "abcabcabcabcabcabcabcabcabcabcabc".getBytes(StandardCharsets.UTF_8), noise, repetitive, run})
+        {
+            assertThat(roundTrip(data)).isEqualTo(data);
+        }
+        assertThat(Lz4Codec.INSTANCE.encode(repetitive).length).isLessThan(repetitive.length / 2);
+        assertThat(Lz4Codec.INSTANCE.encode(run).length).isLessThan(20);
+    }
+
+    @Test
+    public void testMalformed()
+    {
+        final byte[] compressed = Lz4Codec.compress(new byte[100]);
+        assertThatThrownBy(() -> Lz4Codec.decompress(compressed, 0, compressed.length, new byte[99])).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private byte[] roundTrip(final byte[] data) throws IOException
+    {
+        final byte[] encoded = Lz4Codec.INSTANCE.encode(data);
+        try (final InputStream in = Lz4Codec.INSTANCE.decode(new ByteArrayInputStream(encoded), encoded.length))
+        {
+            return ByteStreams.toByteArray(in);
+        }
+    }
+}
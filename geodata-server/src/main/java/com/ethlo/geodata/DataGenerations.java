@@ -0,0 +1,271 @@
+package com.ethlo.geodata;
+
+/*-
+ * #%L
+ * geodata-server
+ * %%
+ * Copyright (C) 2017 - 2020 Morten Haraldsen (ethlo)
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.ethlo.geodata.dao.FileMetaDao;
+import com.ethlo.geodata.dao.file.MmapBackend;
+import io.undertow.server.HttpHandler;
+
+/**
+ * Keeps track of the dataset generation being served, and swaps in newer ones as they appear.
+ * <p>
+ * A generation is a sub-directory of the base path that contains the {@value FileMetaDao#COMPLETE} marker the importer
+ * writes when it is done, and the one with the highest name is the newest. If there are no such sub-directories, the
+ * base path itself is the only generation. A new generation is fully loaded in the background before it replaces the
+ * current one. Requests pin the generation that was current when they started, and the previous generation is closed
+ * once the grace period has passed and no request uses it any more.
+ */
+public class DataGenerations
+{
+    private static final Logger logger = LoggerFactory.getLogger(DataGenerations.class);
+
+    private final Path basePath;
+    private final MmapBackend backend;
+    private final boolean parallelLoad;
+    private final String warmup;
+    private final int locationCacheSize;
+    private final Duration gracePeriod;
+    private final AtomicReference<Generation> current = new AtomicReference<>();
+    private final ThreadLocal<Generation> pinned = new ThreadLocal<>();
+    // Generations that failed to load, with the time they were completed, so they are retried when imported again
+    private final Map<String, FileTime> failed = new HashMap<>();
+    private volatile Generation loading;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r ->
+    {
+        final Thread thread = new Thread(r, "generation-watcher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public DataGenerations(final Path basePath, final MmapBackend backend, final boolean parallelLoad, final String warmup, final int locationCacheSize, final Duration gracePeriod)
+    {
+        this.basePath = basePath;
+        this.backend = backend;
+        this.parallelLoad = parallelLoad;
+        this.warmup = warmup;
+        this.locationCacheSize = locationCacheSize;
+        this.gracePeriod = gracePeriod;
+    }
+
+    /**
+     * Make the newest generation on disk current, without loading it
+     */
+    public Generation openLatest()
+    {
+        final Path directory = findLatest(basePath).orElse(basePath);
+        final Generation generation = create(getId(directory), directory);
+        current.set(generation);
+        logger.info("Serving data generation {}", generation);
+        return generation;
+    }
+
+    /**
+     * Check for a new generation at a fixed interval
+     */
+    public void watch(final Duration interval)
+    {
+        if (interval.isZero() || interval.isNegative())
+        {
+            logger.info("Data generation reloading is disabled");
+            return;
+        }
+        logger.info("Checking for new data generations in {} every {}", basePath, interval);
+        scheduler.scheduleWithFixedDelay(() ->
+        {
+            // An exception would cancel the schedule
+            try
+            {
+                reload();
+            }
+            catch (RuntimeException exc)
+            {
+                logger.error("Unable to check for new data generations in {}", basePath, exc);
+            }
+        }, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Load and swap in the newest generation on disk, if it is not the current one
+     */
+    public void reload()
+    {
+        final Optional<Path> latest = findLatest(basePath);
+        if (latest.isEmpty())
+        {
+            return;
+        }
+
+        final Path directory = latest.get();
+        final String id = getId(directory);
+        final FileTime completedAt = getCompletedAt(directory);
+        if (id.equals(current.get().getId()) || completedAt.equals(failed.get(id)))
+        {
+            return;
+        }
+
+        logger.info("Loading data generation {} from {}", id, directory);
+        Generation generation = null;
+        try
+        {
+            generation = create(id, directory);
+            loading = generation;
+            generation.load();
+        }
+        catch (RuntimeException exc)
+        {
+            logger.error("Unable to load data generation {}, keeping {} until it is imported again", id, current.get().getId(), exc);
+            failed.put(id, completedAt);
+            if (generation != null)
+            {
+                close(generation);
+            }
+            return;
+        }
+        finally
+        {
+            loading = null;
+        }
+
+        failed.remove(id);
+        final Generation previous = current.getAndSet(generation);
+        logger.info("Swapped data generation {} for {}, releasing the previous when its requests are done, in {} at the earliest", generation, previous.getId(), gracePeriod);
+        scheduler.schedule(previous::retire, gracePeriod.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    Generation create(final String id, final Path directory)
+    {
+        return Generation.create(id, directory, backend, parallelLoad, warmup, locationCacheSize);
+    }
+
+    private void close(final Generation generation)
+    {
+        try
+        {
+            generation.close();
+        }
+        catch (IOException | RuntimeException exc)
+        {
+            logger.warn("Unable to release data generation {}: {}", generation, exc.getMessage(), exc);
+        }
+    }
+
+    /**
+     * @return The generation pinned by the current request, or else the current one
+     */
+    public Generation get()
+    {
+        final Generation generation = pinned.get();
+        return generation != null ? generation : current.get();
+    }
+
+    /**
+     * @return The generation being loaded in the background, if any
+     */
+    public Optional<Generation> getLoading()
+    {
+        return Optional.ofNullable(loading);
+    }
+
+    /**
+     * Pin the current generation for the duration of each request handled by the delegate
+     */
+    public HttpHandler pin(final HttpHandler delegate)
+    {
+        return exchange ->
+        {
+            if (pinned.get() != null)
+            {
+                delegate.handleRequest(exchange);
+                return;
+            }
+
+            // A generation retired after it was read may close before it is acquired, then the new current one is used
+            Generation generation = current.get();
+            while (!generation.acquire())
+            {
+                generation = current.get();
+            }
+
+            pinned.set(generation);
+            try
+            {
+                delegate.handleRequest(exchange);
+            }
+            finally
+            {
+                pinned.remove();
+                generation.release();
+            }
+        };
+    }
+
+    static Optional<Path> findLatest(final Path basePath)
+    {
+        try (final Stream<Path> children = Files.list(basePath))
+        {
+            return children.filter(Files::isDirectory)
+                    .filter(dir -> Files.exists(dir.resolve(FileMetaDao.COMPLETE)))
+                    .max(Comparator.comparing(DataGenerations::getId));
+        }
+        catch (IOException exc)
+        {
+            throw new UncheckedIOException(exc);
+        }
+    }
+
+    private static FileTime getCompletedAt(final Path directory)
+    {
+        try
+        {
+            return Files.getLastModifiedTime(directory.resolve(FileMetaDao.COMPLETE));
+        }
+        catch (IOException exc)
+        {
+            throw new UncheckedIOException(exc);
+        }
+    }
+
+    private static String getId(final Path directory)
+    {
+        return directory.getFileName().toString();
+    }
+}
@@ -0,0 +1,226 @@
+package com.ethlo.geodata;
+
+/*-
+ * #%L
+ * geodata-server
+ * %%
+ * Copyright (C) 2017 - 2020 Morten Haraldsen (ethlo)
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.ethlo.geodata.dao.BoundaryDao;
+import com.ethlo.geodata.dao.CountryDao;
+import com.ethlo.geodata.dao.FeatureCodeDao;
+import com.ethlo.geodata.dao.FileMetaDao;
+import com.ethlo.geodata.dao.HierarchyDao;
+import com.ethlo.geodata.dao.IpDao;
+import com.ethlo.geodata.dao.LocationDao;
+import com.ethlo.geodata.dao.MetaDao;
+import com.ethlo.geodata.dao.TimeZoneDao;
+import com.ethlo.geodata.dao.file.ColumnarLocationDao;
+import com.ethlo.geodata.dao.file.FileBoundaryDao;
+import com.ethlo.geodata.dao.file.FileCountryDao;
+import com.ethlo.geodata.dao.file.FileFeatureCodeDao;
+import com.ethlo.geodata.dao.file.FileHierarchyDao;
+import com.ethlo.geodata.dao.file.FileIpDao;
+import com.ethlo.geodata.dao.file.FileLocationDao;
+import com.ethlo.geodata.dao.file.FileNameIndexDao;
+import com.ethlo.geodata.dao.file.FileSpatialIndexDao;
+import com.ethlo.geodata.dao.file.FileTimeZoneDao;
+import com.ethlo.geodata.dao.file.MmapBackend;
+import com.ethlo.geodata.progress.StatefulProgressListener;
+
+/**
+ * One complete dataset, the directory it was read from and the service built on top of it
+ */
+public class Generation implements Closeable
+{
+    private static final Logger logger = LoggerFactory.getLogger(Generation.class);
+    private static final int BOUNDARY_QUALITY_CONSTANT = 200_000;
+
+    private final String id;
+    private final Path directory;
+    private final MetaDao metaDao;
+    private final GeodataServiceImpl service;
+    private final StatefulProgressListener progressListener = new StatefulProgressListener();
+
+    // Number of requests using the generation, or -1 once it is closed
+    private final AtomicInteger users = new AtomicInteger();
+    private volatile boolean retired;
+
+    private Generation(final String id, final Path directory, final MetaDao metaDao, final GeodataServiceImpl service)
+    {
+        this.id = id;
+        this.directory = directory;
+        this.metaDao = metaDao;
+        this.service = service;
+    }
+
+    /**
+     * Create the service for the data in the directory. The data is not loaded until {@link #load()} is called.
+     *
+     * @param warmup            The warm-up policy of each data file, as parsed by {@link com.ethlo.geodata.dao.file.WarmupPolicy#parse(String)}
+     * @param locationCacheSize The number of populated locations to cache, or 0 for none
+     */
+    public static Generation create(final String id, final Path directory, final MmapBackend backend, final boolean parallelLoad, final String warmup, final int locationCacheSize)
+    {
+        final MetaDao metaDao = new FileMetaDao(directory);
+        final LocationDao locationDao = createLocationDao(directory, metaDao, backend);
+        final IpDao ipDao = new FileIpDao(directory);
+        final HierarchyDao hierarchyDao = new FileHierarchyDao(directory, metaDao, backend);
+        final FeatureCodeDao featureCodeDao = new FileFeatureCodeDao(directory);
+        final TimeZoneDao timeZoneDao = new FileTimeZoneDao(directory);
+        final CountryDao countryDao = new FileCountryDao(directory);
+        final BoundaryDao boundaryDao = new FileBoundaryDao(directory, backend);
+        final FileSpatialIndexDao spatialIndexDao = new FileSpatialIndexDao(directory, metaDao, backend);
+        final FileNameIndexDao nameIndexDao = new FileNameIndexDao(directory, metaDao, backend);
+        final GeodataServiceImpl service = new GeodataServiceImpl(locationDao, ipDao, hierarchyDao, featureCodeDao, timeZoneDao, countryDao, boundaryDao, spatialIndexDao, nameIndexDao, metaDao, Collections.emptyList(), BOUNDARY_QUALITY_CONSTANT, parallelLoad, warmup, locationCacheSize);
+        return new Generation(id, directory, metaDao, service);
+    }
+
+    private static LocationDao createLocationDao(final Path basePath, final MetaDao metaDao, final MmapBackend backend)
+    {
+        final SourceDataInfo info = metaDao.load().get(DataType.LOCATIONS);
+        if (info != null && info.getFormatVersion() >= ColumnarLocationDao.FORMAT_VERSION && ColumnarLocationDao.exists(basePath))
+        {
+            logger.info("Using columnar location data");
+            return new ColumnarLocationDao(basePath, backend);
+        }
+        return new FileLocationDao(basePath, backend);
+    }
+
+    public void load()
+    {
+        service.load(progressListener);
+    }
+
+    public void saveHotRegions()
+    {
+        service.saveHotRegions();
+    }
+
+    public StatefulProgressListener getProgressListener()
+    {
+        return progressListener;
+    }
+
+    public String getId()
+    {
+        return id;
+    }
+
+    public Path getDirectory()
+    {
+        return directory;
+    }
+
+    public MetaDao getMetaDao()
+    {
+        return metaDao;
+    }
+
+    public GeodataServiceImpl getService()
+    {
+        return service;
+    }
+
+    /**
+     * Register a request using the generation
+     *
+     * @return false if the generation is already closed and cannot be used
+     */
+    public boolean acquire()
+    {
+        while (true)
+        {
+            final int count = users.get();
+            if (count < 0)
+            {
+                return false;
+            }
+            if (users.compareAndSet(count, count + 1))
+            {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Unregister a request, closing the generation if it is retired and this was the last request using it
+     */
+    public void release()
+    {
+        if (users.decrementAndGet() == 0 && retired)
+        {
+            closeIfUnused();
+        }
+    }
+
+    /**
+     * @return True once the generation is closed and can no longer be acquired
+     */
+    public boolean isClosed()
+    {
+        return users.get() < 0;
+    }
+
+    /**
+     * Close the generation as soon as no request uses it
+     */
+    public void retire()
+    {
+        retired = true;
+        closeIfUnused();
+    }
+
+    private void closeIfUnused()
+    {
+        if (users.compareAndSet(0, -1))
+        {
+            try
+            {
+                close();
+                logger.info("Released data generation {}", this);
+            }
+            catch (IOException | RuntimeException exc)
+            {
+                logger.warn("Unable to release data generation {}: {}", this, exc.getMessage(), exc);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        service.close();
+    }
+
+    @Override
+    public String toString()
+    {
+        return id + " (" + directory + ")";
+    }
+}
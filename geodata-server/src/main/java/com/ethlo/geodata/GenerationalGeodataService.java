@@ -0,0 +1,238 @@
+package com.ethlo.geodata;
+
+/*-
+ * #%L
+ * geodata-server
+ * %%
+ * Copyright (C) 2017 - 2020 Morten Haraldsen (ethlo)
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import java.net.InetAddress;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+import org.locationtech.jts.geom.Geometry;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+
+import com.ethlo.geodata.model.Continent;
+import com.ethlo.geodata.model.Coordinates;
+import com.ethlo.geodata.model.Country;
+import com.ethlo.geodata.model.GeoLocation;
+import com.ethlo.geodata.model.GeoLocationDistance;
+import com.ethlo.geodata.model.GeoLocationSummary;
+import com.ethlo.geodata.model.View;
+import com.ethlo.geodata.progress.Readiness;
+import com.ethlo.geodata.util.MemoryAccounting;
+import com.ethlo.geodata.util.TinyLfuCache;
+
+/**
+ * Forwards every call to the service of the data generation being served
+ */
+public class GenerationalGeodataService implements GeodataService
+{
+    private final Supplier<? extends GeodataService> delegate;
+
+    public GenerationalGeodataService(final Supplier<? extends GeodataService> delegate)
+    {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public GeoLocation findByIp(final InetAddress ip)
+    {
+        return delegate.get().findByIp(ip);
+    }
+
+    @Override
+    public GeoLocation findById(final int geoNameId)
+    {
+        return delegate.get().findById(geoNameId);
+    }
+
+    @Override
+    public Optional<LookupMetadata> findWithin(final Coordinates point, final int maxDistanceInKilometers)
+    {
+        return delegate.get().findWithin(point, maxDistanceInKilometers);
+    }
+
+    @Override
+    public Page<GeoLocationDistance> findNear(final Coordinates point, final int maxDistanceInKilometers, final Pageable pageable)
+    {
+        return delegate.get().findNear(point, maxDistanceInKilometers, pageable);
+    }
+
+    @Override
+    public Optional<Geometry> findBoundaries(final int id)
+    {
+        return delegate.get().findBoundaries(id);
+    }
+
+    @Override
+    public Optional<Geometry> findBoundaries(final int id, final double maxTolerance)
+    {
+        return delegate.get().findBoundaries(id, maxTolerance);
+    }
+
+    @Override
+    public Optional<Geometry> findBoundaries(final int id, final View view)
+    {
+        return delegate.get().findBoundaries(id, view);
+    }
+
+    @Override
+    public Page<GeoLocation> findChildren(final int locationId, final boolean matchLevel, final Pageable pageable)
+    {
+        return delegate.get().findChildren(locationId, matchLevel, pageable);
+    }
+
+    @Override
+    public Page<Continent> findContinents()
+    {
+        return delegate.get().findContinents();
+    }
+
+    @Override
+    public Page<Country> findCountriesOnContinent(final String continentCode, final Pageable pageable)
+    {
+        return delegate.get().findCountriesOnContinent(continentCode, pageable);
+    }
+
+    @Override
+    public Page<Country> findCountries(final Pageable pageable)
+    {
+        return delegate.get().findCountries(pageable);
+    }
+
+    @Override
+    public Country findCountryByCode(final String countryCode)
+    {
+        return delegate.get().findCountryByCode(countryCode);
+    }
+
+    @Override
+    public Page<GeoLocation> findChildren(final String countryCode, final Pageable pageable)
+    {
+        return delegate.get().findChildren(countryCode, pageable);
+    }
+
+    @Override
+    public Country findByPhoneNumber(final String phoneNumber)
+    {
+        return delegate.get().findByPhoneNumber(phoneNumber);
+    }
+
+    @Override
+    public GeoLocation findParent(final int id)
+    {
+        return delegate.get().findParent(id);
+    }
+
+    @Override
+    public Optional<LookupMetadata> findByCoordinate(final Coordinates point, final int distance)
+    {
+        return delegate.get().findByCoordinate(point, distance);
+    }
+
+    @Override
+    public boolean isInsideAny(final List<Integer> locations, final int location)
+    {
+        return delegate.get().isInsideAny(locations, location);
+    }
+
+    @Override
+    public boolean isOutsideAll(final List<Integer> locations, final int location)
+    {
+        return delegate.get().isOutsideAll(locations, location);
+    }
+
+    @Override
+    public boolean isLocationInside(final int locationId, final int suspectedParentId)
+    {
+        return delegate.get().isLocationInside(locationId, suspectedParentId);
+    }
+
+    @Override
+    public Continent findContinent(final String continentCode)
+    {
+        return delegate.get().findContinent(continentCode);
+    }
+
+    @Override
+    public List<GeoLocation> findByIds(final Collection<Integer> ids)
+    {
+        return delegate.get().findByIds(ids);
+    }
+
+    @Override
+    public Slice<GeoLocation> findByName(final String name, final Pageable pageable)
+    {
+        return delegate.get().findByName(name, pageable);
+    }
+
+    @Override
+    public boolean hasRealChildren(final int id)
+    {
+        return delegate.get().hasRealChildren(id);
+    }
+
+    @Override
+    public boolean hasBoundary(final int id)
+    {
+        return delegate.get().hasBoundary(id);
+    }
+
+    @Override
+    public void load(final LoadProgressListener loadProgressListener)
+    {
+        delegate.get().load(loadProgressListener);
+    }
+
+    @Override
+    public Readiness getReadiness()
+    {
+        return delegate.get().getReadiness();
+    }
+
+    @Override
+    public MemoryAccounting getMemoryAccounting()
+    {
+        return delegate.get().getMemoryAccounting();
+    }
+
+    @Override
+    public TinyLfuCache.Stats getLocationCacheStats()
+    {
+        return delegate.get().getLocationCacheStats();
+    }
+
+    @Override
+    public List<GeoLocation> findPath(final int id)
+    {
+        return delegate.get().findPath(id);
+    }
+
+    @Override
+    public List<GeoLocationSummary> findPathSummaries(final int id)
+    {
+        return delegate.get().findPathSummaries(id);
+    }
+}
@@ -22,35 +22,41 @@ package com.ethlo.geodata;
  * #L%
  */
 
+import java.util.function.Supplier;
+
+import com.ethlo.geodata.progress.Capability;
+import com.ethlo.geodata.progress.Readiness;
 import io.undertow.server.HttpHandler;
 import io.undertow.server.HttpServerExchange;
 
+/**
+ * Responds with 503 until the data needed by the wrapped handler is loaded. The readiness is looked up for each request,
+ * so it follows the data generation currently being served.
+ */
 public class InitSuspendHandler implements HttpHandler
 {
     private final HttpHandler delegate;
-    private boolean ready = false;
+    private final Supplier<Readiness> readiness;
+    private final Capability capability;
 
-    public InitSuspendHandler(final HttpHandler delegate)
+    public InitSuspendHandler(final HttpHandler delegate, final Supplier<Readiness> readiness, final Capability capability)
     {
         this.delegate = delegate;
-    }
-
-    public InitSuspendHandler setReady(final boolean ready)
-    {
-        this.ready = ready;
-        return this;
+        this.readiness = readiness;
+        this.capability = capability;
     }
 
     @Override
     public void handleRequest(final HttpServerExchange exchange) throws Exception
     {
-        if (ready)
+        if (readiness.get().isReady(capability))
         {
             delegate.handleRequest(exchange);
         }
         else
         {
-            BaseServerHandler.json(exchange, new ApiError(503, "Server is initializing, please wait..."));
+            exchange.setStatusCode(503);
+            BaseServerHandler.json(exchange, new ApiError(503, "Server is initializing " + capability + ", please wait..."));
         }
     }
 }
@@ -36,6 +36,7 @@ import com.ethlo.geodata.model.Country;
 import com.ethlo.geodata.model.CountrySummary;
 import com.ethlo.geodata.model.GeoLocation;
 import com.ethlo.geodata.model.GeoLocationDistance;
+import com.ethlo.geodata.model.GeoLocationSummary;
 import com.ethlo.geodata.rest.v1.model.V1Continent;
 import com.ethlo.geodata.rest.v1.model.V1Coordinates;
 import com.ethlo.geodata.rest.v1.model.V1Country;
@@ -100,10 +101,10 @@ public class Mapper
                 .timeZone(l.getTimeZone())
                 .hasBoundary(geodataService.hasBoundary(l.getId()))
                 .hasChildren(geodataService.hasRealChildren(l.getId()))
-                .path(transform(geodataService.findPath(l.getId())));
+                .path(transformPath(geodataService.findPathSummaries(l.getId())));
     }
 
-    public List<V1GeoLocationSummary> transform(final List<GeoLocation> path)
+    public List<V1GeoLocationSummary> transformPath(final List<GeoLocationSummary> path)
     {
         return path.stream().map(l ->
                         new V1GeoLocationSummary()
@@ -139,7 +140,7 @@ public class Mapper
                 .parentLocationId(l.getParentLocationId())
                 .population(l.getPopulation())
                 .timeZone(l.getTimeZone())
-                .path(transform(geodataService.findPath(l.getId())));
+                .path(transformPath(geodataService.findPathSummaries(l.getId())));
     }
 
     private V1Coordinates transform(final Coordinates coordinates)
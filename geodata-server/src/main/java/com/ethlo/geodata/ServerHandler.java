@@ -23,6 +23,7 @@ package com.ethlo.geodata;
  */
 
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -41,13 +42,15 @@ import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
 
-import com.ethlo.geodata.dao.MetaDao;
 import com.ethlo.geodata.model.Coordinates;
 import com.ethlo.geodata.model.Country;
 import com.ethlo.geodata.model.GeoLocation;
 import com.ethlo.geodata.model.GeoLocationDistance;
 import com.ethlo.geodata.model.View;
+import com.ethlo.geodata.progress.Capability;
+import com.ethlo.geodata.progress.Readiness;
 import com.ethlo.geodata.rest.v1.model.V1Continent;
 import com.ethlo.geodata.rest.v1.model.V1GeoLocation;
 import com.ethlo.geodata.rest.v1.model.V1PageContinent;
@@ -67,108 +70,108 @@ import io.undertow.util.Methods;
 public class ServerHandler extends BaseServerHandler
 {
     private final GeodataService geodataService;
-    private final MetaDao metaDao;
+    private final DataGenerations generations;
     private final Mapper mapper;
 
-    public ServerHandler(final GeodataService geodataService, final MetaDao metaDao)
+    public ServerHandler(final GeodataService geodataService, final DataGenerations generations)
     {
         this.geodataService = geodataService;
         this.mapper = new Mapper(geodataService);
-        this.metaDao = metaDao;
+        this.generations = generations;
     }
 
     public HttpHandler handler(Map<Class<? extends Throwable>, Function<Throwable, ApiError>> errorHandlers)
     {
         final RoutingHandler routes = Handlers.routing()
 
-                .add(Methods.GET, "/v1/locations/ids", exchange ->
+                .add(Methods.GET, "/v1/locations/ids", requires(Capability.LOCATIONS, exchange ->
                 {
                     final List<Integer> ids = getIntList(exchange, "ids").orElseThrow(missingParam("ids"));
                     json(exchange, ids.stream().map(geodataService::findById).collect(Collectors.toList()));
-                })
+                }))
 
-                .add(Methods.GET, "/v1/locations/{id}/boundaries", exchange ->
+                .add(Methods.GET, "/v1/locations/{id}/boundaries", requires(Capability.GEOMETRY, exchange ->
                 {
                     final int id = requireIntParam(exchange, "id");
                     final Geometry boundary = geodataService.findBoundaries(id).orElseThrow(notNull("No boundary for id " + id));
                     sendGeoJson(exchange, boundary);
-                })
+                }))
 
-                .add(Methods.GET, "/v1/locations/{id}/boundaries.wkb", exchange ->
+                .add(Methods.GET, "/v1/locations/{id}/boundaries.wkb", requires(Capability.GEOMETRY, exchange ->
                 {
                     final int id = requireIntParam(exchange, "id");
                     final Geometry boundary = geodataService.findBoundaries(id).orElseThrow(notNull("No boundary for id " + id));
                     sendWkb(exchange, boundary);
-                })
+                }))
 
-                .add(Methods.GET, "/v1/locations/ip/{ip}", exchange ->
+                .add(Methods.GET, "/v1/locations/ip/{ip}", requires(Capability.LOCATIONS, exchange ->
                 {
                     final String ip = requireStringParam(exchange, "ip");
                     json(exchange, Optional.ofNullable(geodataService.findByIp(InetUtil.inet(ip)))
                             .map(mapper::transform)
                             .orElseThrow(notNull("No location found for IP address " + ip)));
-                })
+                }))
 
-                .add(Methods.GET, "/v1/locations/name/{name}", exchange ->
+                .add(Methods.GET, "/v1/locations/name/{name}", requires(Capability.NAME_SEARCH, exchange ->
                 {
                     final String name = requireStringParam(exchange, "name");
                     final Pageable pageable = getPageable(exchange);
                     final Slice<V1GeoLocation> slice = geodataService.findByName(name, pageable).map(mapper::transform);
                     final int total = slice.hasNext() ? slice.getContent().size() + 1 : slice.getContent().size();
                     json(exchange, Mapper.toGeoLocationPage(new PageImpl<>(slice.getContent(), pageable, total)));
-                })
+                }))
 
-                .add(Methods.GET, "/v1/locations/{id}/children", exchange ->
+                .add(Methods.GET, "/v1/locations/{id}/children", requires(Capability.LOCATIONS, exchange ->
                 {
                     final boolean matchLevel = getBooleanParam(exchange, "match_level").orElse(true);
                     final int id = requireIntParam(exchange, "id");
-                    json(exchange, Mapper.toGeoLocationPage(geodataService.findChildren(id, matchLevel, getPageable(exchange)).map(mapper::transform)));
-                })
+                    json(exchange, Mapper.toGeoLocationPage(geodataService.findChildren(id, matchLevel, childPageable(exchange, getPageable(exchange))).map(mapper::transform)));
+                }))
 
-                .add(Methods.GET, "/v1/continents/{continentCode}", exchange ->
+                .add(Methods.GET, "/v1/continents/{continentCode}", requires(Capability.CONTINENTS, exchange ->
                 {
                     final String continentCode = requireStringParam(exchange, "continentCode");
                     json(exchange, Optional.ofNullable(geodataService.findContinent(continentCode)).map(mapper::transform).orElseThrow(notNull("No continent found for continent code " + continentCode)));
-                })
+                }))
 
-                .add(Methods.GET, "/v1/countries", exchange ->
-                        json(exchange, mapper.toCountryPage(geodataService.findCountries(pageable(exchange)).map(mapper::transform))))
+                .add(Methods.GET, "/v1/countries", requires(Capability.LOCATIONS, exchange ->
+                        json(exchange, mapper.toCountryPage(geodataService.findCountries(pageable(exchange)).map(mapper::transform)))))
 
-                .add(Methods.GET, "/v1/countries/{countryCode}/children", exchange ->
+                .add(Methods.GET, "/v1/countries/{countryCode}/children", requires(Capability.LOCATIONS, exchange ->
                 {
                     final String countryCode = requireStringParam(exchange, "countryCode");
-                    json(exchange, Mapper.toGeoLocationPage(geodataService.findChildren(countryCode, pageable(exchange)).map(mapper::transform)));
-                })
+                    json(exchange, Mapper.toGeoLocationPage(geodataService.findChildren(countryCode, childPageable(exchange, pageable(exchange))).map(mapper::transform)));
+                }))
 
-                .add(Methods.GET, "/v1/locations/{id}", exchange ->
+                .add(Methods.GET, "/v1/locations/{id}", requires(Capability.LOCATIONS, exchange ->
                 {
                     final int id = requireIntParam(exchange, "id");
                     json(exchange, Optional.ofNullable(geodataService.findById(id)).map(mapper::transform).orElseThrow(notNull("No location with id " + id)));
-                })
+                }))
 
-                .add(Methods.GET, "/v1/locations/{id}/parent", exchange ->
+                .add(Methods.GET, "/v1/locations/{id}/parent", requires(Capability.LOCATIONS, exchange ->
                 {
                     final int id = requireIntParam(exchange, "id");
                     json(exchange, Optional.ofNullable(geodataService.findParent(id))
                             .map(mapper::transform)
                             .orElseThrow(notNull("No parent location found for id " + id)));
-                })
+                }))
 
-                .add(Methods.GET, "/v1/locations/{id}/insideany/{ids}", exchange ->
+                .add(Methods.GET, "/v1/locations/{id}/insideany/{ids}", requires(Capability.LOCATIONS, exchange ->
                 {
                     final int id = requireIntParam(exchange, "id");
                     final List<Integer> ids = getIntList(exchange, "ids").orElseThrow(missingParam("ids"));
                     json(exchange, geodataService.isInsideAny(ids, id));
-                })
+                }))
 
-                .add(Methods.GET, "/v1/locations/{id}/contains/{child}", exchange ->
+                .add(Methods.GET, "/v1/locations/{id}/contains/{child}", requires(Capability.LOCATIONS, exchange ->
                 {
                     final int id = requireIntParam(exchange, "id");
                     final int child = requireIntParam(exchange, "child");
                     json(exchange, geodataService.isLocationInside(child, id));
-                })
+                }))
 
-                .add(Methods.GET, "/v1/continents", exchange ->
+                .add(Methods.GET, "/v1/continents", requires(Capability.CONTINENTS, exchange ->
                 {
                     final Page<V1Continent> page = geodataService.findContinents().map(mapper::transform);
                     json(exchange, new V1PageContinent()
@@ -180,28 +183,28 @@ public class ServerHandler extends BaseServerHandler
                             .size(page.getSize())
                             .totalElements(page.getTotalElements())
                             .totalPages(page.getTotalPages()));
-                })
+                }))
 
-                .add(Methods.GET, "/v1/continents/{continent}/countries", exchange ->
+                .add(Methods.GET, "/v1/continents/{continent}/countries", requires(Capability.CONTINENTS, exchange ->
                 {
                     final String continent = requireStringParam(exchange, "continent");
                     json(exchange, mapper.toCountryPage(geodataService.findCountriesOnContinent(continent, pageable(exchange)).map(mapper::transform)));
-                })
+                }))
 
-                .add(Methods.GET, "/v1/countries/{countryCode}", exchange ->
+                .add(Methods.GET, "/v1/countries/{countryCode}", requires(Capability.LOCATIONS, exchange ->
                 {
                     final String countryCode = requireStringParam(exchange, "countryCode");
                     json(exchange, Optional.ofNullable(geodataService.findCountryByCode(countryCode)).map(mapper::transform).orElseThrow(notNull("No such country code: " + countryCode)));
-                })
+                }))
 
-                .add(Methods.GET, "/v1/locations/phone/{phone}", exchange ->
+                .add(Methods.GET, "/v1/locations/phone/{phone}", requires(Capability.LOCATIONS, exchange ->
                 {
                     final String phone = requireStringParam(exchange, "phone");
                     final Country country = Optional.ofNullable(geodataService.findByPhoneNumber(phone)).orElseThrow(notNull("Unable to determine country by phone number " + phone));
                     json(exchange, mapper.transform(country));
-                })
+                }))
 
-                .add(Methods.GET, "/v1/locations/proximity", exchange ->
+                .add(Methods.GET, "/v1/locations/proximity", requires(Capability.GEOMETRY, exchange ->
                 {
                     final Pageable pageable = pageable(exchange);
                     final double lat = requireDoubleParam(exchange, "lat");
@@ -209,9 +212,9 @@ public class ServerHandler extends BaseServerHandler
                     final int maxDistance = getIntParam(exchange, "maxDistance").orElse(Integer.MAX_VALUE);
                     final Page<GeoLocationDistance> locationAndDistance = geodataService.findNear(Coordinates.from(lat, lng), maxDistance, pageable);
                     json(exchange, mapper.toGeolocationDistancePage(locationAndDistance));
-                })
+                }))
 
-                .add(Methods.GET, "/v1/locations/coordinates", exchange ->
+                .add(Methods.GET, "/v1/locations/coordinates", requires(Capability.GEOMETRY, exchange ->
                 {
                     final double lat = requireDoubleParam(exchange, "lat");
                     final double lng = requireDoubleParam(exchange, "lng");
@@ -239,21 +242,21 @@ public class ServerHandler extends BaseServerHandler
                     });
 
                     json(exchange, l);
-                })
+                }))
 
-                .add(Methods.GET, "/v1/locations/{id}/previewboundaries", exchange ->
+                .add(Methods.GET, "/v1/locations/{id}/previewboundaries", requires(Capability.GEOMETRY, exchange ->
                 {
                     final Geometry boundary = getPreviewGeometry(exchange);
                     sendGeoJson(exchange, boundary);
-                })
+                }))
 
-                .add(Methods.GET, "/v1/locations/{id}/previewboundaries.wkb", exchange ->
+                .add(Methods.GET, "/v1/locations/{id}/previewboundaries.wkb", requires(Capability.GEOMETRY, exchange ->
                 {
                     final Geometry boundary = getPreviewGeometry(exchange);
                     sendWkb(exchange, boundary);
-                })
+                }))
 
-                .add(Methods.GET, "/v1/locations/contains", exchange ->
+                .add(Methods.GET, "/v1/locations/contains", requires(Capability.GEOMETRY, exchange ->
                 {
                     final double lat = requireDoubleParam(exchange, "lat");
                     final double lng = requireDoubleParam(exchange, "lng");
@@ -269,26 +272,26 @@ public class ServerHandler extends BaseServerHandler
                             })
                             .map(mapper::transform)
                             .orElseThrow(notNull("No boundaries containing " + lat + "," + lng + " found")));
-                })
+                }))
 
-                .add(Methods.GET, "/v1/locations/{id}/outsideall/{ids}", exchange ->
+                .add(Methods.GET, "/v1/locations/{id}/outsideall/{ids}", requires(Capability.LOCATIONS, exchange ->
                 {
                     final int id = requireIntParam(exchange, "id");
                     final List<Integer> ids = getIntList(exchange, "ids").orElseThrow(missingParam("ids"));
                     json(exchange, geodataService.isOutsideAll(ids, id));
-                })
+                }))
 
-                .add(Methods.GET, "/v1/locations/{id}/simpleboundaries.wkb", exchange ->
+                .add(Methods.GET, "/v1/locations/{id}/simpleboundaries.wkb", requires(Capability.GEOMETRY, exchange ->
                 {
                     final Geometry boundary = getSimpleBoundary(exchange);
                     sendWkb(exchange, boundary);
-                })
+                }))
 
-                .add(Methods.GET, "/v1/locations/{id}/simpleboundaries", exchange ->
+                .add(Methods.GET, "/v1/locations/{id}/simpleboundaries", requires(Capability.GEOMETRY, exchange ->
                 {
                     final Geometry boundary = getSimpleBoundary(exchange);
                     sendGeoJson(exchange, boundary);
-                });
+                }));
 
         // Performance logging handler
         final HttpHandler performanceHandler = new PerformanceHandler(routes);
@@ -301,7 +304,14 @@ public class ServerHandler extends BaseServerHandler
                 .addExactPath("/api.html", new ResourceHandler(classpathResource("public/api.html")));;
 
         // Source data information
-        path.addExactPath("/sysadmin/source", exchange -> json(exchange, metaDao.load()));
+        path.addExactPath("/sysadmin/source", exchange ->
+        {
+            final Generation generation = generations.get();
+            final Map<String, Object> source = new LinkedHashMap<>();
+            source.put("generation", generation.getId());
+            source.put("data", generation.getMetaDao().load().getData());
+            json(exchange, source);
+        });
 
         // Version info
         final Map<String, Object> versionInfo = new LinkedHashMap<>();
@@ -317,9 +327,42 @@ public class ServerHandler extends BaseServerHandler
         path.addExactPath("/sysadmin/health", exchange ->
                 json(exchange, Collections.singletonMap("status", "UP")));
 
+        // Load steps of the current generation, and of the one being loaded in the background, if any
+        path.addExactPath("/sysadmin/startup", exchange ->
+        {
+            final Map<String, Object> startup = new LinkedHashMap<>();
+            startup.put("current", getStartup(generations.get()));
+            generations.getLoading().ifPresent(loading -> startup.put("loading", getStartup(loading)));
+            json(exchange, startup);
+        });
+
         // Memory
         path.addExactPath("/sysadmin/memory", exchange ->
-                json(exchange, MemoryUsageUtil.getInfoMap()));
+        {
+            final Map<String, Object> info = MemoryUsageUtil.getInfoMap();
+            info.put("accounting", MemoryUsageUtil.getAccountingMap(geodataService.getMemoryAccounting()));
+            info.put("residency", MemoryUsageUtil.getResidencyMap(generations.get().getDirectory()));
+            json(exchange, info);
+        });
+
+        // Cache hits, misses and evictions of the current generation
+        path.addExactPath("/sysadmin/cache", exchange ->
+                json(exchange, Collections.singletonMap("locations", geodataService.getLocationCacheStats())));
+
+        // Readiness, optionally limited to the capabilities listed in the 'capabilities' parameter
+        path.addExactPath("/sysadmin/ready", exchange ->
+        {
+            final Readiness readiness = geodataService.getReadiness();
+            final List<Capability> required = getStringParam(exchange, "capabilities")
+                    .map(s -> Arrays.stream(s.split(",")).map(ServerHandler::capability).collect(Collectors.toList()))
+                    .orElse(Arrays.asList(Capability.values()));
+            final boolean ready = readiness.isReady(required);
+            final Map<String, Object> result = new LinkedHashMap<>();
+            result.put("ready", ready);
+            result.put("capabilities", readiness.getStates());
+            exchange.setStatusCode(ready ? 200 : 503);
+            json(exchange, result);
+        });
 
 
         // Exception handlers
@@ -338,6 +381,50 @@ public class ServerHandler extends BaseServerHandler
         return exceptionHandler;
     }
 
+    private static Map<String, Object> getStartup(final Generation generation)
+    {
+        final Map<String, Object> startup = new LinkedHashMap<>();
+        startup.put("generation", generation.getId());
+        startup.put("steps", generation.getProgressListener().getSteps().values());
+        return startup;
+    }
+
+    /**
+     * Children are sorted by name, or by descending population with <code>sort=population</code>
+     */
+    private Pageable childPageable(final HttpServerExchange exchange, final Pageable pageable)
+    {
+        final String sort = getStringParam(exchange, "sort").orElse("name");
+        switch (sort)
+        {
+            case "name":
+                return PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(), Sort.by("name"));
+
+            case "population":
+                return PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(), Sort.by(Sort.Direction.DESC, "population"));
+
+            default:
+                throw new InvalidDataException(sort, "Unknown sort order: " + sort + ", valid values are name and population");
+        }
+    }
+
+    private static Capability capability(final String name)
+    {
+        try
+        {
+            return Capability.valueOf(name.trim().toUpperCase());
+        }
+        catch (IllegalArgumentException exc)
+        {
+            throw new InvalidDataException(name, "Unknown capability: " + name + ", valid values are " + Arrays.toString(Capability.values()));
+        }
+    }
+
+    private HttpHandler requires(final Capability capability, final HttpHandler handler)
+    {
+        return new InitSuspendHandler(handler, geodataService::getReadiness, capability);
+    }
+
     private Geometry getSimpleBoundary(final HttpServerExchange exchange)
     {
         final int id = requireIntParam(exchange, "id");
@@ -25,7 +25,6 @@ package com.ethlo.geodata;
 import java.nio.file.Path;
 import java.time.Duration;
 import java.time.OffsetDateTime;
-import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.function.Function;
@@ -36,24 +35,9 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.EmptyResultDataAccessException;
 
-import com.ethlo.geodata.dao.BoundaryDao;
-import com.ethlo.geodata.dao.CountryDao;
-import com.ethlo.geodata.dao.FeatureCodeDao;
-import com.ethlo.geodata.dao.FileMetaDao;
-import com.ethlo.geodata.dao.HierarchyDao;
-import com.ethlo.geodata.dao.IpDao;
-import com.ethlo.geodata.dao.LocationDao;
-import com.ethlo.geodata.dao.MetaDao;
-import com.ethlo.geodata.dao.TimeZoneDao;
-import com.ethlo.geodata.dao.file.FileBoundaryDao;
-import com.ethlo.geodata.dao.file.FileCountryDao;
-import com.ethlo.geodata.dao.file.FileFeatureCodeDao;
-import com.ethlo.geodata.dao.file.FileHierarchyDao;
-import com.ethlo.geodata.dao.file.FileIpDao;
-import com.ethlo.geodata.dao.file.FileLocationDao;
-import com.ethlo.geodata.dao.file.FileTimeZoneDao;
-import com.ethlo.geodata.progress.StatefulProgressListener;
+import com.ethlo.geodata.dao.file.MmapBackend;
 import com.ethlo.geodata.util.MemoryUsageUtil;
+import io.undertow.server.HttpHandler;
 
 public class UndertowServer
 {
@@ -61,7 +45,13 @@ public class UndertowServer
 
     public UndertowServer(@Value("${geodata.base-path}") final Path basePath,
                           @Value("${server.host}") final String host,
-                          @Value("${server.port}") final int port)
+                          @Value("${server.port}") final int port,
+                          @Value("${geodata.mmap.backend:gc}") final String mmapBackend,
+                          @Value("${geodata.load.parallel:true}") final boolean parallelLoad,
+                          @Value("${geodata.mmap.warmup:}") final String warmup,
+                          @Value("${geodata.cache.locations:0}") final int locationCacheSize,
+                          @Value("${geodata.reload.interval:PT1M}") final Duration reloadInterval,
+                          @Value("${geodata.reload.grace-period:PT1M}") final Duration reloadGracePeriod)
     {
         final Map<Class<? extends Throwable>, Function<Throwable, ApiError>> exceptionHandlers = new LinkedHashMap<>();
         exceptionHandlers.put(EmptyResultDataAccessException.class, exc -> new ApiError(404, exc.getMessage()));
@@ -73,32 +63,28 @@ public class UndertowServer
             return new ApiError(500, "An internal error occurred");
         });
 
-        final MetaDao metaDao = new FileMetaDao(basePath);
-        final LocationDao locationDao = new FileLocationDao(basePath);
-        final IpDao ipDao = new FileIpDao(basePath);
-        final HierarchyDao hierarchyDao = new FileHierarchyDao(basePath);
-        final FeatureCodeDao featureCodeDao = new FileFeatureCodeDao(basePath);
-        final TimeZoneDao timeZoneDao = new FileTimeZoneDao(basePath);
-        final CountryDao countryDao = new FileCountryDao(basePath);
-        final BoundaryDao boundaryDao = new FileBoundaryDao(basePath);
-        final int boundaryQualityConstant = 200_000;
-        final GeodataServiceImpl geodataService = new GeodataServiceImpl(locationDao, ipDao, hierarchyDao, featureCodeDao, timeZoneDao, countryDao, boundaryDao, metaDao, Collections.emptyList(), boundaryQualityConstant);
-        final StatefulProgressListener progressListener = new StatefulProgressListener();
+        final MmapBackend backend = MmapBackend.from(mmapBackend);
+        logger.info("Memory mapping backend: {}", backend);
 
-        final InitSuspendHandler routes = new InitSuspendHandler(new ServerHandler(geodataService, metaDao).handler(exceptionHandlers));
+        final DataGenerations generations = new DataGenerations(basePath, backend, parallelLoad, warmup, locationCacheSize, reloadGracePeriod);
+        final Generation generation = generations.openLatest();
+        final GeodataService geodataService = new GenerationalGeodataService(() -> generations.get().getService());
+
+        final HttpHandler routes = generations.pin(new ServerHandler(geodataService, generations).handler(exceptionHandlers));
 
         final SimpleServer server = SimpleServer.simpleServer(routes, host, port);
         server.start();
 
         logger.info("Startup completed in {}", DurationFormatUtils.formatDuration(Duration.between(MemoryUsageUtil.getJvmStartTime(), OffsetDateTime.now()).toMillis(), "ss.SSS 'seconds'"));
 
-        geodataService.load(progressListener);
+        generation.load();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> generations.get().saveHotRegions(), "hot-region-recorder"));
 
         logger.info("Triggering GC");
         System.gc();
 
-        routes.setReady(true);
-
         MemoryUsageUtil.dumpMemUsage("Ready");
+
+        generations.watch(reloadInterval);
     }
 }
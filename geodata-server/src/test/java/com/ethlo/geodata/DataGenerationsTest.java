@@ -0,0 +1,93 @@
+package com.ethlo.geodata;
+
+/*-
+ * #%L
+ * geodata-server
+ * %%
+ * Copyright (C) 2017 - 2020 Morten Haraldsen (ethlo)
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.ethlo.geodata.dao.FileMetaDao;
+import com.ethlo.geodata.dao.file.MmapBackend;
+
+public class DataGenerationsTest
+{
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testRetireWhilePinned() throws Exception
+    {
+        GenerationTest.createGeneration(tempDir.resolve("1"));
+        final DataGenerations generations = new DataGenerations(tempDir, MmapBackend.GC, false, "", 0, Duration.ZERO);
+        final Generation generation = generations.openLatest();
+
+        generations.pin(exchange ->
+        {
+            assertThat(generations.get()).isSameAs(generation);
+            generation.retire();
+            assertThat(generation.isClosed()).isFalse();
+        }).handleRequest(null);
+
+        assertThat(generation.isClosed()).isTrue();
+    }
+
+    @Test
+    public void testFailedLoadIsRetriedWhenImportedAgain() throws IOException
+    {
+        final AtomicInteger created = new AtomicInteger();
+        final DataGenerations generations = new DataGenerations(tempDir, MmapBackend.GC, false, "", 0, Duration.ZERO)
+        {
+            @Override
+            Generation create(final String id, final Path directory)
+            {
+                created.incrementAndGet();
+                return super.create(id, directory);
+            }
+        };
+        GenerationTest.createGeneration(tempDir.resolve("1"));
+        generations.openLatest();
+
+        // The new generation has no data files, so loading it fails
+        final Path directory = GenerationTest.createGeneration(tempDir.resolve("2"));
+        generations.reload();
+        assertThat(created).hasValue(2);
+        assertThat(generations.get().getId()).isEqualTo("1");
+
+        generations.reload();
+        assertThat(created).hasValue(2);
+
+        final Path marker = directory.resolve(FileMetaDao.COMPLETE);
+        Files.setLastModifiedTime(marker, FileTime.fromMillis(Files.getLastModifiedTime(marker).toMillis() + 60_000));
+        generations.reload();
+        assertThat(created).hasValue(3);
+        assertThat(generations.get().getId()).isEqualTo("1");
+    }
+}
@@ -0,0 +1,79 @@
+package com.ethlo.geodata;
+
+/*-
+ * #%L
+ * geodata-server
+ * %%
+ * Copyright (C) 2017 - 2020 Morten Haraldsen (ethlo)
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.OffsetDateTime;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.ethlo.geodata.dao.FileMetaDao;
+import com.ethlo.geodata.dao.file.MmapBackend;
+import com.ethlo.geodata.util.JsonUtil;
+
+public class GenerationTest
+{
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testRetireWhileAcquired() throws IOException
+    {
+        final Generation generation = Generation.create("1", createGeneration(tempDir.resolve("1")), MmapBackend.GC, false, "", 0);
+        assertThat(generation.acquire()).isTrue();
+        assertThat(generation.acquire()).isTrue();
+
+        generation.retire();
+        generation.release();
+        assertThat(generation.isClosed()).isFalse();
+
+        generation.release();
+        assertThat(generation.isClosed()).isTrue();
+    }
+
+    @Test
+    public void testAcquireAfterClose() throws IOException
+    {
+        final Generation generation = Generation.create("1", createGeneration(tempDir.resolve("1")), MmapBackend.GC, false, "", 0);
+        generation.retire();
+        assertThat(generation.isClosed()).isTrue();
+        assertThat(generation.acquire()).isFalse();
+        assertThat(generation.isClosed()).isTrue();
+    }
+
+    /**
+     * A complete generation directory without any data, which can be created but fails to load
+     */
+    static Path createGeneration(final Path directory) throws IOException
+    {
+        Files.createDirectories(directory);
+        JsonUtil.write(directory.resolve(FileMetaDao.FILE), new SourceDataInfoSet());
+        Files.writeString(directory.resolve(FileMetaDao.COMPLETE), OffsetDateTime.now().toString());
+        return directory;
+    }
+}
@@ -37,7 +37,11 @@ import com.ethlo.geodata.model.Coordinates;
 import com.ethlo.geodata.model.Country;
 import com.ethlo.geodata.model.GeoLocation;
 import com.ethlo.geodata.model.GeoLocationDistance;
+import com.ethlo.geodata.model.GeoLocationSummary;
 import com.ethlo.geodata.model.View;
+import com.ethlo.geodata.progress.Readiness;
+import com.ethlo.geodata.util.MemoryAccounting;
+import com.ethlo.geodata.util.TinyLfuCache;
 import jakarta.validation.Valid;
 
 public interface GeodataService
@@ -92,5 +96,16 @@ public interface GeodataService
 
     void load(LoadProgressListener loadProgressListener);
 
+    Readiness getReadiness();
+
+    MemoryAccounting getMemoryAccounting();
+
+    TinyLfuCache.Stats getLocationCacheStats();
+
     List<GeoLocation> findPath(int id);
+
+    /**
+     * @return The summaries of the ancestors of the location, nearest first, excluding the top of the hierarchy
+     */
+    List<GeoLocationSummary> findPathSummaries(int id);
 }
@@ -22,15 +22,16 @@ package com.ethlo.geodata;
  * #L%
  */
 
+import java.io.Closeable;
+import java.io.IOException;
 import java.net.InetAddress;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.Deque;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
@@ -39,7 +40,6 @@ import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
-import java.util.concurrent.LinkedBlockingDeque;
 import java.util.stream.Collectors;
 
 import org.locationtech.jts.geom.Envelope;
@@ -57,28 +57,44 @@ import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.SliceImpl;
 import org.springframework.stereotype.Service;
 
-import com.ethlo.chronograph.Chronograph;
 import com.ethlo.geodata.dao.BoundaryDao;
 import com.ethlo.geodata.dao.CountryDao;
 import com.ethlo.geodata.dao.FeatureCodeDao;
+import com.ethlo.geodata.dao.Hierarchy;
 import com.ethlo.geodata.dao.HierarchyDao;
 import com.ethlo.geodata.dao.IpDao;
 import com.ethlo.geodata.dao.LocationDao;
 import com.ethlo.geodata.dao.MetaDao;
 import com.ethlo.geodata.dao.TimeZoneDao;
+import com.ethlo.geodata.dao.file.FileNameIndexDao;
+import com.ethlo.geodata.dao.file.FileSpatialIndexDao;
+import com.ethlo.geodata.dao.file.HierarchyIndex;
+import com.ethlo.geodata.dao.file.NameIndex;
 import com.ethlo.geodata.dao.file.RtreeRepository;
+import com.ethlo.geodata.dao.file.Warmable;
+import com.ethlo.geodata.dao.file.WarmupPolicy;
+import com.ethlo.geodata.hierarchy.AncestorPaths;
+import com.ethlo.geodata.hierarchy.ChildLists;
+import com.ethlo.geodata.hierarchy.HierarchyIntervals;
 import com.ethlo.geodata.model.Continent;
 import com.ethlo.geodata.model.Coordinates;
 import com.ethlo.geodata.model.Country;
 import com.ethlo.geodata.model.CountrySummary;
 import com.ethlo.geodata.model.GeoLocation;
 import com.ethlo.geodata.model.GeoLocationDistance;
+import com.ethlo.geodata.model.GeoLocationSummary;
 import com.ethlo.geodata.model.MapFeature;
-import com.ethlo.geodata.model.RawLocation;
+import com.ethlo.geodata.model.RawLocationView;
 import com.ethlo.geodata.model.View;
+import com.ethlo.geodata.progress.Capability;
+import com.ethlo.geodata.progress.Capability.Stages;
+import com.ethlo.geodata.progress.LoadTaskGraph;
+import com.ethlo.geodata.progress.Readiness;
 import com.ethlo.geodata.progress.StatefulProgressListener;
-import com.ethlo.geodata.progress.StepProgressListener;
 import com.ethlo.geodata.util.GeometryUtil;
+import com.ethlo.geodata.util.MemoryAccountable;
+import com.ethlo.geodata.util.MemoryAccounting;
+import com.ethlo.geodata.util.TinyLfuCache;
 import com.google.common.base.Stopwatch;
 import com.google.common.collect.BiMap;
 import com.google.common.collect.HashBiMap;
@@ -89,14 +105,19 @@ import com.google.i18n.phonenumbers.Phonenumber;
 import com.googlecode.concurrenttrees.radix.ConcurrentRadixTree;
 import com.googlecode.concurrenttrees.radix.RadixTree;
 import com.googlecode.concurrenttrees.radix.node.concrete.SmartArrayBasedNodeFactory;
-import com.illucit.util.ASCIIUtils;
-import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
 import jakarta.annotation.PostConstruct;
 
 @Lazy
 @Service
-public class GeodataServiceImpl implements GeodataService
+public class GeodataServiceImpl implements GeodataService, Closeable
 {
+    // Rough retained size of a radix tree node with its edge characters and posting array
+    private static final long SEARCH_ENTRY_HEAP_BYTES = 112;
+    // Rough retained size of a map entry holding a country, feature code, time zone or continent
+    private static final long REFERENCE_ENTRY_HEAP_BYTES = 256;
+
     private final Logger logger = LoggerFactory.getLogger(GeodataServiceImpl.class);
     private final RadixTree<int[]> locationsByName = new ConcurrentRadixTree<>(new SmartArrayBasedNodeFactory());
     private final LocationDao locationDao;
@@ -106,12 +127,30 @@ public class GeodataServiceImpl implements GeodataService
     private final TimeZoneDao timeZoneDao;
     private final CountryDao countryDao;
     private final BoundaryDao boundaryDao;
+    private final FileSpatialIndexDao spatialIndexDao;
+    private final FileNameIndexDao nameIndexDao;
     private final MetaDao metaDao;
     private final List<String> additionalIndexedFeatures;
     private final int qualityConstant;
+    private final boolean parallelLoad;
+    private final Map<String, WarmupPolicy> warmupPolicies;
+    private final TinyLfuCache<GeoLocation> locationCache;
+    private final Readiness readiness = new Readiness();
+    private final MemoryAccounting memoryAccounting = new MemoryAccounting();
+    private volatile int searchIndexEntries;
     private RtreeRepository rtreeRepository;
+    private NameIndex nameIndex;
+    // Terms of the name index with a location of a searchable feature
+    private BitSet searchableTerms;
     // Loaded data
-    private Map<Integer, Node> nodes = new Int2ObjectOpenHashMap<>();
+    private Hierarchy hierarchy = HierarchyIndex.of(Collections.emptyMap());
+    private boolean hierarchyOrdinals;
+    private AncestorPaths ancestorPaths = AncestorPaths.build(hierarchy, this::getSummary);
+    private HierarchyIntervals hierarchyIntervals = HierarchyIntervals.build(hierarchy);
+    private ChildLists childLists = ChildLists.build(new int[0], new int[0], new String[0], new long[0]);
+    // Flags by location id
+    private BitSet realChildren = new BitSet();
+    private BitSet boundaries = new BitSet();
     private BiMap<String, Integer> timezones;
     private Map<String, Country> countries;
     private List<Continent> continents = new LinkedList<>();
@@ -119,9 +158,12 @@ public class GeodataServiceImpl implements GeodataService
 
     public GeodataServiceImpl(final LocationDao locationDao, final IpDao ipDao, final HierarchyDao hierarchyDao,
                               final FeatureCodeDao featureCodeDao, final TimeZoneDao timeZoneDao, final CountryDao countryDao,
-                              final BoundaryDao boundaryDao, final MetaDao metaDao,
+                              final BoundaryDao boundaryDao, final FileSpatialIndexDao spatialIndexDao, final FileNameIndexDao nameIndexDao, final MetaDao metaDao,
                               @Value("${geodata.search.index-features}") final List<String> additionalIndexedFeatures,
-                              @Value("${geodata.boundaries.quality}") final int qualityConstant)
+                              @Value("${geodata.boundaries.quality}") final int qualityConstant,
+                              @Value("${geodata.load.parallel:true}") final boolean parallelLoad,
+                              @Value("${geodata.mmap.warmup:}") final String warmup,
+                              @Value("${geodata.cache.locations:0}") final int locationCacheSize)
     {
         this.locationDao = locationDao;
         this.ipDao = ipDao;
@@ -130,9 +172,14 @@ public class GeodataServiceImpl implements GeodataService
         this.timeZoneDao = timeZoneDao;
         this.countryDao = countryDao;
         this.boundaryDao = boundaryDao;
+        this.spatialIndexDao = spatialIndexDao;
+        this.nameIndexDao = nameIndexDao;
         this.metaDao = metaDao;
         this.additionalIndexedFeatures = additionalIndexedFeatures;
         this.qualityConstant = qualityConstant;
+        this.parallelLoad = parallelLoad;
+        this.warmupPolicies = WarmupPolicy.parse(warmup);
+        this.locationCache = new TinyLfuCache<>(locationCacheSize);
     }
 
     @Override
@@ -144,14 +191,37 @@ public class GeodataServiceImpl implements GeodataService
     @Override
     public GeoLocation findById(int id)
     {
-        return locationDao.get(id).map(this::populate).orElseThrow(() -> new EmptyResultDataAccessException("No location with id " + id, 1));
+        final GeoLocation cached = locationCache.get(id);
+        if (cached != null)
+        {
+            return cached;
+        }
+
+        final int ordinal = locationDao.ordinalOf(id);
+        if (ordinal < 0)
+        {
+            throw new EmptyResultDataAccessException("No location with id " + id, 1);
+        }
+        return populateAndCache(id, ordinal);
+    }
+
+    private GeoLocation populateAndCache(final int id, final int ordinal)
+    {
+        final GeoLocation location = populate(locationDao.getViewAt(ordinal), ordinal);
+
+        // Locations populated before the reference data and hierarchy are loaded are incomplete
+        if (readiness.isReady(Capability.LOCATIONS))
+        {
+            locationCache.put(id, location);
+        }
+        return location;
     }
 
     @Override
     public Optional<LookupMetadata> findWithin(Coordinates coordinate, int maxDistanceInKilometers)
     {
         return Optional.ofNullable(rtreeRepository.find(coordinate)).map(e ->
-                new LookupMetadata(findById(e.value().getId()), e.value().getSubdivideIndex(), e.value().getEnvelope()));
+                new LookupMetadata(findById(e.getId()), e.getSubdivideIndex(), e.getEnvelope()));
     }
 
     @Override
@@ -181,54 +251,41 @@ public class GeodataServiceImpl implements GeodataService
     @Override
     public Page<GeoLocation> findChildren(int locationId, final boolean matchLevel, Pageable pageable)
     {
-        final GeoLocation self = findById(locationId);
-        final List<Integer> all = getChildIds(locationId);
-        final Optional<List<String>> subLevel = getSubLevel(self.getFeatureKey());
-        final List<GeoLocation> locations = all
-                .stream()
-                .map(this::findById)
-                .filter(l -> subLevel.map(s -> s.contains(l.getFeatureKey())).orElse(false))
-                .toList();
-
-        final long total = locations.size();
+        findById(locationId);
+        return findChildPage(locationId, pageable);
+    }
 
-        final List<GeoLocation> content = locations
-                .stream()
-                .sorted(Comparator.comparing(GeoLocation::getName))
-                .skip(pageable.getOffset())
-                .limit(pageable.getPageSize())
-                .collect(Collectors.toList());
+    /**
+     * A page of the children on the next administrative level, by name or, if the page is sorted on population, by
+     * descending population
+     */
+    private Page<GeoLocation> findChildPage(final int id, final Pageable pageable)
+    {
+        return findPage(childLists, hierarchy.ordinal(id), pageable);
+    }
 
-        return new PageImpl<>(content, pageable, total);
+    private Page<GeoLocation> findPage(final ChildLists lists, final int ordinal, final Pageable pageable)
+    {
+        final ChildLists.Order order = pageable.getSort().getOrderFor("population") != null ? ChildLists.Order.POPULATION : ChildLists.Order.NAME;
+        final int[] childIds = lists.getPage(ordinal, order, pageable.getOffset(), pageable.getPageSize());
+        final List<GeoLocation> content = new ArrayList<>(childIds.length);
+        for (final int childId : childIds)
+        {
+            content.add(findById(childId));
+        }
+        return new PageImpl<>(content, pageable, lists.count(ordinal));
     }
 
     @Override
     public boolean hasRealChildren(final int id)
     {
-        final GeoLocation self = findById(id);
-        final List<Integer> all = getChildIds(id);
-        final Optional<List<String>> subLevel = getSubLevel(self.getFeatureKey());
-
-        return all
-                .stream()
-                .map(this::findById)
-                .anyMatch(l -> subLevel.map(s -> s.contains(l.getFeatureKey())).orElse(false));
+        return id >= 0 && realChildren.get(id);
     }
 
     @Override
     public boolean hasBoundary(final int id)
     {
-        return boundaryDao.hasGeometry(id);
-    }
-
-    private List<Integer> getChildIds(final int id)
-    {
-        final Node node = nodes.get(id);
-        if (node != null)
-        {
-            return node.getChildren();
-        }
-        return Collections.emptyList();
+        return id >= 0 && boundaries.get(id);
     }
 
     private Optional<List<String>> getSubLevel(final String featureCode)
@@ -252,6 +309,48 @@ public class GeodataServiceImpl implements GeodataService
         return Optional.empty();
     }
 
+    @Override
+    public Readiness getReadiness()
+    {
+        return readiness;
+    }
+
+    @Override
+    public MemoryAccounting getMemoryAccounting()
+    {
+        return memoryAccounting;
+    }
+
+    @Override
+    public TinyLfuCache.Stats getLocationCacheStats()
+    {
+        return locationCache.getStats();
+    }
+
+    /**
+     * Release the mapped data of this service. It must not be used afterwards.
+     */
+    @Override
+    public void close() throws IOException
+    {
+        if (rtreeRepository != null)
+        {
+            rtreeRepository.close();
+        }
+        if (nameIndex != null)
+        {
+            nameIndex.close();
+        }
+        hierarchy.close();
+        for (final Object dao : Arrays.asList(locationDao, boundaryDao))
+        {
+            if (dao instanceof Closeable)
+            {
+                ((Closeable) dao).close();
+            }
+        }
+    }
+
     @PostConstruct
     public void load()
     {
@@ -264,32 +363,74 @@ public class GeodataServiceImpl implements GeodataService
         final SourceDataInfoSet sourceDataInfo = metaDao.load();
         logger.info("{}", sourceDataInfo);
 
+        readiness.reset();
+        locationCache.clear();
+        final LoadTaskGraph graph = new LoadTaskGraph(parallelLoad)
+                .listener(readiness)
+                .add(Stages.FEATURE_CODES, () -> loadFeatureCodes(progressListener))
+                .add(Stages.TIME_ZONES, () -> loadTimeZones(progressListener))
+                .add(Stages.LOCATIONS, () -> loadLocations(progressListener))
+                .add(Stages.COUNTRIES, () -> loadCountries(progressListener))
+                .add(Stages.HIERARCHY, () -> loadHierarchy(progressListener), Stages.FEATURE_CODES, Stages.LOCATIONS)
+                .add(Stages.BOUNDARIES, () -> loadBoundaries(progressListener))
+                .add(Stages.GEOMETRY, this::loadProximityTree, Stages.FEATURE_CODES, Stages.LOCATIONS, Stages.BOUNDARIES)
+                .add(Stages.SEARCH_INDEX, () -> loadSearchIndex(progressListener), Stages.FEATURE_CODES, Stages.LOCATIONS)
+                .add(Stages.CONTINENTS, () -> loadContinents(progressListener), Capability.LOCATIONS.getStages().toArray(new String[0]))
+                .add(Stages.WARMUP, () -> warmUp(progressListener), Stages.LOCATIONS, Stages.BOUNDARIES);
+        graph.run();
+
+        logger.info("Data loaded successfully");
+    }
+
+    private void warmUp(final LoadProgressListener progressListener)
+    {
+        warmUp("locations", locationDao, progressListener);
+        warmUp("boundaries", boundaryDao, progressListener);
+    }
+
+    private void warmUp(final String name, final Object dao, final LoadProgressListener progressListener)
+    {
+        final WarmupPolicy policy = warmupPolicies.getOrDefault(name, WarmupPolicy.NONE);
+        if (policy != WarmupPolicy.NONE && dao instanceof Warmable)
+        {
+            ((Warmable) dao).warmUp(policy, progressListener);
+        }
+    }
+
+    /**
+     * Record the resident regions of the data files warmed up with {@link WarmupPolicy#HOT}, for the next start
+     */
+    public void saveHotRegions()
+    {
+        for (final Object dao : Arrays.asList(locationDao, boundaryDao))
+        {
+            if (dao instanceof Warmable)
+            {
+                ((Warmable) dao).saveHotRegions();
+            }
+        }
+    }
+
+    private void loadFeatureCodes(final LoadProgressListener progressListener)
+    {
         progressListener.begin("feature_codes", 1);
         this.featureCodes = featureCodeDao.load();
+        progressListener.end();
+    }
 
+    private void loadTimeZones(final LoadProgressListener progressListener)
+    {
         progressListener.begin("time_zones", 1);
         this.timezones = HashBiMap.create(timeZoneDao.load());
-
-        final Chronograph chronograph = Chronograph.create();
-        chronograph.time("Locations", () -> loadLocations(progressListener));
-        chronograph.time("Geometry", () -> loadProximityTree());
-        chronograph.time("Countries", () -> loadCountries(progressListener));
-        chronograph.time("Continents", () -> loadContinents(progressListener));
-        chronograph.time("SearchIndex", () -> loadSearchIndex(progressListener));
-        chronograph.time("Hierarchy", () -> loadHierarchy(progressListener));
-
-        logger.info("Data loaded successfully");
-
-        logger.info(chronograph.toString());
+        progressListener.end();
     }
 
     private void loadProximityTree()
     {
-        final Set<Integer> featureCodesForProximity = featureCodes.entrySet().stream()
-                .filter(e -> GeoConstants.ADMINISTRATIVE_OR_ABOVE.contains(e.getValue().getKey()))
-                .map(Entry::getKey)
-                .collect(Collectors.toSet());
-        rtreeRepository = new RtreeRepository(locationDao, boundaryDao, featureCodesForProximity);
+        final Set<Integer> featureCodesForProximity = RtreeRepository.getProximityFeatureIds(featureCodes);
+        rtreeRepository = new RtreeRepository(locationDao, boundaryDao, featureCodesForProximity, spatialIndexDao);
+        rtreeRepository.registerMemory(memoryAccounting);
+        registerMemory(boundaryDao);
     }
 
     private void loadLocations(final LoadProgressListener progressListener)
@@ -297,7 +438,9 @@ public class GeodataServiceImpl implements GeodataService
         logger.info("Loading locations");
         progressListener.begin("load_locations");
         final int locationCount = locationDao.load();
+        registerMemory(locationDao);
         logger.info("Loaded {} locations", locationCount);
+        progressListener.end();
     }
 
     private void loadCountries(final LoadProgressListener progressListener)
@@ -320,44 +463,218 @@ public class GeodataServiceImpl implements GeodataService
                 .stream()
                 .map(l -> new Continent(getContinentCode(l.getId()), l))
                 .collect(Collectors.toList());
+        memoryAccounting.registerHeap("reference_data", () -> (featureCodes.size() + timezones.size() + countries.size() + continents.size()) * REFERENCE_ENTRY_HEAP_BYTES);
+        progressListener.end();
     }
 
     private void loadHierarchy(final LoadProgressListener progressListener)
     {
         progressListener.begin("load_hierarchy_data");
-        final Map<Integer, Integer> childToParent = hierarchyDao.load();
-        logger.info("Loaded {} hierarchy references", childToParent.size());
+        this.hierarchy = hierarchyDao.loadIndex();
+        this.hierarchyOrdinals = isAlignedWithLocations(hierarchy);
+        logger.info("Loaded hierarchy of {} locations, {}", hierarchy.size(), hierarchyOrdinals ? "using location ordinals" : "using its own ordinals");
+        if (hierarchy.isMapped())
+        {
+            memoryAccounting.registerMapped("hierarchy", hierarchy::getByteSize);
+        }
+        else
+        {
+            memoryAccounting.registerHeap("hierarchy", hierarchy::getByteSize);
+        }
+
+        this.childLists = buildChildLists();
+        final BitSet flags = new BitSet();
+        for (int ordinal = 0; ordinal < hierarchy.size(); ordinal++)
+        {
+            if (childLists.count(ordinal) > 0)
+            {
+                flags.set(hierarchy.getId(ordinal));
+            }
+        }
+        this.realChildren = flags;
+        logger.info("Found {} locations with children on the next administrative level", childLists.size());
+        memoryAccounting.registerHeap("child_lists", childLists::getHeapSize);
+        memoryAccounting.registerHeap("real_children_flags", () -> realChildren.size() / 8);
+
+        this.ancestorPaths = AncestorPaths.build(hierarchy, this::getSummary);
+        logger.info("Materialized {} distinct ancestor paths", ancestorPaths.size());
+        memoryAccounting.registerHeap("ancestor_paths", ancestorPaths::getHeapSize);
+
+        this.hierarchyIntervals = HierarchyIntervals.build(hierarchy);
+        logger.info("Labelled {} locations with children with their descendant intervals", hierarchyIntervals.size());
+        memoryAccounting.registerHeap("hierarchy_intervals", hierarchyIntervals::getHeapSize);
         progressListener.end();
+    }
 
-        progressListener.begin("join_admin_levels");
-        joinHierarchyNodes(childToParent, progressListener::progress);
+    private void loadBoundaries(final LoadProgressListener progressListener)
+    {
+        progressListener.begin("boundaries", 1);
+        final BitSet flags = new BitSet();
+        boundaryDao.load();
+        boundaryDao.getIds().forEach(flags::set);
+        this.boundaries = flags;
+        logger.info("Found boundaries for {} locations", flags.cardinality());
+        memoryAccounting.registerHeap("boundary_flags", () -> boundaries.size() / 8);
         progressListener.end();
     }
 
+    /**
+     * Collect the children of each location that are on its next administrative level, see {@link #getSubLevel(String)}
+     */
+    private ChildLists buildChildLists()
+    {
+        final IntArrayList parents = new IntArrayList();
+        final IntArrayList childIds = new IntArrayList();
+        final List<String> names = new ArrayList<>();
+        final LongArrayList populations = new LongArrayList();
+        for (int ordinal = 0; ordinal < hierarchy.size(); ordinal++)
+        {
+            final int parentOrdinal = hierarchy.getParentOrdinal(ordinal);
+            if (parentOrdinal == Hierarchy.NO_PARENT)
+            {
+                continue;
+            }
+
+            // Only administrative and country levels are ever a sub-level, so most children are rejected here
+            final String featureKey = getFeatureKey(ordinal);
+            if (featureKey == null || !(GeoConstants.ADMINISTRATIVE_LEVEL_FEATURES.contains(featureKey) || GeoConstants.COUNTRY_LEVEL_FEATURES.contains(featureKey)))
+            {
+                continue;
+            }
+
+            final String parentFeatureKey = getFeatureKey(parentOrdinal);
+            if (parentFeatureKey != null && getSubLevel(parentFeatureKey).map(s -> s.contains(featureKey)).orElse(false))
+            {
+                final RawLocationView child = locationDao.getViewAt(getLocationOrdinal(ordinal));
+                parents.add(parentOrdinal);
+                childIds.add(child.getId());
+                names.add(child.getName());
+                populations.add(child.getPopulation());
+            }
+        }
+        return ChildLists.build(parents.toIntArray(), childIds.toIntArray(), names.toArray(new String[0]), populations.toLongArray());
+    }
+
+    /**
+     * Collect the ADM1 children of the location at the hierarchy ordinal
+     */
+    private ChildLists buildAdm1List(final int ordinal)
+    {
+        final IntArrayList parents = new IntArrayList();
+        final IntArrayList childIds = new IntArrayList();
+        final List<String> names = new ArrayList<>();
+        final LongArrayList populations = new LongArrayList();
+        for (final int childOrdinal : hierarchy.getChildOrdinals(ordinal))
+        {
+            if (GeoConstants.ADM1.equals(getFeatureKey(childOrdinal)))
+            {
+                final RawLocationView child = locationDao.getViewAt(getLocationOrdinal(childOrdinal));
+                parents.add(ordinal);
+                childIds.add(child.getId());
+                names.add(child.getName());
+                populations.add(child.getPopulation());
+            }
+        }
+        return ChildLists.build(parents.toIntArray(), childIds.toIntArray(), names.toArray(new String[0]), populations.toLongArray());
+    }
+
+    /**
+     * @return The feature key of the location at the hierarchy ordinal, or null if it has none or is not a known location
+     */
+    private String getFeatureKey(final int hierarchyOrdinal)
+    {
+        final int ordinal = getLocationOrdinal(hierarchyOrdinal);
+        if (ordinal < 0)
+        {
+            return null;
+        }
+        final MapFeature mapFeature = featureCodes.get(locationDao.getViewAt(ordinal).getMapFeatureId());
+        return mapFeature != null ? mapFeature.getKey() : null;
+    }
+
+    private GeoLocationSummary getSummary(final int hierarchyOrdinal)
+    {
+        final int ordinal = getLocationOrdinal(hierarchyOrdinal);
+        if (ordinal < 0)
+        {
+            return new GeoLocationSummary(hierarchy.getId(hierarchyOrdinal), null, null, null);
+        }
+        final RawLocationView view = locationDao.getViewAt(ordinal);
+        final MapFeature mapFeature = featureCodes.get(view.getMapFeatureId());
+        return new GeoLocationSummary(view.getId(), view.getName(), mapFeature != null ? mapFeature.getFeatureClass() : null, mapFeature != null ? mapFeature.getFeatureCode() : null);
+    }
+
+    private int getLocationOrdinal(final int hierarchyOrdinal)
+    {
+        return hierarchyOrdinals ? hierarchyOrdinal : locationDao.ordinalOf(hierarchy.getId(hierarchyOrdinal));
+    }
+
+    private void registerMemory(final Object dao)
+    {
+        if (dao instanceof MemoryAccountable)
+        {
+            ((MemoryAccountable) dao).registerMemory(memoryAccounting);
+        }
+    }
+
+    private boolean isAlignedWithLocations(final Hierarchy hierarchy)
+    {
+        if (!hierarchy.isLocationOrdinals() || hierarchy.size() != locationDao.size())
+        {
+            return false;
+        }
+        for (int ordinal = 0; ordinal < hierarchy.size(); ordinal++)
+        {
+            if (hierarchy.getId(ordinal) != locationDao.idOf(ordinal))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
     private void loadSearchIndex(final LoadProgressListener progressListener)
     {
         logger.info("Loading search index");
-        int count = 0;
-        progressListener.begin("load_search_index");
-        final Iterator<RawLocation> locationIter = locationDao.stream().iterator();
-        while (locationIter.hasNext())
+        progressListener.begin("load_search_index", locationDao.size());
+        final NameIndex index = nameIndexDao != null ? nameIndexDao.load().orElse(null) : null;
+        if (index != null)
+        {
+            // The index holds all names, while the closest match must be chosen among the searchable ones only
+            this.searchableTerms = index.findTerms(this::isSearchIndexed);
+            this.nameIndex = index;
+            progressListener.end();
+            logger.info("Using name index with {} entries, {} of them searchable", index.getTermCount(), searchableTerms.cardinality());
+            memoryAccounting.registerMapped("name_index", index::getByteSize);
+            memoryAccounting.registerHeap("name_index_searchable_terms", () -> searchableTerms.size() / 8);
+            return;
+        }
+
+        // Only the name of the indexed locations is read
+        final int count = locationDao.size();
+        for (int ordinal = 0; ordinal < count; ordinal++)
         {
-            final RawLocation location = locationIter.next();
-            addToSearchIndex(location);
-            progressListener.progress(count);
+            addToSearchIndex(locationDao.getViewAt(ordinal));
+            if ((ordinal + 1) % 10_000 == 0)
+            {
+                progressListener.progress(ordinal + 1);
+            }
         }
+        progressListener.progress(count);
 
         progressListener.end();
-        logger.info("Search index loaded with {} entries", locationsByName.size());
+        searchIndexEntries = locationsByName.size();
+        logger.info("Search index loaded with {} entries", searchIndexEntries);
+        memoryAccounting.registerHeap("search_radix_tree", () -> searchIndexEntries * SEARCH_ENTRY_HEAP_BYTES);
     }
 
-    private void addToSearchIndex(final RawLocation e)
+    private void addToSearchIndex(final RawLocationView e)
     {
         final MapFeature featureType = featureCodes.get(e.getMapFeatureId());
         if (isSearchIndexed(featureType.getKey()))
         {
             final int id = e.getId();
-            final String normalizedName = ASCIIUtils.foldToASCII(e.getName().toLowerCase());
+            final String normalizedName = NameIndex.normalize(e.getName());
             final int[] existing = locationsByName.putIfAbsent(normalizedName, new int[]{id});
             if (existing != null)
             {
@@ -373,18 +690,34 @@ public class GeodataServiceImpl implements GeodataService
         return GeoConstants.ADMINISTRATIVE_OR_ABOVE.contains(key) || additionalIndexedFeatures.contains(key);
     }
 
+    private boolean isSearchIndexed(final int mapFeatureId)
+    {
+        final MapFeature featureType = featureCodes.get(mapFeatureId);
+        return featureType != null && isSearchIndexed(featureType.getKey());
+    }
+
     @Override
     public List<GeoLocation> findPath(final int id)
     {
-        final Collection<Integer> ids = getPath(id);
-        final List<GeoLocation> path = new ArrayList<>(ids.size());
-        for (int i : ids)
+        final List<GeoLocationSummary> summaries = findPathSummaries(id);
+        final List<GeoLocation> path = new ArrayList<>(summaries.size());
+        for (final GeoLocationSummary summary : summaries)
         {
-            path.add(findById(i));
+            path.add(findById(summary.getId()));
         }
         return path;
     }
 
+    @Override
+    public List<GeoLocationSummary> findPathSummaries(final int id)
+    {
+        if (!hierarchy.contains(id))
+        {
+            throw new EmptyResultDataAccessException("No location with id " + id, 1);
+        }
+        return ancestorPaths.getPath(hierarchy.ordinal(id));
+    }
+
     @Override
     public Page<Continent> findContinents()
     {
@@ -417,7 +750,7 @@ public class GeodataServiceImpl implements GeodataService
     @Override
     public Page<Country> findCountries(Pageable pageable)
     {
-        final List<Country> content = countries.values().stream().filter(c -> nodes.containsKey(c.getId())).skip(pageable.getOffset()).limit(pageable.getPageSize()).collect(Collectors.toList());
+        final List<Country> content = countries.values().stream().filter(c -> hierarchy.contains(c.getId())).skip(pageable.getOffset()).limit(pageable.getPageSize()).collect(Collectors.toList());
         return new PageImpl<>(content, pageable, countries.size());
     }
 
@@ -438,29 +771,14 @@ public class GeodataServiceImpl implements GeodataService
                 .map(Country::getId)
                 .orElseThrow(() -> new EmptyResultDataAccessException("No country code " + countryCode, 1));
 
-        final List<Integer> childIds = Optional.ofNullable(nodes.get(id).getChildren()).orElse(Collections.emptyList());
-
-        final List<GeoLocation> content = childIds.stream()
-                .map(this::findById)
-                .filter(l -> "ADM1".equals(l.getFeatureCode()))
-                .skip(pageable.getOffset())
-                .limit(pageable.getPageSize())
-                .sorted(Comparator.comparing(GeoLocation::getName))
-                .collect(Collectors.toList());
-        return new PageImpl<>(content, pageable, childIds.size());
-    }
-
-    private void joinHierarchyNodes(final Map<Integer, Integer> childToParent, StepProgressListener listener)
-    {
-        nodes = new Int2ObjectOpenHashMap<>(childToParent.size());
-        childToParent.forEach((child, parent) ->
+        // Territories and other countries outside the country level have no child list, but still list their ADM1 children
+        final int ordinal = hierarchy.ordinal(id);
+        final String featureKey = ordinal >= 0 ? getFeatureKey(ordinal) : null;
+        if (featureKey == null || GeoConstants.COUNTRY_LEVEL_FEATURES.contains(featureKey))
         {
-            final Node childNode = nodes.computeIfAbsent(child, Node::new);
-            final Node parentNode = nodes.computeIfAbsent(parent, Node::new);
-            parentNode.addChild(child);
-            childNode.setParent(parent);
-            listener.progress(nodes.size(), childToParent.size());
-        });
+            return findChildPage(id, pageable);
+        }
+        return findPage(buildAdm1List(ordinal), ordinal, pageable);
     }
 
     @Override
@@ -492,9 +810,15 @@ public class GeodataServiceImpl implements GeodataService
             throw new EmptyResultDataAccessException("No such location found " + location, 1);
         }
 
+        if (locations.contains(location))
+        {
+            return true;
+        }
+
+        final int ordinal = getHierarchyOrdinal(location);
         for (int l : locations)
         {
-            if (l == location || isLocationInside(location, l))
+            if (hierarchyIntervals.isInside(ordinal, hierarchy.ordinal(l)))
             {
                 return true;
             }
@@ -511,9 +835,10 @@ public class GeodataServiceImpl implements GeodataService
             throw new EmptyResultDataAccessException("No such location found " + location, 1);
         }
 
+        final int ordinal = hierarchy.ordinal(loc.getId());
         for (int l : locations)
         {
-            if (isLocationInside(l, loc.getId()))
+            if (hierarchyIntervals.isInside(getHierarchyOrdinal(l), ordinal))
             {
                 return true;
             }
@@ -524,37 +849,19 @@ public class GeodataServiceImpl implements GeodataService
     @Override
     public boolean isLocationInside(final int locationId, final int suspectedParentId)
     {
-        final Collection<Integer> path = getPath(locationId);
-        return path.contains(suspectedParentId);
+        return hierarchyIntervals.isInside(getHierarchyOrdinal(locationId), hierarchy.ordinal(suspectedParentId));
     }
 
-    private Collection<Integer> getPath(final int id)
+    /**
+     * @return The ordinal of a location that is part of the hierarchy
+     */
+    private int getHierarchyOrdinal(final int id)
     {
-        Node node = this.nodes.get(id);
-        if (node == null)
+        if (!hierarchy.contains(id))
         {
             throw new EmptyResultDataAccessException("No location with id " + id, 1);
         }
-        final Deque<Integer> path = new LinkedBlockingDeque<>();
-        while (node != null)
-        {
-            if (!path.add(node.getId()))
-            {
-                logger.warn("Circular reference for {}: {}", node.getId(), path);
-                node = null;
-            }
-            else
-            {
-                final Integer parent = node.getParent();
-                node = parent != null ? nodes.get(parent) : null;
-            }
-        }
-        path.removeFirst();
-        if (!path.isEmpty())
-        {
-            path.removeLast();
-        }
-        return path;
+        return hierarchy.ordinal(id);
     }
 
     @Override
@@ -628,7 +935,20 @@ public class GeodataServiceImpl implements GeodataService
     private List<Integer> getIds(final String name, final long max)
     {
         final List<Integer> ids = new LinkedList<>();
-        for (int[] arr : locationsByName.getValuesForClosestKeys(ASCIIUtils.foldToASCII(name.toLowerCase())))
+        if (nameIndex != null)
+        {
+            nameIndex.findClosest(name, searchableTerms, (id, mapFeatureId) ->
+            {
+                if (isSearchIndexed(mapFeatureId))
+                {
+                    ids.add(id);
+                }
+                return ids.size() < max;
+            });
+            return ids;
+        }
+
+        for (int[] arr : locationsByName.getValuesForClosestKeys(NameIndex.normalize(name)))
         {
             for (int id : arr)
             {
@@ -642,14 +962,13 @@ public class GeodataServiceImpl implements GeodataService
         return ids;
     }
 
-    private GeoLocation populate(RawLocation l)
+    private GeoLocation populate(final RawLocationView l, final int ordinal)
     {
         final Country country = findCountryByCode(l.getCountryCode());
         final CountrySummary countrySummary = country != null ? country.toSummary(l.getCountryCode()) : null;
 
         final int id = l.getId();
-        final Node node = nodes.get(id);
-        final Integer parentId = Optional.ofNullable(node).map(Node::getParent).orElse(null);
+        final Integer parentId = getParentId(id, ordinal);
 
         final int featureCodeId = l.getMapFeatureId();
         final MapFeature mapFeature = featureCodeId != 0 ? featureCodes.get(featureCodeId) : null;
@@ -675,4 +994,15 @@ public class GeodataServiceImpl implements GeodataService
 
         return result;
     }
+
+    private Integer getParentId(final int id, final int ordinal)
+    {
+        if (hierarchyOrdinals)
+        {
+            final int parent = hierarchy.getParentOrdinal(ordinal);
+            return parent != Hierarchy.NO_PARENT ? hierarchy.getId(parent) : null;
+        }
+        final int parent = hierarchy.getParentId(id);
+        return parent != Hierarchy.NO_PARENT ? parent : null;
+    }
 }
\ No newline at end of file
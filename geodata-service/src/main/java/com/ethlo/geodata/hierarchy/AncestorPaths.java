@@ -0,0 +1,136 @@
+package com.ethlo.geodata.hierarchy;
+
+/*-
+ * #%L
+ * Geodata service
+ * %%
+ * Copyright (C) 2017 - 2020 Morten Haraldsen (ethlo)
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.IntFunction;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.ethlo.geodata.dao.Hierarchy;
+import com.ethlo.geodata.model.GeoLocationSummary;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+
+/**
+ * The ancestor path of every location in the hierarchy, computed once. All children of a location share the same path
+ * array, which holds the parent itself followed by its ancestors, up to but not including the top of the hierarchy.
+ * The summaries in the arrays are created once per ancestor and shared by all paths that pass through it.
+ */
+public class AncestorPaths
+{
+    private static final Logger logger = LoggerFactory.getLogger(AncestorPaths.class);
+    private static final GeoLocationSummary[] EMPTY = new GeoLocationSummary[0];
+
+    private final Hierarchy hierarchy;
+    private final Int2ObjectOpenHashMap<GeoLocationSummary[]> pathsByParent;
+    private final long elements;
+
+    private AncestorPaths(final Hierarchy hierarchy, final Int2ObjectOpenHashMap<GeoLocationSummary[]> pathsByParent, final long elements)
+    {
+        this.hierarchy = hierarchy;
+        this.pathsByParent = pathsByParent;
+        this.elements = elements;
+    }
+
+    /**
+     * @param summaryOf The summary of the location at a hierarchy ordinal
+     */
+    public static AncestorPaths build(final Hierarchy hierarchy, final IntFunction<GeoLocationSummary> summaryOf)
+    {
+        final Int2ObjectOpenHashMap<GeoLocationSummary[]> paths = new Int2ObjectOpenHashMap<>();
+        final IntArrayList chain = new IntArrayList();
+        long elements = 0;
+        for (int ordinal = 0; ordinal < hierarchy.size(); ordinal++)
+        {
+            final int parent = hierarchy.getParentOrdinal(ordinal);
+            if (parent == Hierarchy.NO_PARENT || paths.containsKey(parent))
+            {
+                continue;
+            }
+
+            // Walk up to the first location with a known path, or to the top
+            chain.clear();
+            int current = parent;
+            while (!paths.containsKey(current) && hierarchy.getParentOrdinal(current) != Hierarchy.NO_PARENT)
+            {
+                if (chain.size() > hierarchy.size())
+                {
+                    logger.warn("Circular reference in the hierarchy above {}", hierarchy.getId(ordinal));
+                    break;
+                }
+                chain.add(current);
+                current = hierarchy.getParentOrdinal(current);
+            }
+
+            // The top of the hierarchy is not part of any path
+            GeoLocationSummary[] path = paths.computeIfAbsent(current, k -> EMPTY);
+            for (int i = chain.size() - 1; i >= 0; i--)
+            {
+                final GeoLocationSummary[] extended = new GeoLocationSummary[path.length + 1];
+                extended[0] = summaryOf.apply(chain.getInt(i));
+                System.arraycopy(path, 0, extended, 1, path.length);
+                paths.put(chain.getInt(i), extended);
+                elements += extended.length;
+                path = extended;
+            }
+        }
+        paths.trim();
+        return new AncestorPaths(hierarchy, paths, elements);
+    }
+
+    /**
+     * @return The ancestors of the location with the hierarchy ordinal, nearest first, excluding the top of the hierarchy
+     */
+    public List<GeoLocationSummary> getPath(final int ordinal)
+    {
+        final int parent = hierarchy.getParentOrdinal(ordinal);
+        if (parent == Hierarchy.NO_PARENT)
+        {
+            return Collections.emptyList();
+        }
+        final GeoLocationSummary[] path = pathsByParent.get(parent);
+        return path != null ? Collections.unmodifiableList(Arrays.asList(path)) : Collections.emptyList();
+    }
+
+    /**
+     * @return The number of distinct paths, which is the number of locations with children
+     */
+    public int size()
+    {
+        return pathsByParent.size();
+    }
+
+    /**
+     * Rough heap size: a map entry and an array per path, a reference per path element, and a summary with its name
+     * per location with children
+     */
+    public long getHeapSize()
+    {
+        final long perPath = 8 + 4 + 16 + 64;
+        return pathsByParent.size() * perPath + elements * 4;
+    }
+}
@@ -0,0 +1,157 @@
+package com.ethlo.geodata.hierarchy;
+
+/*-
+ * #%L
+ * Geodata service
+ * %%
+ * Copyright (C) 2017 - 2020 Morten Haraldsen (ethlo)
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+
+/**
+ * The children of each location that are on its next administrative level, in name order and in population order,
+ * so that a page of children is a slice of an array. The lists of all parents are stored back to back in primitive
+ * arrays, with an offset per parent.
+ */
+public class ChildLists
+{
+    private static final Comparator<String> NAME_ORDER = Comparator.nullsLast(Comparator.naturalOrder());
+
+    public enum Order
+    {
+        NAME, POPULATION
+    }
+
+    private final Int2IntOpenHashMap indexByParent;
+    private final int[] offsets;
+    private final int[] byName;
+    private final int[] byPopulation;
+
+    private ChildLists(final Int2IntOpenHashMap indexByParent, final int[] offsets, final int[] byName, final int[] byPopulation)
+    {
+        this.indexByParent = indexByParent;
+        this.offsets = offsets;
+        this.byName = byName;
+        this.byPopulation = byPopulation;
+    }
+
+    /**
+     * Build the lists from parallel arrays with one entry per child
+     *
+     * @param parents     The hierarchy ordinal of the parent
+     * @param childIds    The location id of the child
+     * @param names       The name of the child
+     * @param populations The population of the child
+     */
+    public static ChildLists build(final int[] parents, final int[] childIds, final String[] names, final long[] populations)
+    {
+        final int[] nameOrder = sequence(childIds.length);
+        IntArrays.quickSort(nameOrder, (a, b) ->
+        {
+            final int result = Integer.compare(parents[a], parents[b]);
+            return result != 0 ? result : NAME_ORDER.compare(names[a], names[b]);
+        });
+
+        final int[] populationOrder = sequence(childIds.length);
+        IntArrays.quickSort(populationOrder, (a, b) ->
+        {
+            int result = Integer.compare(parents[a], parents[b]);
+            result = result != 0 ? result : Long.compare(populations[b], populations[a]);
+            return result != 0 ? result : NAME_ORDER.compare(names[a], names[b]);
+        });
+
+        // Both orders group the children by parent in the same parent order, so they share the offsets
+        final Int2IntOpenHashMap indexByParent = new Int2IntOpenHashMap();
+        indexByParent.defaultReturnValue(-1);
+        final int[] offsets = new int[countDistinct(parents) + 1];
+        final int[] byName = new int[childIds.length];
+        final int[] byPopulation = new int[childIds.length];
+        int index = -1;
+        for (int i = 0; i < nameOrder.length; i++)
+        {
+            final int parent = parents[nameOrder[i]];
+            if (index < 0 || parents[nameOrder[i - 1]] != parent)
+            {
+                index++;
+                indexByParent.put(parent, index);
+                offsets[index] = i;
+            }
+            byName[i] = childIds[nameOrder[i]];
+            byPopulation[i] = childIds[populationOrder[i]];
+        }
+        offsets[offsets.length - 1] = childIds.length;
+        indexByParent.trim();
+        return new ChildLists(indexByParent, offsets, byName, byPopulation);
+    }
+
+    private static int[] sequence(final int length)
+    {
+        final int[] result = new int[length];
+        Arrays.setAll(result, i -> i);
+        return result;
+    }
+
+    private static int countDistinct(final int[] values)
+    {
+        return (int) Arrays.stream(values).distinct().count();
+    }
+
+    /**
+     * @return The number of children of the parent with the hierarchy ordinal
+     */
+    public int count(final int parentOrdinal)
+    {
+        final int index = indexByParent.get(parentOrdinal);
+        return index >= 0 ? offsets[index + 1] - offsets[index] : 0;
+    }
+
+    /**
+     * @return The ids of the children in the page, which is empty beyond the last child
+     */
+    public int[] getPage(final int parentOrdinal, final Order order, final long offset, final int size)
+    {
+        final int index = indexByParent.get(parentOrdinal);
+        if (index < 0)
+        {
+            return new int[0];
+        }
+
+        final int end = offsets[index + 1];
+        final int from = (int) Math.min(end, offsets[index] + offset);
+        final int to = (int) Math.min(end, (long) from + size);
+        return Arrays.copyOfRange(order == Order.POPULATION ? byPopulation : byName, from, to);
+    }
+
+    /**
+     * @return The number of parents with children
+     */
+    public int size()
+    {
+        return offsets.length - 1;
+    }
+
+    public long getHeapSize()
+    {
+        return (long) indexByParent.size() * 2 * 4 * 4 / 3 + 4L * offsets.length + 8L * byName.length;
+    }
+}
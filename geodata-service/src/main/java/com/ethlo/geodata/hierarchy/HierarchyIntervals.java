@@ -0,0 +1,132 @@
+package com.ethlo.geodata.hierarchy;
+
+/*-
+ * #%L
+ * Geodata service
+ * %%
+ * Copyright (C) 2017 - 2020 Morten Haraldsen (ethlo)
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import com.ethlo.geodata.dao.Hierarchy;
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+
+/**
+ * Euler tour labelling of the hierarchy, for constant time ancestor checks. The locations with children are numbered
+ * in depth-first pre-order, and each is labelled with the interval of numbers of the locations with children below
+ * it. A location is then below another if its parent's number is within the other's interval. Locations without
+ * children only need their parent, so they are not numbered, which keeps the labels small.
+ */
+public class HierarchyIntervals
+{
+    private final Hierarchy hierarchy;
+    private final Int2IntOpenHashMap entryByOrdinal;
+    private final int[] exit;
+
+    private HierarchyIntervals(final Hierarchy hierarchy, final Int2IntOpenHashMap entryByOrdinal, final int[] exit)
+    {
+        this.hierarchy = hierarchy;
+        this.entryByOrdinal = entryByOrdinal;
+        this.exit = exit;
+    }
+
+    public static HierarchyIntervals build(final Hierarchy hierarchy)
+    {
+        final Int2IntOpenHashMap entryByOrdinal = new Int2IntOpenHashMap();
+        entryByOrdinal.defaultReturnValue(-1);
+        final IntArrayList exit = new IntArrayList();
+
+        // Pairs of ordinal and next child index, to walk the tree without recursion
+        final IntArrayList stack = new IntArrayList();
+        for (int root = 0; root < hierarchy.size(); root++)
+        {
+            if (hierarchy.getParentOrdinal(root) != Hierarchy.NO_PARENT || hierarchy.getChildCount(root) == 0)
+            {
+                continue;
+            }
+
+            enter(root, entryByOrdinal, exit, stack);
+            while (!stack.isEmpty())
+            {
+                final int top = stack.size() - 2;
+                final int ordinal = stack.getInt(top);
+                final int childIndex = stack.getInt(top + 1);
+                if (childIndex < hierarchy.getChildCount(ordinal))
+                {
+                    stack.set(top + 1, childIndex + 1);
+                    final int child = hierarchy.getChildOrdinal(ordinal, childIndex);
+                    if (hierarchy.getChildCount(child) > 0 && !entryByOrdinal.containsKey(child))
+                    {
+                        enter(child, entryByOrdinal, exit, stack);
+                    }
+                }
+                else
+                {
+                    exit.set(entryByOrdinal.get(ordinal), exit.size() - 1);
+                    stack.size(top);
+                }
+            }
+        }
+        entryByOrdinal.trim();
+        return new HierarchyIntervals(hierarchy, entryByOrdinal, exit.toIntArray());
+    }
+
+    private static void enter(final int ordinal, final Int2IntOpenHashMap entryByOrdinal, final IntArrayList exit, final IntArrayList stack)
+    {
+        entryByOrdinal.put(ordinal, exit.size());
+        exit.add(exit.size());
+        stack.add(ordinal);
+        stack.add(0);
+    }
+
+    /**
+     * @return Whether the location with the ordinal is below the suspected ancestor. The top of the hierarchy does not
+     * count as an ancestor, in line with the ancestor paths.
+     */
+    public boolean isInside(final int ordinal, final int ancestorOrdinal)
+    {
+        if (ordinal < 0 || ancestorOrdinal < 0 || hierarchy.getParentOrdinal(ancestorOrdinal) == Hierarchy.NO_PARENT)
+        {
+            return false;
+        }
+
+        final int parent = hierarchy.getParentOrdinal(ordinal);
+        if (parent == Hierarchy.NO_PARENT)
+        {
+            return false;
+        }
+
+        final int ancestorEntry = entryByOrdinal.get(ancestorOrdinal);
+        final int parentEntry = entryByOrdinal.get(parent);
+        return ancestorEntry >= 0 && parentEntry >= ancestorEntry && parentEntry <= exit[ancestorEntry];
+    }
+
+    /**
+     * @return The number of labelled locations, which is the number of locations with children reachable from the top
+     */
+    public int size()
+    {
+        return exit.length;
+    }
+
+    public long getHeapSize()
+    {
+        // Open addressing map of two int arrays at the default load factor, and the exit numbers
+        return (long) entryByOrdinal.size() * 2 * 4 * 4 / 3 + 16 + 4L * exit.length;
+    }
+}
@@ -0,0 +1,79 @@
+package com.ethlo.geodata.progress;
+
+/*-
+ * #%L
+ * Geodata service
+ * %%
+ * Copyright (C) 2017 - 2020 Morten Haraldsen (ethlo)
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * A group of endpoints that can be served once the load stages it depends on have completed
+ */
+public enum Capability
+{
+    LOCATIONS(Stages.FEATURE_CODES, Stages.TIME_ZONES, Stages.LOCATIONS, Stages.COUNTRIES, Stages.HIERARCHY, Stages.BOUNDARIES),
+    NAME_SEARCH(LOCATIONS, Stages.SEARCH_INDEX),
+    GEOMETRY(LOCATIONS, Stages.GEOMETRY),
+    CONTINENTS(LOCATIONS, Stages.CONTINENTS);
+
+    private final Set<String> stages;
+
+    Capability(final String... stages)
+    {
+        this.stages = Collections.unmodifiableSet(new LinkedHashSet<>(Arrays.asList(stages)));
+    }
+
+    Capability(final Capability base, final String... stages)
+    {
+        final Set<String> all = new LinkedHashSet<>(base.stages);
+        all.addAll(Arrays.asList(stages));
+        this.stages = Collections.unmodifiableSet(all);
+    }
+
+    public Set<String> getStages()
+    {
+        return stages;
+    }
+
+    /**
+     * The names of the load stages of the service
+     */
+    public static final class Stages
+    {
+        public static final String FEATURE_CODES = "FeatureCodes";
+        public static final String TIME_ZONES = "TimeZones";
+        public static final String LOCATIONS = "Locations";
+        public static final String COUNTRIES = "Countries";
+        public static final String HIERARCHY = "Hierarchy";
+        public static final String BOUNDARIES = "Boundaries";
+        public static final String GEOMETRY = "Geometry";
+        public static final String SEARCH_INDEX = "SearchIndex";
+        public static final String CONTINENTS = "Continents";
+        public static final String WARMUP = "Warmup";
+
+        private Stages()
+        {
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package com.ethlo.geodata.progress;
+
+/*-
+ * #%L
+ * Geodata service
+ * %%
+ * Copyright (C) 2017 - 2020 Morten Haraldsen (ethlo)
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A small graph of named load stages with explicit dependencies. In parallel mode each stage runs on a bounded
+ * {@link ForkJoinPool} as soon as all of its dependencies have completed. In serial mode the stages run one after
+ * another in the order they were added, which is always a valid order as dependencies must be added first.
+ */
+public class LoadTaskGraph
+{
+    private static final Logger logger = LoggerFactory.getLogger(LoadTaskGraph.class);
+    private static final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+
+    private final boolean parallel;
+    private final Map<String, Stage> stages = new LinkedHashMap<>();
+    private final List<StageTiming> timings = Collections.synchronizedList(new ArrayList<>());
+    private StageListener listener = StageListener.NONE;
+
+    public LoadTaskGraph(final boolean parallel)
+    {
+        this.parallel = parallel;
+    }
+
+    /**
+     * Be notified as each stage completes or fails, on the thread that ran it
+     */
+    public LoadTaskGraph listener(final StageListener listener)
+    {
+        this.listener = listener;
+        return this;
+    }
+
+    public LoadTaskGraph add(final String name, final Runnable task, final String... dependencies)
+    {
+        if (stages.containsKey(name))
+        {
+            throw new IllegalArgumentException("Duplicate stage: " + name);
+        }
+
+        for (final String dependency : dependencies)
+        {
+            if (!stages.containsKey(dependency))
+            {
+                throw new IllegalArgumentException("Stage " + name + " depends on " + dependency + ", which must be added before it");
+            }
+        }
+        stages.put(name, new Stage(name, task, dependencies));
+        return this;
+    }
+
+    /**
+     * Run all stages and wait for them to complete. If a stage fails, the stages depending on it are not run and the
+     * first failure is rethrown.
+     *
+     * @return The timing of each stage, in the order they completed
+     */
+    public List<StageTiming> run()
+    {
+        final long started = System.nanoTime();
+        if (parallel)
+        {
+            runParallel();
+        }
+        else
+        {
+            stages.values().forEach(this::runStage);
+        }
+
+        final Duration elapsed = Duration.ofNanos(System.nanoTime() - started);
+        logger.info("Completed {} load stages in {} ms ({})", stages.size(), elapsed.toMillis(), parallel ? "parallel" : "serial");
+        return new ArrayList<>(timings);
+    }
+
+    private void runParallel()
+    {
+        final int parallelism = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), stages.size()));
+        final ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try
+        {
+            final Map<String, CompletableFuture<Void>> futures = new LinkedHashMap<>();
+            for (final Stage stage : stages.values())
+            {
+                final CompletableFuture<?>[] dependencies = new CompletableFuture<?>[stage.dependencies.length];
+                for (int i = 0; i < dependencies.length; i++)
+                {
+                    dependencies[i] = futures.get(stage.dependencies[i]);
+                }
+                futures.put(stage.name, CompletableFuture.allOf(dependencies).thenRunAsync(() -> runStage(stage), pool));
+            }
+            CompletableFuture.allOf(futures.values().toArray(new CompletableFuture<?>[0])).join();
+        }
+        catch (CompletionException exc)
+        {
+            if (exc.getCause() instanceof RuntimeException)
+            {
+                throw (RuntimeException) exc.getCause();
+            }
+            throw exc;
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+    }
+
+    private void runStage(final Stage stage)
+    {
+        final long cpuStart = threadMXBean.getCurrentThreadCpuTime();
+        final long wallStart = System.nanoTime();
+        try
+        {
+            stage.task.run();
+        }
+        catch (RuntimeException exc)
+        {
+            listener.failed(stage.name, exc);
+            throw exc;
+        }
+        final Duration wall = Duration.ofNanos(System.nanoTime() - wallStart);
+        final Duration cpu = Duration.ofNanos(threadMXBean.getCurrentThreadCpuTime() - cpuStart);
+        timings.add(new StageTiming(stage.name, wall, cpu));
+        logger.info("Load stage {} completed in {} ms, CPU time {} ms", stage.name, wall.toMillis(), cpu.toMillis());
+        listener.completed(stage.name);
+    }
+
+    public interface StageListener
+    {
+        StageListener NONE = new StageListener()
+        {
+            @Override
+            public void completed(final String stage)
+            {
+            }
+
+            @Override
+            public void failed(final String stage, final Throwable cause)
+            {
+            }
+        };
+
+        void completed(String stage);
+
+        void failed(String stage, Throwable cause);
+    }
+
+    private static class Stage
+    {
+        private final String name;
+        private final Runnable task;
+        private final String[] dependencies;
+
+        private Stage(final String name, final Runnable task, final String[] dependencies)
+        {
+            this.name = name;
+            this.task = task;
+            this.dependencies = dependencies;
+        }
+    }
+
+    /**
+     * Wall and CPU time of a stage. The CPU time is that of the thread running the stage, so work it hands off to other
+     * threads, like parallel streams, is not included.
+     */
+    public static class StageTiming
+    {
+        private final String name;
+        private final Duration wall;
+        private final Duration cpu;
+
+        public StageTiming(final String name, final Duration wall, final Duration cpu)
+        {
+            this.name = name;
+            this.wall = wall;
+            this.cpu = cpu;
+        }
+
+        public String getName()
+        {
+            return name;
+        }
+
+        public Duration getWall()
+        {
+            return wall;
+        }
+
+        public Duration getCpu()
+        {
+            return cpu;
+        }
+    }
+}
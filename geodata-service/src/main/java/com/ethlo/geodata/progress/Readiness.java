@@ -0,0 +1,94 @@
+package com.ethlo.geodata.progress;
+
+/*-
+ * #%L
+ * Geodata service
+ * %%
+ * Copyright (C) 2017 - 2020 Morten Haraldsen (ethlo)
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tracks which load stages have completed, so each {@link Capability} can be served as soon as its data is available
+ * instead of when everything is loaded.
+ */
+public class Readiness implements LoadTaskGraph.StageListener
+{
+    public enum State
+    {
+        LOADING, READY, FAILED
+    }
+
+    private final Set<String> completed = ConcurrentHashMap.newKeySet();
+    private final Set<String> failed = ConcurrentHashMap.newKeySet();
+
+    @Override
+    public void completed(final String stage)
+    {
+        completed.add(stage);
+    }
+
+    @Override
+    public void failed(final String stage, final Throwable cause)
+    {
+        failed.add(stage);
+    }
+
+    /**
+     * Start over, for example before loading a new generation of data
+     */
+    public void reset()
+    {
+        completed.clear();
+        failed.clear();
+    }
+
+    public boolean isReady(final Capability capability)
+    {
+        return completed.containsAll(capability.getStages());
+    }
+
+    public boolean isReady(final Collection<Capability> capabilities)
+    {
+        return capabilities.stream().allMatch(this::isReady);
+    }
+
+    public State getState(final Capability capability)
+    {
+        if (isReady(capability))
+        {
+            return State.READY;
+        }
+        return capability.getStages().stream().anyMatch(failed::contains) ? State.FAILED : State.LOADING;
+    }
+
+    public Map<Capability, State> getStates()
+    {
+        final Map<Capability, State> states = new LinkedHashMap<>();
+        for (final Capability capability : Capability.values())
+        {
+            states.put(capability, getState(capability));
+        }
+        return states;
+    }
+}
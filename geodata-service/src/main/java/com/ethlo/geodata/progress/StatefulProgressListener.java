@@ -22,15 +22,20 @@ package com.ethlo.geodata.progress;
  * #L%
  */
 
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
 import com.ethlo.geodata.LoadProgressListener;
 
+/**
+ * Keeps the state of each load step. Steps may run concurrently on different threads, so the current step is tracked
+ * per thread.
+ */
 public class StatefulProgressListener implements LoadProgressListener
 {
-    private final Map<String, Step> steps = new LinkedHashMap<>();
-    private String last;
+    private final Map<String, Step> steps = Collections.synchronizedMap(new LinkedHashMap<>());
+    private final ThreadLocal<String> last = new ThreadLocal<>();
 
     @Override
     public void begin(final String name)
@@ -41,25 +46,25 @@ public class StatefulProgressListener implements LoadProgressListener
     @Override
     public void begin(final String name, final Integer total)
     {
-        if (last != null)
+        if (last.get() != null)
         {
             end();
         }
         steps.put(name, new Step(name, total));
-        last = name;
+        last.set(name);
     }
 
     @Override
     public void progress(final int progress)
     {
-        final Step step = steps.get(last);
+        final Step step = steps.get(last.get());
         step.setProgress(progress);
     }
 
     @Override
     public void progress(final int progress, final Integer total)
     {
-        final Step step = steps.get(last);
+        final Step step = steps.get(last.get());
         step.setProgress(progress);
         if (total != null)
         {
@@ -70,7 +75,8 @@ public class StatefulProgressListener implements LoadProgressListener
     @Override
     public void end()
     {
-        final Step step = steps.get(last);
+        final String name = last.get();
+        final Step step = name != null ? steps.get(name) : null;
         if (step != null)
         {
             if (step.getTotal() != null)
@@ -79,11 +85,14 @@ public class StatefulProgressListener implements LoadProgressListener
             }
             step.end();
         }
-        last = null;
+        last.remove();
     }
 
     public Map<String, Step> getSteps()
     {
-        return steps;
+        synchronized (steps)
+        {
+            return new LinkedHashMap<>(steps);
+        }
     }
 }
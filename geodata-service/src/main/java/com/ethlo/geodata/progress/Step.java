@@ -22,16 +22,31 @@ package com.ethlo.geodata.progress;
  * #L%
  */
 
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
 import java.time.Duration;
 import java.time.OffsetDateTime;
 
+/**
+ * A load step and its resource usage. A step must begin and end on the same thread, as the allocated bytes are those
+ * of that thread. The heap usage is that of the whole JVM, so it includes steps running concurrently.
+ */
 public class Step
 {
+    private static final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+    private static final MemoryMXBean memoryMXBean = ManagementFactory.getMemoryMXBean();
+
     private final String name;
     private final OffsetDateTime started = OffsetDateTime.now();
-    private Integer total;
-    private int progress;
-    private OffsetDateTime ended;
+    private final long threadId = Thread.currentThread().getId();
+    private final long allocatedAtStart = getThreadAllocatedBytes(threadId);
+    private final long heapBefore = memoryMXBean.getHeapMemoryUsage().getUsed();
+    private volatile Integer total;
+    private volatile int progress;
+    private volatile OffsetDateTime ended;
+    private volatile Long allocatedBytes;
+    private volatile Long heapAfter;
 
     public Step(final String name, final Integer total)
     {
@@ -91,8 +106,75 @@ public class Step
         return Duration.between(started, ended != null ? ended : OffsetDateTime.now());
     }
 
+    /**
+     * @return Items processed per second, or null if nothing has been processed yet
+     */
+    public Double getItemsPerSecond()
+    {
+        final long millis = getElapsed().toMillis();
+        final int progress = getProgress();
+        return millis > 0 && progress > 0 ? progress * 1000D / millis : null;
+    }
+
+    /**
+     * @return The estimated time remaining based on the progress so far, or null if it cannot be estimated
+     */
+    public Duration getEta()
+    {
+        final Integer total = getTotal();
+        final int progress = getProgress();
+        if (ended != null)
+        {
+            return Duration.ZERO;
+        }
+        if (total == null || progress <= 0)
+        {
+            return null;
+        }
+        final long elapsedNanos = getElapsed().toNanos();
+        return Duration.ofNanos((long) (elapsedNanos * ((double) Math.max(0, total - progress) / progress)));
+    }
+
+    /**
+     * @return Bytes allocated by the thread running the step so far, or null if not supported by the JVM
+     */
+    public Long getAllocatedBytes()
+    {
+        if (allocatedBytes != null)
+        {
+            return allocatedBytes;
+        }
+        final long current = getThreadAllocatedBytes(threadId);
+        return current >= 0 && allocatedAtStart >= 0 ? current - allocatedAtStart : null;
+    }
+
+    public long getHeapBefore()
+    {
+        return heapBefore;
+    }
+
+    public Long getHeapAfter()
+    {
+        return heapAfter;
+    }
+
     public void end()
     {
+        this.allocatedBytes = getAllocatedBytes();
+        this.heapAfter = memoryMXBean.getHeapMemoryUsage().getUsed();
         this.ended = OffsetDateTime.now();
     }
+
+    private static long getThreadAllocatedBytes(final long threadId)
+    {
+        if (threadMXBean instanceof com.sun.management.ThreadMXBean)
+        {
+            final com.sun.management.ThreadMXBean allocationBean = (com.sun.management.ThreadMXBean) threadMXBean;
+            if (allocationBean.isThreadAllocatedMemorySupported() && allocationBean.isThreadAllocatedMemoryEnabled())
+            {
+                return allocationBean.getThreadAllocatedBytes(threadId);
+            }
+        }
+        return -1;
+    }
 }
@@ -27,6 +27,7 @@ import java.lang.management.ManagementFactory;
 import java.lang.management.MemoryMXBean;
 import java.lang.management.MemoryUsage;
 import java.lang.management.RuntimeMXBean;
+import java.nio.file.Path;
 import java.time.Instant;
 import java.time.OffsetDateTime;
 import java.time.ZoneOffset;
@@ -38,6 +39,7 @@ import java.util.Map;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.ethlo.geodata.dao.file.MappedFiles;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.ObjectWriter;
@@ -108,6 +110,60 @@ public class MemoryUsageUtil
         }
         info.put("bufferPools", bufferPools);
 
+        final Map<String, Object> mappedFiles = new LinkedHashMap<>();
+        mappedFiles.put("open", MappedFiles.getOpenFiles());
+        mappedFiles.put("segments", MappedFiles.getOpenSegments());
+        mappedFiles.put("mapped", humanReadableByteCount(MappedFiles.getMappedBytes()));
+        mappedFiles.put("unmapped", humanReadableByteCount(MappedFiles.getUnmappedBytes()));
+        info.put("mappedFiles", mappedFiles);
+
         return info;
     }
+
+    /**
+     * @return The estimated heap and mapped bytes of each registered structure, the sampled residency of its mapped pages
+     * where known, and their totals
+     */
+    public static Map<String, Object> getAccountingMap(final MemoryAccounting accounting)
+    {
+        final Map<String, Object> structures = new LinkedHashMap<>();
+        long totalHeap = 0;
+        long totalMapped = 0;
+        for (final MemoryAccounting.Usage usage : accounting.snapshot())
+        {
+            final Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("heap", humanReadableByteCount(usage.getHeapBytes()));
+            entry.put("mapped", humanReadableByteCount(usage.getMappedBytes()));
+            if (usage.getResidentFraction() >= 0)
+            {
+                entry.put("resident", String.format("%.1f%%", usage.getResidentFraction() * 100));
+            }
+            structures.put(usage.getName(), entry);
+            totalHeap += usage.getHeapBytes();
+            totalMapped += usage.getMappedBytes();
+        }
+
+        final Map<String, Object> info = new LinkedHashMap<>();
+        info.put("structures", structures);
+        info.put("totalHeap", humanReadableByteCount(totalHeap));
+        info.put("totalMapped", humanReadableByteCount(totalMapped));
+        return info;
+    }
+
+    /**
+     * @return The mapped and resident size of each memory mapped file in the directory
+     */
+    public static Map<String, Object> getResidencyMap(final Path directory)
+    {
+        final Map<String, Object> files = new LinkedHashMap<>();
+        PageResidency.forDirectory(directory).forEach((file, residency) ->
+        {
+            final Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("mapped", humanReadableByteCount(residency.getMappedBytes()));
+            entry.put("resident", humanReadableByteCount(residency.getResidentBytes()));
+            entry.put("residentPercentage", String.format("%.1f", residency.getResidentPercentage()));
+            files.put(file, entry);
+        });
+        return files;
+    }
 }
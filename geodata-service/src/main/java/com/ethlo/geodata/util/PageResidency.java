@@ -0,0 +1,121 @@
+package com.ethlo.geodata.util;
+
+/*-
+ * #%L
+ * Geodata service
+ * %%
+ * Copyright (C) 2017 - 2020 Morten Haraldsen (ethlo)
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * How much of each memory mapped file is resident in physical memory, from the kernel's per-mapping accounting in
+ * <code>/proc/self/smaps</code>. On systems without it nothing is reported.
+ */
+public class PageResidency
+{
+    private static final Path SMAPS = Paths.get("/proc/self/smaps");
+
+    private PageResidency()
+    {
+    }
+
+    /**
+     * @return The mapped and resident bytes of each mapped file in the directory, by file name
+     */
+    public static Map<String, Residency> forDirectory(final Path directory)
+    {
+        final Map<String, Residency> result = new TreeMap<>();
+        if (!Files.isReadable(SMAPS))
+        {
+            return result;
+        }
+
+        try (final BufferedReader reader = Files.newBufferedReader(SMAPS, StandardCharsets.US_ASCII))
+        {
+            // The kernel reports resolved paths
+            final String prefix = directory.toRealPath().toString() + "/";
+            Residency current = null;
+            String line;
+            while ((line = reader.readLine()) != null)
+            {
+                if (isMappingHeader(line))
+                {
+                    // address perms offset dev inode [path]
+                    final String[] parts = line.split("\\s+", 6);
+                    final String path = parts.length == 6 ? parts[5].trim() : null;
+                    current = path != null && path.startsWith(prefix) ? result.computeIfAbsent(path.substring(prefix.length()), p -> new Residency()) : null;
+                }
+                else if (current != null && line.startsWith("Size:"))
+                {
+                    current.mappedBytes += parseKiloBytes(line);
+                }
+                else if (current != null && line.startsWith("Rss:"))
+                {
+                    current.residentBytes += parseKiloBytes(line);
+                }
+            }
+        }
+        catch (IOException | RuntimeException exc)
+        {
+            result.clear();
+        }
+        return result;
+    }
+
+    private static boolean isMappingHeader(final String line)
+    {
+        final int dash = line.indexOf('-');
+        return dash > 0 && dash < line.indexOf(' ') && Character.digit(line.charAt(0), 16) >= 0;
+    }
+
+    private static long parseKiloBytes(final String line)
+    {
+        final String[] parts = line.trim().split("\\s+");
+        return Long.parseLong(parts[1]) * 1024;
+    }
+
+    public static class Residency
+    {
+        private long mappedBytes;
+        private long residentBytes;
+
+        public long getMappedBytes()
+        {
+            return mappedBytes;
+        }
+
+        public long getResidentBytes()
+        {
+            return residentBytes;
+        }
+
+        public double getResidentPercentage()
+        {
+            return mappedBytes > 0 ? residentBytes * 100D / mappedBytes : 0;
+        }
+    }
+}
@@ -0,0 +1,338 @@
+package com.ethlo.geodata.util;
+
+/*-
+ * #%L
+ * Geodata service
+ * %%
+ * Copyright (C) 2017 - 2020 Morten Haraldsen (ethlo)
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectLinkedOpenHashMap;
+
+/**
+ * Size bounded cache with int keys and TinyLFU admission. Every lookup is counted in a small frequency sketch, and
+ * when the cache is full a new entry only replaces the least recently used one if it has been asked for more often.
+ * One-off lookups therefore cannot push out the frequently used entries. The counters are halved at intervals, so
+ * that entries that are no longer popular age out.
+ * <p>
+ * The cache is split into segments by key, each with its own lock, recency order and sketch. Cached values are shared
+ * between callers and must not be modified.
+ */
+public class TinyLfuCache<V>
+{
+    private static final int SEGMENTS = 16;
+
+    private final int capacity;
+    private final Segment<V>[] segments;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public TinyLfuCache(final int capacity)
+    {
+        this.capacity = Math.max(0, capacity);
+        this.segments = new Segment[this.capacity > 0 ? SEGMENTS : 0];
+        for (int i = 0; i < segments.length; i++)
+        {
+            segments[i] = new Segment<>((this.capacity + SEGMENTS - 1) / SEGMENTS);
+        }
+    }
+
+    public boolean isEnabled()
+    {
+        return capacity > 0;
+    }
+
+    /**
+     * @return The cached value, or null if not cached
+     */
+    public V get(final int key)
+    {
+        if (capacity == 0)
+        {
+            return null;
+        }
+
+        final V value = segmentFor(key).get(key);
+        (value != null ? hits : misses).increment();
+        return value;
+    }
+
+    public void put(final int key, final V value)
+    {
+        if (capacity == 0)
+        {
+            return;
+        }
+
+        switch (segmentFor(key).put(key, value))
+        {
+            case EVICTED:
+                evictions.increment();
+                break;
+
+            case REJECTED:
+                rejections.increment();
+                break;
+
+            default:
+                break;
+        }
+    }
+
+    public void clear()
+    {
+        for (final Segment<V> segment : segments)
+        {
+            segment.clear();
+        }
+    }
+
+    public int size()
+    {
+        int size = 0;
+        for (final Segment<V> segment : segments)
+        {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    public Stats getStats()
+    {
+        return new Stats(capacity, size(), hits.sum(), misses.sum(), evictions.sum(), rejections.sum());
+    }
+
+    private Segment<V> segmentFor(final int key)
+    {
+        return segments[FrequencySketch.spread(key) & (SEGMENTS - 1)];
+    }
+
+    private enum PutResult
+    {
+        ADDED, EVICTED, REJECTED
+    }
+
+    private static class Segment<V>
+    {
+        private final int capacity;
+        private final Int2ObjectLinkedOpenHashMap<V> entries;
+        private final FrequencySketch sketch;
+
+        private Segment(final int capacity)
+        {
+            this.capacity = capacity;
+            this.entries = new Int2ObjectLinkedOpenHashMap<>(capacity);
+            this.sketch = new FrequencySketch(capacity);
+        }
+
+        private synchronized V get(final int key)
+        {
+            sketch.increment(key);
+            return entries.getAndMoveToLast(key);
+        }
+
+        private synchronized PutResult put(final int key, final V value)
+        {
+            if (entries.containsKey(key) || entries.size() < capacity)
+            {
+                entries.putAndMoveToLast(key, value);
+                return PutResult.ADDED;
+            }
+
+            final int victim = entries.firstIntKey();
+            if (sketch.frequency(key) <= sketch.frequency(victim))
+            {
+                return PutResult.REJECTED;
+            }
+            entries.removeFirst();
+            entries.putAndMoveToLast(key, value);
+            return PutResult.EVICTED;
+        }
+
+        private synchronized void clear()
+        {
+            entries.clear();
+            sketch.clear();
+        }
+
+        private synchronized int size()
+        {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Count-min sketch of 4-bit counters, four per key, packed sixteen to a long
+     */
+    static class FrequencySketch
+    {
+        private static final int MAX_COUNT = 15;
+        private static final long[] SEEDS = {0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+        private static final long HALF_MASK = 0x7777777777777777L;
+
+        private final long[] table;
+        private final int sampleSize;
+        private int additions;
+
+        FrequencySketch(final int capacity)
+        {
+            final int size = Integer.highestOneBit(Math.max(16, capacity) - 1) << 1;
+            this.table = new long[size];
+            this.sampleSize = 10 * Math.max(16, capacity);
+        }
+
+        static int spread(final int key)
+        {
+            final int h = key * 0x9e3779b9;
+            return h ^ (h >>> 16);
+        }
+
+        int frequency(final int key)
+        {
+            int frequency = MAX_COUNT;
+            for (int i = 0; i < SEEDS.length; i++)
+            {
+                frequency = Math.min(frequency, count(key, i));
+            }
+            return frequency;
+        }
+
+        void increment(final int key)
+        {
+            boolean added = false;
+            for (int i = 0; i < SEEDS.length; i++)
+            {
+                if (count(key, i) < MAX_COUNT)
+                {
+                    final long hash = hash(key, i);
+                    table[index(hash)] += 1L << shift(hash);
+                    added = true;
+                }
+            }
+
+            if (added && ++additions == sampleSize)
+            {
+                reset();
+            }
+        }
+
+        void clear()
+        {
+            Arrays.fill(table, 0);
+            additions = 0;
+        }
+
+        private void reset()
+        {
+            for (int i = 0; i < table.length; i++)
+            {
+                table[i] = (table[i] >>> 1) & HALF_MASK;
+            }
+            additions /= 2;
+        }
+
+        private int count(final int key, final int i)
+        {
+            final long hash = hash(key, i);
+            return (int) ((table[index(hash)] >>> shift(hash)) & MAX_COUNT);
+        }
+
+        private long hash(final int key, final int i)
+        {
+            long hash = (key + SEEDS[i]) * SEEDS[i];
+            hash += hash >>> 32;
+            return hash;
+        }
+
+        private int index(final long hash)
+        {
+            return (int) (hash >>> 8) & (table.length - 1);
+        }
+
+        private int shift(final long hash)
+        {
+            // One of the sixteen 4-bit counters in the long
+            return ((int) hash & 15) << 2;
+        }
+    }
+
+    public static class Stats
+    {
+        private final int capacity;
+        private final int size;
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+        private final long rejections;
+
+        public Stats(final int capacity, final int size, final long hits, final long misses, final long evictions, final long rejections)
+        {
+            this.capacity = capacity;
+            this.size = size;
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.rejections = rejections;
+        }
+
+        public int getCapacity()
+        {
+            return capacity;
+        }
+
+        public int getSize()
+        {
+            return size;
+        }
+
+        public long getHits()
+        {
+            return hits;
+        }
+
+        public long getMisses()
+        {
+            return misses;
+        }
+
+        public long getEvictions()
+        {
+            return evictions;
+        }
+
+        /**
+         * @return The number of entries not admitted, as they were asked for less often than the entry they would replace
+         */
+        public long getRejections()
+        {
+            return rejections;
+        }
+
+        public double getHitRate()
+        {
+            final long total = hits + misses;
+            return total > 0 ? hits / (double) total : 0;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.ethlo.geodata.hierarchy;
+
+/*-
+ * #%L
+ * Geodata service
+ * %%
+ * Copyright (C) 2017 - 2020 Morten Haraldsen (ethlo)
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+import com.ethlo.geodata.dao.file.HierarchyIndex;
+import com.ethlo.geodata.model.GeoLocationSummary;
+
+public class AncestorPathsTest
+{
+    // 1 <- 2 <- 3 <- 4, and 2 <- 5
+    private final HierarchyIndex hierarchy = HierarchyIndex.of(Map.of(2, 1, 3, 2, 4, 3, 5, 2));
+    private final AncestorPaths paths = AncestorPaths.build(hierarchy, ordinal -> new GeoLocationSummary(hierarchy.getId(ordinal), "name" + hierarchy.getId(ordinal), "A", "ADM1"));
+
+    @Test
+    public void testPathExcludesSelfAndTop()
+    {
+        assertThat(ids(4)).containsExactly(3, 2);
+        assertThat(ids(3)).containsExactly(2);
+        assertThat(ids(5)).containsExactly(2);
+        assertThat(ids(2)).isEmpty();
+        assertThat(ids(1)).isEmpty();
+    }
+
+    @Test
+    public void testSiblingsSharePath()
+    {
+        assertThat(paths.size()).isEqualTo(3);
+        assertThat(paths.getPath(hierarchy.ordinal(4)).get(1)).isSameAs(paths.getPath(hierarchy.ordinal(5)).get(0));
+    }
+
+    private List<Integer> ids(final int id)
+    {
+        return paths.getPath(hierarchy.ordinal(id)).stream().map(GeoLocationSummary::getId).collect(Collectors.toList());
+    }
+}
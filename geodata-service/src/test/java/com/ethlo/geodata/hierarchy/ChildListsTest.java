@@ -0,0 +1,54 @@
+package com.ethlo.geodata.hierarchy;
+
+/*-
+ * #%L
+ * Geodata service
+ * %%
+ * Copyright (C) 2017 - 2020 Morten Haraldsen (ethlo)
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+public class ChildListsTest
+{
+    // Parent 0 has the children 10 (B, 5), 11 (A, 20) and 12 (C, 20), parent 1 has the child 13
+    private final ChildLists lists = ChildLists.build(new int[]{0, 1, 0, 0}, new int[]{10, 13, 11, 12}, new String[]{"B", "D", "A", "C"}, new long[]{5, 1, 20, 20});
+
+    @Test
+    public void testOrders()
+    {
+        assertThat(lists.size()).isEqualTo(2);
+        assertThat(lists.count(0)).isEqualTo(3);
+        assertThat(lists.count(1)).isEqualTo(1);
+        assertThat(lists.count(2)).isZero();
+        assertThat(lists.getPage(0, ChildLists.Order.NAME, 0, 10)).containsExactly(11, 10, 12);
+        assertThat(lists.getPage(0, ChildLists.Order.POPULATION, 0, 10)).containsExactly(11, 12, 10);
+        assertThat(lists.getPage(1, ChildLists.Order.NAME, 0, 10)).containsExactly(13);
+    }
+
+    @Test
+    public void testPages()
+    {
+        assertThat(lists.getPage(0, ChildLists.Order.NAME, 1, 1)).containsExactly(10);
+        assertThat(lists.getPage(0, ChildLists.Order.NAME, 2, 5)).containsExactly(12);
+        assertThat(lists.getPage(0, ChildLists.Order.NAME, 3, 5)).isEmpty();
+        assertThat(lists.getPage(2, ChildLists.Order.NAME, 0, 5)).isEmpty();
+    }
+}
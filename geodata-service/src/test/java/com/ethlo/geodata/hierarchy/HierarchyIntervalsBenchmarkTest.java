@@ -0,0 +1,84 @@
+package com.ethlo.geodata.hierarchy;
+
+/*-
+ * #%L
+ * Geodata service
+ * %%
+ * Copyright (C) 2017 - 2020 Morten Haraldsen (ethlo)
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.ethlo.geodata.dao.Hierarchy;
+
+/**
+ * Time of ancestor checks with the interval labels compared to walking the path of parents. Not part of the unit tests,
+ * run with <code>mvn test -Pbenchmark</code>.
+ */
+@Tag("benchmark")
+public class HierarchyIntervalsBenchmarkTest
+{
+    private static final Logger logger = LoggerFactory.getLogger(HierarchyIntervalsBenchmarkTest.class);
+    private static final int[] FAN_OUT = {6, 40, 20, 10, 5};
+    private static final int CHECKS = 200_000;
+
+    @Test
+    public void benchmarkIsInside()
+    {
+        final Hierarchy hierarchy = HierarchyIntervalsTest.generate(FAN_OUT);
+        final HierarchyIntervals intervals = HierarchyIntervals.build(hierarchy);
+        final int[][] pairs = HierarchyIntervalsTest.randomPairs(hierarchy, FAN_OUT.length, CHECKS, new Random(42));
+
+        final long pathNanos = time(() -> countByPath(hierarchy, pairs[0], pairs[1]));
+        final long intervalNanos = time(() -> countByIntervals(intervals, pairs[0], pairs[1]));
+        logger.info("Locations: {}, labelled: {}, path walk: {} ns/check, intervals: {} ns/check", hierarchy.size(), intervals.size(), pathNanos / CHECKS, intervalNanos / CHECKS);
+    }
+
+    private long time(final Runnable runnable)
+    {
+        runnable.run();
+        final long start = System.nanoTime();
+        runnable.run();
+        return System.nanoTime() - start;
+    }
+
+    private int countByPath(final Hierarchy hierarchy, final int[] locations, final int[] ancestors)
+    {
+        int count = 0;
+        for (int i = 0; i < locations.length; i++)
+        {
+            count += HierarchyIntervalsTest.isInsideByPath(hierarchy, locations[i], ancestors[i]) ? 1 : 0;
+        }
+        return count;
+    }
+
+    private int countByIntervals(final HierarchyIntervals intervals, final int[] locations, final int[] ancestors)
+    {
+        int count = 0;
+        for (int i = 0; i < locations.length; i++)
+        {
+            count += intervals.isInside(locations[i], ancestors[i]) ? 1 : 0;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,131 @@
+package com.ethlo.geodata.hierarchy;
+
+/*-
+ * #%L
+ * Geodata service
+ * %%
+ * Copyright (C) 2017 - 2020 Morten Haraldsen (ethlo)
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.LinkedBlockingDeque;
+
+import org.junit.jupiter.api.Test;
+
+import com.ethlo.geodata.dao.Hierarchy;
+import com.ethlo.geodata.dao.file.HierarchyIndex;
+
+/**
+ * Ancestor checks with the interval labels, against walking the path of parents as the service used to
+ */
+public class HierarchyIntervalsTest
+{
+    private static final int[] FAN_OUT = {4, 8, 6, 5};
+    private static final int CHECKS = 20_000;
+
+    @Test
+    public void testIsInsideMatchesPathWalk()
+    {
+        final Hierarchy hierarchy = generate(FAN_OUT);
+        final HierarchyIntervals intervals = HierarchyIntervals.build(hierarchy);
+
+        final int[][] pairs = randomPairs(hierarchy, FAN_OUT.length, CHECKS, new Random(42));
+        int inside = 0;
+        for (int i = 0; i < CHECKS; i++)
+        {
+            final boolean expected = isInsideByPath(hierarchy, pairs[0][i], pairs[1][i]);
+            assertThat(intervals.isInside(pairs[0][i], pairs[1][i])).isEqualTo(expected);
+            inside += expected ? 1 : 0;
+        }
+        assertThat(inside).isGreaterThan(0);
+    }
+
+    /**
+     * A hierarchy below the root with id 1, where each level has the given number of children per location
+     */
+    static Hierarchy generate(final int[] fanOut)
+    {
+        final Map<Integer, Integer> childToParent = new HashMap<>();
+        addChildren(childToParent, fanOut, 1, 0, 2);
+        return HierarchyIndex.of(childToParent);
+    }
+
+    /**
+     * Location and ancestor candidate ordinals, where half of the candidates are ancestors and the other half random
+     */
+    static int[][] randomPairs(final Hierarchy hierarchy, final int depth, final int count, final Random random)
+    {
+        final int[] locations = new int[count];
+        final int[] ancestors = new int[count];
+        for (int i = 0; i < count; i++)
+        {
+            locations[i] = random.nextInt(hierarchy.size());
+            ancestors[i] = random.nextBoolean() ? random.nextInt(hierarchy.size()) : randomAncestor(hierarchy, depth, locations[i], random);
+        }
+        return new int[][]{locations, ancestors};
+    }
+
+    static boolean isInsideByPath(final Hierarchy hierarchy, final int ordinal, final int ancestorOrdinal)
+    {
+        final Deque<Integer> path = new LinkedBlockingDeque<>();
+        int current = ordinal;
+        while (current != Hierarchy.NO_PARENT)
+        {
+            path.add(hierarchy.getId(current));
+            current = hierarchy.getParentOrdinal(current);
+        }
+        path.removeFirst();
+        if (!path.isEmpty())
+        {
+            path.removeLast();
+        }
+        return path.contains(hierarchy.getId(ancestorOrdinal));
+    }
+
+    private static int addChildren(final Map<Integer, Integer> childToParent, final int[] fanOut, final int parentId, final int level, final int nextId)
+    {
+        if (level == fanOut.length)
+        {
+            return nextId;
+        }
+
+        int id = nextId;
+        for (int i = 0; i < fanOut[level]; i++)
+        {
+            final int childId = id++;
+            childToParent.put(childId, parentId);
+            id = addChildren(childToParent, fanOut, childId, level + 1, id);
+        }
+        return id;
+    }
+
+    private static int randomAncestor(final Hierarchy hierarchy, final int depth, final int ordinal, final Random random)
+    {
+        int ancestor = ordinal;
+        for (int steps = random.nextInt(depth) + 1; steps > 0 && hierarchy.getParentOrdinal(ancestor) != Hierarchy.NO_PARENT; steps--)
+        {
+            ancestor = hierarchy.getParentOrdinal(ancestor);
+        }
+        return ancestor;
+    }
+}
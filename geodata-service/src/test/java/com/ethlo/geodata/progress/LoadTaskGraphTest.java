@@ -0,0 +1,96 @@
+package com.ethlo.geodata.progress;
+
+/*-
+ * #%L
+ * Geodata service
+ * %%
+ * Copyright (C) 2017 - 2020 Morten Haraldsen (ethlo)
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.jupiter.api.Test;
+
+public class LoadTaskGraphTest
+{
+    @Test
+    public void testDependenciesCompleteFirst()
+    {
+        for (final boolean parallel : new boolean[]{true, false})
+        {
+            final List<String> completed = new CopyOnWriteArrayList<>();
+            final List<LoadTaskGraph.StageTiming> timings = new LoadTaskGraph(parallel)
+                    .add("a", () -> completed.add("a"))
+                    .add("b", () -> completed.add("b"))
+                    .add("c", () -> completed.add("c"), "a")
+                    .add("d", () -> completed.add("d"), "b", "c")
+                    .run();
+
+            assertThat(completed).containsExactlyInAnyOrder("a", "b", "c", "d");
+            assertThat(completed.indexOf("c")).isGreaterThan(completed.indexOf("a"));
+            assertThat(completed.indexOf("d")).isGreaterThan(completed.indexOf("b")).isGreaterThan(completed.indexOf("c"));
+            assertThat(timings).hasSize(4);
+        }
+    }
+
+    @Test
+    public void testFailureSkipsDependents()
+    {
+        final List<String> completed = new CopyOnWriteArrayList<>();
+        final LoadTaskGraph graph = new LoadTaskGraph(true)
+                .add("a", () ->
+                {
+                    throw new IllegalStateException("Failed");
+                })
+                .add("b", () -> completed.add("b"), "a");
+
+        assertThatThrownBy(graph::run).isInstanceOf(IllegalStateException.class).hasMessage("Failed");
+        assertThat(completed).isEmpty();
+    }
+
+    @Test
+    public void testReadinessPerCapability()
+    {
+        final Readiness readiness = new Readiness();
+        final LoadTaskGraph graph = new LoadTaskGraph(false).listener(readiness);
+        for (final String stage : Capability.LOCATIONS.getStages())
+        {
+            graph.add(stage, () -> assertThat(readiness.isReady(Capability.LOCATIONS)).isFalse());
+        }
+        graph.add(Capability.Stages.GEOMETRY, () ->
+        {
+            assertThat(readiness.isReady(Capability.LOCATIONS)).isTrue();
+            throw new IllegalStateException("Failed");
+        });
+
+        assertThatThrownBy(graph::run).isInstanceOf(IllegalStateException.class);
+        assertThat(readiness.getState(Capability.LOCATIONS)).isEqualTo(Readiness.State.READY);
+        assertThat(readiness.getState(Capability.GEOMETRY)).isEqualTo(Readiness.State.FAILED);
+        assertThat(readiness.getState(Capability.NAME_SEARCH)).isEqualTo(Readiness.State.LOADING);
+    }
+
+    @Test
+    public void testUnknownDependency()
+    {
+        assertThatThrownBy(() -> new LoadTaskGraph(true).add("a", () -> {}, "b")).isInstanceOf(IllegalArgumentException.class);
+    }
+}
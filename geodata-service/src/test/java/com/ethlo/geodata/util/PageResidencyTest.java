@@ -0,0 +1,68 @@
+package com.ethlo.geodata.util;
+
+/*-
+ * #%L
+ * Geodata service
+ * %%
+ * Copyright (C) 2017 - 2020 Morten Haraldsen (ethlo)
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class PageResidencyTest
+{
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testMappedFile() throws IOException
+    {
+        assumeTrue(Files.isReadable(Paths.get("/proc/self/smaps")));
+
+        final Path file = tempDir.resolve("test.data");
+        Files.write(file, new byte[1 << 20]);
+        try (final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+        {
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            long sum = 0;
+            for (int i = 0; i < buffer.capacity(); i += 4096)
+            {
+                sum += buffer.get(i);
+            }
+            assertThat(sum).isZero();
+
+            final Map<String, PageResidency.Residency> residency = PageResidency.forDirectory(tempDir);
+            assertThat(residency).containsKey("test.data");
+            assertThat(residency.get("test.data").getMappedBytes()).isEqualTo(1 << 20);
+            assertThat(residency.get("test.data").getResidentBytes()).isPositive();
+        }
+    }
+}
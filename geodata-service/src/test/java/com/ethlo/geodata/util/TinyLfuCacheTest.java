@@ -0,0 +1,79 @@
+package com.ethlo.geodata.util;
+
+/*-
+ * #%L
+ * Geodata service
+ * %%
+ * Copyright (C) 2017 - 2020 Morten Haraldsen (ethlo)
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+public class TinyLfuCacheTest
+{
+    @Test
+    public void testFrequentEntriesSurviveScan()
+    {
+        final TinyLfuCache<String> cache = new TinyLfuCache<>(160);
+        for (int round = 0; round < 5; round++)
+        {
+            for (int key = 0; key < 50; key++)
+            {
+                if (cache.get(key) == null)
+                {
+                    cache.put(key, "hot" + key);
+                }
+            }
+        }
+
+        // A scan of keys that are asked for once should not displace the hot ones
+        for (int key = 1000; key < 2000; key++)
+        {
+            if (cache.get(key) == null)
+            {
+                cache.put(key, "cold" + key);
+            }
+        }
+
+        int retained = 0;
+        for (int key = 0; key < 50; key++)
+        {
+            if (cache.get(key) != null)
+            {
+                retained++;
+            }
+        }
+        assertThat(retained).isGreaterThanOrEqualTo(45);
+
+        final TinyLfuCache.Stats stats = cache.getStats();
+        assertThat(stats.getSize()).isLessThanOrEqualTo(160);
+        assertThat(stats.getRejections()).isGreaterThan(0);
+        assertThat(stats.getHits()).isGreaterThanOrEqualTo(200);
+    }
+
+    @Test
+    public void testDisabled()
+    {
+        final TinyLfuCache<String> cache = new TinyLfuCache<>(0);
+        cache.put(1, "a");
+        assertThat(cache.get(1)).isNull();
+        assertThat(cache.getStats().getMisses()).isZero();
+    }
+}